@@ -0,0 +1,18 @@
+package com.github.mike10004.catmvnplugin;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Log that discards info messages, which would otherwise be printed on every benchmark invocation.
+ */
+class QuietLog extends SystemStreamLog {
+
+    @Override
+    public boolean isInfoEnabled() {
+        return false;
+    }
+
+    @Override
+    public void info(CharSequence content) {
+    }
+}
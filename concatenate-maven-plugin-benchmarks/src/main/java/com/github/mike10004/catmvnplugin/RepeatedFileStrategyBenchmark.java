@@ -0,0 +1,72 @@
+package com.github.mike10004.catmvnplugin;
+
+import com.github.mike10004.catmvnplugin.ConcatenateMojo.RepeatedFileStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks collecting source files into the bucket of each repeated file strategy.
+ * The files are distinct in path and content, so no strategy rejects or fails on any
+ * of them. With uniform sizes, the content-based strategies must hash every file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepeatedFileStrategyBenchmark {
+
+    private static final int NUM_FILES = 2000;
+    private static final int FILE_SIZE = 4096;
+
+    @Param({"repeat", "ignore", "fail", "dedupeByContent", "failOnRepeatedContent"})
+    public RepeatedFileStrategy strategy;
+
+    @Param({"false", "true"})
+    public boolean uniformSizes;
+
+    private SyntheticTree tree;
+    private List<File> sourceFiles;
+
+    @Setup
+    public void setUp() throws IOException {
+        tree = SyntheticTree.create("repeated-file-strategy-benchmark");
+        Random random = new Random(getClass().getName().hashCode());
+        sourceFiles = new ArrayList<>(NUM_FILES);
+        for (int i = 0; i < NUM_FILES; i++) {
+            int size = uniformSizes ? FILE_SIZE : FILE_SIZE + i;
+            sourceFiles.add(tree.write(String.format("src/%05d.bin", i), size, random));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        tree.delete();
+    }
+
+    @Benchmark
+    public Collection<File> fillBucket() {
+        Collection<File> bucket = strategy.createBucket();
+        bucket.addAll(sourceFiles);
+        return bucket;
+    }
+}
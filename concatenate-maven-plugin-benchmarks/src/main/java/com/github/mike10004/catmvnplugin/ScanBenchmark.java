@@ -0,0 +1,92 @@
+package com.github.mike10004.catmvnplugin;
+
+import com.github.mike10004.catmvnplugin.OrderableFileSet.OrderingStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link OrderableFileSetManager#getIncludedFiles(org.apache.maven.shared.model.fileset.FileSet)}
+ * on a tree of {@value #NUM_DIRECTORIES} directories with {@value #FILES_PER_DIRECTORY} files each.
+ * With one include, the pattern matches every file; with more, each pattern matches a few files
+ * spread across the tree. The scan thread count applies only to the nio scanner.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScanBenchmark {
+
+    private static final int NUM_DIRECTORIES = 20;
+    private static final int FILES_PER_DIRECTORY = 100;
+
+    @Param({"traditional", "strict"})
+    public OrderingStrategy orderingStrategy;
+
+    @Param({"1", "20", "200"})
+    public int numIncludes;
+
+    @Param({"standard", "nio"})
+    public OrderableFileSet.Scanner scanner;
+
+    @Param({"1", "4"})
+    public int scanThreads;
+
+    private SyntheticTree tree;
+    private OrderableFileSet fileSet;
+
+    @Setup
+    public void setUp() throws IOException {
+        tree = SyntheticTree.create("scan-benchmark");
+        Random random = new Random(getClass().getName().hashCode());
+        for (int d = 0; d < NUM_DIRECTORIES; d++) {
+            for (int f = 0; f < FILES_PER_DIRECTORY; f++) {
+                tree.write(String.format("d%02d/f%03d.txt", d, f), 16, random);
+            }
+        }
+        List<String> includes = new ArrayList<>(numIncludes);
+        if (numIncludes == 1) {
+            includes.add("**/*.txt");
+        } else {
+            int stride = NUM_DIRECTORIES * FILES_PER_DIRECTORY / numIncludes;
+            for (int i = 0; i < numIncludes; i++) {
+                int index = (i * stride * 7) % (NUM_DIRECTORIES * FILES_PER_DIRECTORY);
+                // the trailing wildcard keeps the pattern from being a plain pathname
+                includes.add(String.format("d%02d/f%02d*.txt", index / FILES_PER_DIRECTORY, (index % FILES_PER_DIRECTORY) / 10));
+            }
+        }
+        fileSet = new OrderableFileSet();
+        fileSet.setDirectory(tree.root.getAbsolutePath());
+        fileSet.setIncludes(includes);
+        fileSet.setOrderingStrategy(orderingStrategy);
+        fileSet.setScanner(scanner);
+        fileSet.setScanThreads(scanThreads);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        tree.delete();
+    }
+
+    @Benchmark
+    public String[] getIncludedFiles() {
+        return new OrderableFileSetManager().getIncludedFiles(fileSet);
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.mike10004.catmvnplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+/**
+ * Tree of generated files in a temporary directory.
+ */
+class SyntheticTree {
+
+    public final File root;
+
+    private SyntheticTree(File root) {
+        this.root = root;
+    }
+
+    public static SyntheticTree create(String prefix) throws IOException {
+        return new SyntheticTree(Files.createTempDirectory(prefix).toFile());
+    }
+
+    /**
+     * Writes a file with random content.
+     * @param relativePath pathname relative to the tree root
+     * @param size number of bytes
+     * @param random source of content
+     * @return the file
+     * @throws IOException on I/O error
+     */
+    public File write(String relativePath, int size, Random random) throws IOException {
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        File file = new File(root, relativePath);
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    public void delete() throws IOException {
+        Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
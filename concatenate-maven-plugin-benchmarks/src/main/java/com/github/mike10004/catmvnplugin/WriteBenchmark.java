@@ -0,0 +1,89 @@
+package com.github.mike10004.catmvnplugin;
+
+import com.github.mike10004.catmvnplugin.ConcatenateMojo.WriteStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link ConcatenateMojo#writeConcatenated(Iterable, File)} with each write strategy
+ * on source lists of many tiny files and of a few huge files, with and without a divider.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WriteBenchmark {
+
+    public enum TreeShape {
+        manyTiny(10000, 256),
+        fewHuge(4, 32 * 1024 * 1024);
+
+        public final int numFiles;
+        public final int fileSize;
+
+        TreeShape(int numFiles, int fileSize) {
+            this.numFiles = numFiles;
+            this.fileSize = fileSize;
+        }
+    }
+
+    @Param({"manyTiny", "fewHuge"})
+    public TreeShape shape;
+
+    @Param({"false", "true"})
+    public boolean withDivider;
+
+    @Param({"stream", "channel", "pipelined"})
+    public WriteStrategy writeStrategy;
+
+    private SyntheticTree tree;
+    private List<File> sourceFiles;
+    private File outputFile;
+    private ConcatenateMojo mojo;
+
+    @Setup
+    public void setUp() throws IOException {
+        tree = SyntheticTree.create("write-benchmark");
+        Random random = new Random(getClass().getName().hashCode());
+        sourceFiles = new ArrayList<>(shape.numFiles);
+        for (int i = 0; i < shape.numFiles; i++) {
+            sourceFiles.add(tree.write(String.format("src/%05d.bin", i), shape.fileSize, random));
+        }
+        outputFile = new File(tree.root, "output.bin");
+        mojo = new ConcatenateMojo();
+        mojo.setLog(new QuietLog());
+        mojo.setWriteStrategy(writeStrategy);
+        mojo.setDivider(withDivider ? "\n" : "");
+        mojo.setDividerCharset("UTF-8");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        tree.delete();
+    }
+
+    @Benchmark
+    public long writeConcatenated() throws IOException {
+        mojo.writeConcatenated(sourceFiles, outputFile);
+        return outputFile.length();
+    }
+}
@@ -0,0 +1,340 @@
+package com.github.mike10004.catmvnplugin;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.TimeZone;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Concatenator that writes each source file as an entry of an archive, in the order
+ * the source files are given. Entry content is copied with the same channel read paths
+ * as {@link Concatenator.ChannelConcatenator}. Dividers, headers, and footers are not written.
+ */
+abstract class ArchiveConcatenator extends Concatenator.ChannelConcatenator {
+
+    public enum Format {
+        zip,
+        tar
+    }
+
+    private final Function<File, String> entryNames;
+    @Nullable
+    protected final Long entryTime;
+
+    /**
+     * Constructs an instance.
+     * @param entryNames function that supplies the entry name of each source file
+     * @param entryTime modification time of every entry, in milliseconds since the epoch, or null to use the modification time of each source file
+     * @param mapThreshold minimum size of a source file that is memory-mapped; negative to never map
+     */
+    protected ArchiveConcatenator(Function<File, String> entryNames, @Nullable Long entryTime, long mapThreshold) {
+        super(new byte[0], mapThreshold);
+        this.entryNames = requireNonNull(entryNames);
+        this.entryTime = entryTime;
+    }
+
+    /**
+     * Creates an archive concatenator.
+     * @param format the archive format
+     * @param entryNames function that supplies the entry name of each source file
+     * @param entryTime modification time of every entry, or null to use the modification time of each source file
+     * @param storeEntries true to store zip entries uncompressed
+     * @param mapThreshold minimum size of a source file that is memory-mapped; negative to never map
+     * @return the concatenator
+     */
+    public static ArchiveConcatenator create(Format format, Function<File, String> entryNames, @Nullable Long entryTime, boolean storeEntries, long mapThreshold) {
+        switch (format) {
+            case zip:
+                return new ZipConcatenator(entryNames, entryTime, storeEntries, mapThreshold);
+            case tar:
+                return new TarConcatenator(entryNames, entryTime, mapThreshold);
+            default:
+                throw new IllegalStateException("bug: format " + format + " not handled");
+        }
+    }
+
+    protected String getEntryName(File sourceFile) {
+        String name = entryNames.apply(sourceFile).replace(File.separatorChar, '/');
+        int start = 0;
+        while (start < name.length() && name.charAt(start) == '/') {
+            start++;
+        }
+        return name.substring(start);
+    }
+
+    protected long getEntryTime(File sourceFile) {
+        return entryTime != null ? entryTime : sourceFile.lastModified();
+    }
+
+    protected static void checkCopied(File sourceFile, long expected, long actual) throws IOException {
+        if (expected != actual) {
+            throw new IOException("size of " + sourceFile + " changed while it was archived (expected " + expected + " bytes, copied " + actual + ")");
+        }
+    }
+
+    /**
+     * Concatenator that writes a POSIX (pax) tar archive. Entries whose name or size does not
+     * fit in a ustar header are preceded by an extended header. Entry offsets reported to
+     * listeners are positions of the entry content in the uncompressed archive.
+     */
+    static class TarConcatenator extends ArchiveConcatenator {
+
+        static final int BLOCK_SIZE = 512;
+        static final int RECORD_SIZE = 20 * BLOCK_SIZE;
+
+        private static final long MAX_OCTAL_SIZE = 077777777777L;
+        private static final int NAME_LENGTH = 100;
+        private static final int PREFIX_LENGTH = 155;
+
+        private final byte[] header;
+        private long written;
+
+        public TarConcatenator(Function<File, String> entryNames, @Nullable Long entryTime, long mapThreshold) {
+            super(entryNames, entryTime, mapThreshold);
+            header = new byte[BLOCK_SIZE];
+        }
+
+        @Override
+        public int concatenate(Iterable<File> sourceFiles, OutputStream output) throws IOException {
+            WritableByteChannel target = toChannel(track(output));
+            written = 0;
+            int numFiles = 0;
+            for (File sourceFile : sourceFiles) {
+                long size = sourceFile.length();
+                writeHeaders(getEntryName(sourceFile), size, getEntryTime(sourceFile) / 1000, target);
+                entryStarted(sourceFile);
+                long copied = transfer(sourceFile, target);
+                checkCopied(sourceFile, size, copied);
+                entryWritten(sourceFile, copied);
+                written += copied;
+                writePadding(target);
+                numFiles++;
+            }
+            // end-of-archive marker is two zero blocks; the archive is padded to a whole record
+            long end = written + 2 * BLOCK_SIZE;
+            writeZeros(target, (int) (end + (RECORD_SIZE - end % RECORD_SIZE) % RECORD_SIZE - written));
+            return numFiles;
+        }
+
+        private void writeHeaders(String name, long size, long mtime, WritableByteChannel target) throws IOException {
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            boolean ascii = nameBytes.length == name.length();
+            int split = ascii ? findPrefixSplit(nameBytes) : -1;
+            boolean longSize = size > MAX_OCTAL_SIZE;
+            if (split < 0 || longSize) {
+                StringBuilder records = new StringBuilder();
+                if (split < 0) {
+                    appendPaxRecord(records, "path", name);
+                }
+                if (longSize) {
+                    appendPaxRecord(records, "size", String.valueOf(size));
+                }
+                byte[] pax = records.toString().getBytes(StandardCharsets.UTF_8);
+                String paxName = "PaxHeaders/" + truncate(name.substring(name.lastIndexOf('/') + 1));
+                writeHeader(paxName.getBytes(StandardCharsets.UTF_8), null, pax.length, mtime, (byte) 'x', target);
+                writeData(ByteBuffer.wrap(pax), target);
+                writePadding(target);
+            }
+            if (split < 0) {
+                byte[] fallback = truncate(name.substring(name.lastIndexOf('/') + 1)).getBytes(StandardCharsets.UTF_8);
+                writeHeader(fallback, null, longSize ? 0 : size, mtime, (byte) '0', target);
+            } else if (split == 0) {
+                writeHeader(nameBytes, null, longSize ? 0 : size, mtime, (byte) '0', target);
+            } else {
+                writeHeader(Arrays.copyOfRange(nameBytes, split + 1, nameBytes.length), Arrays.copyOf(nameBytes, split), longSize ? 0 : size, mtime, (byte) '0', target);
+            }
+        }
+
+        /**
+         * Finds where to split a name into the ustar prefix and name fields.
+         * @return 0 if the name fits in the name field, the index of the separating slash if it must be split, or -1 if it does not fit
+         */
+        private static int findPrefixSplit(byte[] name) {
+            if (name.length <= NAME_LENGTH) {
+                return 0;
+            }
+            for (int i = Math.min(name.length - 2, PREFIX_LENGTH); i > 0; i--) {
+                if (name[i] == '/' && name.length - i - 1 <= NAME_LENGTH) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static String truncate(String name) {
+            // only ASCII characters are kept, so that the fallback name fits the field byte for byte
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < name.length() && sb.length() < NAME_LENGTH - 11; i++) {
+                char c = name.charAt(i);
+                sb.append(c < 0x80 ? c : '_');
+            }
+            return sb.toString();
+        }
+
+        private static void appendPaxRecord(StringBuilder records, String key, String value) {
+            // the record length includes the digits of the length itself
+            int length = key.length() + value.getBytes(StandardCharsets.UTF_8).length + 3;
+            int total = length + String.valueOf(length).length();
+            if (String.valueOf(total).length() != String.valueOf(length).length()) {
+                total++;
+            }
+            records.append(total).append(' ').append(key).append('=').append(value).append('\n');
+        }
+
+        private void writeHeader(byte[] name, @Nullable byte[] prefix, long size, long mtime, byte type, WritableByteChannel target) throws IOException {
+            Arrays.fill(header, (byte) 0);
+            System.arraycopy(name, 0, header, 0, name.length);
+            writeOctal(100, 8, 0644);
+            writeOctal(108, 8, 0);
+            writeOctal(116, 8, 0);
+            writeOctal(124, 12, size);
+            writeOctal(136, 12, Math.max(0, mtime));
+            header[156] = type;
+            System.arraycopy("ustar\u000000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+            if (prefix != null) {
+                System.arraycopy(prefix, 0, header, 345, prefix.length);
+            }
+            Arrays.fill(header, 148, 156, (byte) ' ');
+            long checksum = 0;
+            for (byte b : header) {
+                checksum += b & 0xFF;
+            }
+            writeOctal(148, 7, checksum);
+            writeData(ByteBuffer.wrap(header), target);
+        }
+
+        private void writeOctal(int offset, int length, long value) {
+            // length - 1 zero-padded digits followed by NUL
+            String digits = Long.toOctalString(value);
+            int pad = length - 1 - digits.length();
+            for (int i = 0; i < pad; i++) {
+                header[offset + i] = '0';
+            }
+            for (int i = 0; i < digits.length(); i++) {
+                header[offset + pad + i] = (byte) digits.charAt(i);
+            }
+            header[offset + length - 1] = 0;
+        }
+
+        private void writeData(ByteBuffer data, WritableByteChannel target) throws IOException {
+            int n = NioChannels.writeFully(data, target);
+            written += n;
+            metadataWritten(n);
+        }
+
+        private void writePadding(WritableByteChannel target) throws IOException {
+            writeZeros(target, (int) ((BLOCK_SIZE - written % BLOCK_SIZE) % BLOCK_SIZE));
+        }
+
+        private void writeZeros(WritableByteChannel target, int count) throws IOException {
+            while (count > 0) {
+                int n = Math.min(count, BLOCK_SIZE);
+                Arrays.fill(header, 0, n, (byte) 0);
+                writeData(ByteBuffer.wrap(header, 0, n), target);
+                count -= n;
+            }
+        }
+    }
+
+    /**
+     * Concatenator that writes a zip archive. Entries are deflated unless they are to be
+     * stored, in which case each source file is read once to compute its CRC before it is copied.
+     */
+    static class ZipConcatenator extends ArchiveConcatenator {
+
+        private static final int CRC_BUFFER_SIZE = 64 * 1024;
+
+        private final boolean storeEntries;
+        @Nullable
+        private ByteBuffer crcBuffer;
+
+        public ZipConcatenator(Function<File, String> entryNames, @Nullable Long entryTime, boolean storeEntries, long mapThreshold) {
+            super(entryNames, entryTime, mapThreshold);
+            this.storeEntries = storeEntries;
+        }
+
+        @Override
+        public int concatenate(Iterable<File> sourceFiles, OutputStream output) throws IOException {
+            OutputStream unclosed = new FilterOutputStream(track(output)) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+            int numFiles = 0;
+            try (ZipOutputStream zip = new ZipOutputStream(unclosed, StandardCharsets.UTF_8)) {
+                WritableByteChannel target = toChannel(zip);
+                for (File sourceFile : sourceFiles) {
+                    ZipEntry entry = new ZipEntry(getEntryName(sourceFile));
+                    entry.setTime(toDosTime(sourceFile));
+                    long size = sourceFile.length();
+                    if (storeEntries) {
+                        entry.setMethod(ZipEntry.STORED);
+                        entry.setSize(size);
+                        entry.setCompressedSize(size);
+                        entry.setCrc(computeCrc(sourceFile, size));
+                    }
+                    try {
+                        zip.putNextEntry(entry);
+                    } catch (ZipException e) {
+                        throw new IOException("failed to add " + sourceFile + " as " + entry.getName(), e);
+                    }
+                    entryStarted(sourceFile);
+                    long copied = transfer(sourceFile, target);
+                    checkCopied(sourceFile, size, copied);
+                    zip.closeEntry();
+                    entryWritten(sourceFile, copied);
+                    numFiles++;
+                }
+            }
+            return numFiles;
+        }
+
+        private long toDosTime(File sourceFile) {
+            if (entryTime == null) {
+                return sourceFile.lastModified();
+            }
+            // a fixed entry time is recorded as the same date and time in every time zone
+            return entryTime - TimeZone.getDefault().getOffset(entryTime);
+        }
+
+        private long computeCrc(File sourceFile, long size) throws IOException {
+            if (crcBuffer == null) {
+                crcBuffer = ByteBuffer.allocate(CRC_BUFFER_SIZE);
+            }
+            CRC32 crc = new CRC32();
+            long total = 0;
+            try (ReadableByteChannel input = SourceArchive.EntryFile.openChannel(sourceFile)) {
+                crcBuffer.clear();
+                int n;
+                while ((n = input.read(crcBuffer)) != -1) {
+                    crcBuffer.flip();
+                    crc.update(crcBuffer.array(), 0, n);
+                    crcBuffer.clear();
+                    total += n;
+                }
+            }
+            checkCopied(sourceFile, size, total);
+            return crc.getValue();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.github.mike10004.catmvnplugin;
+
+import java.io.File;
+
+/**
+ * Specification of an output file and the filesets whose files are concatenated to produce it.
+ */
+public class Bundle {
+
+    private OrderableFileSet[] sources;
+
+    private File outputFile;
+
+    public Bundle() {
+    }
+
+    public Bundle(OrderableFileSet[] sources, File outputFile) {
+        this.sources = sources;
+        this.outputFile = outputFile;
+    }
+
+    public OrderableFileSet[] getSources() {
+        return sources;
+    }
+
+    public void setSources(OrderableFileSet[] sources) {
+        this.sources = sources;
+    }
+
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    public void setOutputFile(File outputFile) {
+        this.outputFile = outputFile;
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.mike10004.catmvnplugin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Service interface for codecs that compress the output file as it is written.
+ * Implementations are discovered with {@link java.util.ServiceLoader}, so a codec
+ * provided by a dependency of the plugin can be selected by name with the
+ * {@code compression} parameter.
+ */
+public interface CompressionCodec {
+
+    /**
+     * Gets the name by which this codec is selected.
+     * @return the codec name
+     */
+    String getName();
+
+    /**
+     * Gets the suffix appended to the output file pathname to produce the
+     * pathname of the compressed file, including the leading dot.
+     * @return the file extension
+     */
+    String getFileExtension();
+
+    /**
+     * Wraps an output stream such that bytes written to the returned stream are
+     * compressed and written to the given stream. Closing the returned stream
+     * must finish the compressed stream and close the given stream.
+     * @param output the stream to which compressed bytes are written
+     * @return the stream to which uncompressed bytes are to be written
+     * @throws IOException on I/O error
+     */
+    OutputStream compress(OutputStream output) throws IOException;
+
+    /**
+     * Wraps an output stream such that bytes written to the returned stream are
+     * compressed on multiple threads. Codecs that do not support parallel compression
+     * need not override this method; the default implementation ignores the number
+     * of threads and returns the same stream as {@link #compress(OutputStream)}.
+     * @param output the stream to which compressed bytes are written
+     * @param threads the number of compression threads
+     * @return the stream to which uncompressed bytes are to be written
+     * @throws IOException on I/O error
+     */
+    default OutputStream compress(OutputStream output, int threads) throws IOException {
+        return compress(output);
+    }
+
+}
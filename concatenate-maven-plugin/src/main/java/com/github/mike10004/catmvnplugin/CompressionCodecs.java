@@ -0,0 +1,43 @@
+package com.github.mike10004.catmvnplugin;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Static utility methods relating to compression codecs.
+ */
+class CompressionCodecs {
+
+    private CompressionCodecs() {}
+
+    /**
+     * Finds the codec with a given name among the codecs available to a class loader.
+     * @param name the codec name
+     * @param classLoader the class loader used to load codec providers
+     * @return the codec, or null if no codec has the name
+     */
+    @Nullable
+    public static CompressionCodec forName(String name, ClassLoader classLoader) {
+        for (CompressionCodec codec : ServiceLoader.load(CompressionCodec.class, classLoader)) {
+            if (name.equals(codec.getName())) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the names of the codecs available to a class loader.
+     * @param classLoader the class loader used to load codec providers
+     * @return the list of names
+     */
+    public static List<String> getNames(ClassLoader classLoader) {
+        List<String> names = new ArrayList<>();
+        for (CompressionCodec codec : ServiceLoader.load(CompressionCodec.class, classLoader)) {
+            names.add(codec.getName());
+        }
+        return names;
+    }
+}
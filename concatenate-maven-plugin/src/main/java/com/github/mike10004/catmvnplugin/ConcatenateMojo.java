@@ -7,28 +7,52 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.shared.model.fileset.FileSet;
-import org.apache.maven.shared.model.fileset.util.FileSetManager;
 
 import javax.annotation.Nullable;
-import javax.annotation.concurrent.NotThreadSafe;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.zip.Checksum;
 
 import static java.util.Objects.requireNonNull;
 
-@Mojo(name = "cat", defaultPhase = LifecyclePhase.PREPARE_PACKAGE)
-@NotThreadSafe
+/**
+ * Goal that concatenates source files. Maven creates an instance per execution, so executions
+ * share no mutable state; output files are claimed for the duration of an execution, so that
+ * concurrently running executions in a parallel build do not write the same file.
+ */
+@Mojo(name = "cat", defaultPhase = LifecyclePhase.PREPARE_PACKAGE, threadSafe = true)
 @SuppressWarnings("WeakerAccess")
 public class ConcatenateMojo extends org.apache.maven.plugin.AbstractMojo {
 
@@ -39,6 +63,40 @@ public class ConcatenateMojo extends org.apache.maven.plugin.AbstractMojo {
     @Parameter
     private File outputFile;
 
+    /**
+     * Additional output files to produce, each with its own source filesets. All other
+     * parameters apply to every bundle.
+     */
+    @SuppressWarnings({"MismatchedReadAndWriteOfArray", "unused"})
+    @Parameter
+    private Bundle[] bundles;
+
+    /**
+     * Flag that enables listing each distinct fileset directory only once per execution,
+     * no matter how many filesets (across all bundles) refer to it.
+     */
+    @Parameter(defaultValue = "true")
+    private boolean shareDirectoryScans = true;
+
+    /**
+     * Approximate maximum number of bytes of pathnames in each run sorted in memory when
+     * sorting the files included by a fileset. Longer lists are sorted in runs that are written
+     * to temporary files in the state directory and merged. Set to 0 to sort in one run. The
+     * budget covers only the sort runs: the list of included files is held in memory anyway
+     * when directory scans are shared, which is the default, and the collected source files of
+     * a bundle are held in memory until it is written.
+     */
+    @Parameter(defaultValue = "67108864")
+    private long sortMemoryBudget = OrderableFileSetManager.DEFAULT_SORT_MEMORY_BUDGET;
+
+    /**
+     * Flag that enables persisting the files included by each fileset in the state directory.
+     * A persisted result is reused by later builds as long as none of the directories listed
+     * to produce it has been modified. Enabling this also enables sharing directory scans.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean useScanCache;
+
     /**
      * Flag that indicates whether an error should occur if the set of source filesets
      * does not result in any source files to be concatenated.
@@ -53,16 +111,248 @@ public class ConcatenateMojo extends org.apache.maven.plugin.AbstractMojo {
     @Parameter
     private String divider = "";
 
+    private static final int COMPRESSED_OUTPUT_BUFFER_SIZE = 64 * 1024;
+
     private static final String DEFAULT_DIVIDER_CHARSET = "${project.build.sourceEncoding}";
 
     @Parameter(defaultValue=DEFAULT_DIVIDER_CHARSET)
     private String dividerCharset;
 
+    /**
+     * Template of text written before the content of each source file. Placeholders
+     * {@code ${relativePath}}, {@code ${path}}, {@code ${fileName}}, {@code ${size}}, and
+     * {@code ${index}} are replaced with details of the source file. The text is
+     * encoded with the divider charset.
+     */
+    @Parameter
+    private String header;
+
+    /**
+     * Template of text written after the content of each source file, with the same
+     * placeholders as {@code header}.
+     */
+    @Parameter
+    private String footer;
+
+    /**
+     * Flag that enables removing a UTF-8 byte order mark from the start of each source file.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean stripBom;
+
+    /**
+     * Regular expression that identifies lines to omit from the output. A line is dropped,
+     * along with its terminator, if the pattern is found anywhere in it.
+     */
+    @Parameter
+    private String dropLinesMatching;
+
+    /**
+     * Flag that enables terminating the last line of each source file if it is not terminated.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean ensureTrailingNewline;
+
+    /**
+     * Charset used to decode lines that are matched against {@code dropLinesMatching}.
+     */
+    @Parameter(defaultValue = DEFAULT_DIVIDER_CHARSET)
+    private String sourceEncoding;
+
+    /**
+     * Strategy for copying bytes from source files to the output file.
+     */
+    @Parameter(defaultValue = "channel")
+    private WriteStrategy writeStrategy = WriteStrategy.channel;
+
+    /**
+     * Number of threads that read source files ahead of the writer if the write strategy is {@code pipelined}.
+     */
+    @Parameter(defaultValue = "4")
+    private int readerThreads = 4;
+
+    /**
+     * Maximum number of bytes of source file content held in memory if the write strategy is {@code pipelined}.
+     */
+    @Parameter(defaultValue = "67108864")
+    private long maxInFlightBytes = 64 * 1024 * 1024;
+
+    /**
+     * Minimum size of a source file that is memory-mapped and written in large slices, if the
+     * write strategy is {@code channel} or {@code pipelined} and the output is not written directly
+     * to a file (for example, because it is compressed). Set to -1 to never map source files.
+     */
+    @Parameter(defaultValue = "16777216")
+    private long mapThreshold = Concatenator.ChannelConcatenator.DEFAULT_MAP_THRESHOLD;
+
+    /**
+     * Flag that enables skipping the concatenation if the output file is up to date. The output
+     * file is considered up to date if the list of source files, their sizes and modification
+     * times, and the settings that affect the output are the same as they were when the output
+     * file was last written by this plugin, and the output file has not been modified since.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean incremental;
+
+    /**
+     * Name of the codec used to compress the output, such as {@code gzip}. The compressed
+     * output is written to the output file pathname plus the codec file extension. Codecs
+     * other than the built-in ones can be provided by a plugin dependency that implements
+     * {@link CompressionCodec}.
+     */
+    @Parameter
+    private String compression;
+
+    /**
+     * Flag that indicates whether the uncompressed output file is also written, in the same
+     * pass as the compressed file, if {@code compression} is set.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean keepUncompressed;
+
+    /**
+     * Number of threads used to compress the output. With more than one thread, codecs
+     * that support it split the output into blocks that are compressed in parallel; for
+     * {@code gzip}, each block becomes a separate member of a multi-member gzip file.
+     */
+    @Parameter(defaultValue = "1")
+    private int compressionThreads = 1;
+
+    /**
+     * Format of an archive to write instead of a flat concatenation: {@code zip} or
+     * {@code tar}. Each source file becomes an entry named by its pathname relative to
+     * the directory of its fileset, in the same order it would be concatenated. A tar
+     * archive may be compressed with {@code compression}; a zip archive compresses its
+     * entries itself.
+     */
+    @Parameter
+    private ArchiveConcatenator.Format archiveFormat;
+
+    /**
+     * Flag that enables storing zip entries without compression.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean storeArchiveEntries;
+
+    /**
+     * Modification time recorded for every archive entry, for reproducible archives, as
+     * an ISO-8601 date and time with offset or a number of seconds since the epoch. If
+     * not set, the modification time of each source file is recorded.
+     */
+    @Parameter(defaultValue = "${project.build.outputTimestamp}")
+    private String outputTimestamp;
+
+    @Nullable
+    private Long archiveEntryTime;
+
+    @Nullable
+    private CompressionCodec compressionCodec;
+
+    /**
+     * Checksums computed while the output is written: any of {@code sha256}, {@code md5}, and
+     * {@code crc32c}. For each written file, a sidecar file named after the written file plus
+     * the algorithm name, such as {@code output.js.sha256}, is written next to it, in the format
+     * used by {@code sha256sum}. Computing checksums requires the output bytes to pass through
+     * the JVM, so file channel transfers are not used.
+     */
+    @Parameter
+    private ChecksumAlgorithm[] checksums;
+
+    /**
+     * Prefix of project properties that are set to the checksums of the written files, so
+     * that later plugins can use them. For each written file and algorithm, property
+     * {@code <prefix>.<filename>.<algorithm>} is set, and for the first file written by
+     * the execution, {@code <prefix>.<algorithm>} is also set.
+     */
+    @Parameter
+    private String checksumPropertyPrefix;
+
+    @Parameter(defaultValue = "${project.properties}", readonly = true)
+    private Properties projectProperties;
+
+    /**
+     * Formats of an index of where each source file is in the output: {@code binary} and
+     * {@code json}. Index files are written next to the output file, with extensions
+     * {@code .idx} and {@code .idx.json}. Offsets refer to the uncompressed output.
+     */
+    @Parameter
+    private OutputIndex.Format[] indexFormats;
+
+    /**
+     * Flag that enables recording the SHA-256 hash of each entry in the index. Hashing
+     * requires the output bytes to pass through the JVM.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean hashIndexEntries;
+
+    /**
+     * Flag that enables writing a source map (revision 3) next to the output file, with
+     * extension {@code .map}, and appending a {@code sourceMappingURL} comment to the output.
+     * Source files are assumed to be encoded in UTF-8.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean sourceMap;
+
+    /**
+     * Flag that enables mapping through the source map of a source file, if one exists at
+     * the source file pathname plus {@code .map}, so that the output is mapped to the
+     * original sources instead of the source file.
+     */
+    @Parameter(defaultValue = "true")
+    private boolean chainSourceMaps = true;
+
+    /**
+     * Flag that enables forcing output files to storage before they are moved into place.
+     * Output is always written to a temporary file in the same directory and renamed, so
+     * that an interrupted build never leaves a partial output file.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean syncOutput;
+
+    /**
+     * Flag that enables writing a JSON report of the time spent scanning, collecting, and
+     * writing files, and of the number of files and bytes read and written. The report is
+     * written to {@code metrics/<execution id>.json} in the state directory.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean writeMetrics;
+
+    /**
+     * Flag that enables logging a one-line summary of the execution metrics.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean logMetrics;
+
+    @Parameter(defaultValue = "${settings.localRepository}", readonly = true)
+    private String localRepository;
+
+    @Parameter(defaultValue = "${mojoExecution.executionId}", readonly = true)
+    private String executionId = "default";
+
+    @Parameter(defaultValue = "${project.groupId}:${project.artifactId}", readonly = true)
+    private String projectId = "";
+
+    /**
+     * Directory where the plugin stores state between builds.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/concatenate-maven-plugin")
+    private File stateDirectory;
+
     @SuppressWarnings("unused")
     public enum RepeatedFileStrategy {
         repeat,
         ignore,
-        fail;
+        fail,
+
+        /**
+         * Skip files whose content is the same as that of a file already included.
+         */
+        dedupeByContent,
+
+        /**
+         * Fail if the content of a file is the same as that of a file already included.
+         */
+        failOnRepeatedContent;
 
         public Collection<File> createBucket() {
             switch (this) {
@@ -72,6 +362,10 @@ public class ConcatenateMojo extends org.apache.maven.plugin.AbstractMojo {
                     return new LinkedHashSet<>();
                 case fail:
                     return new NoRepeatsSet<>();
+                case dedupeByContent:
+                    return new ContentDedupingCollection(false);
+                case failOnRepeatedContent:
+                    return new ContentDedupingCollection(true);
                 default:
                     throw new IllegalStateException("bug: strategy " + this + " not handled");
             }
@@ -79,6 +373,74 @@ public class ConcatenateMojo extends org.apache.maven.plugin.AbstractMojo {
 
     }
 
+    @SuppressWarnings("unused")
+    public enum WriteStrategy {
+
+        /**
+         * Copy bytes through a heap buffer with input and output streams.
+         */
+        stream,
+
+        /**
+         * Copy bytes with file channel transfers, which lets the operating system
+         * avoid copying file content into user space where supported.
+         */
+        channel,
+
+        /**
+         * Read upcoming source files on a pool of reader threads while writing
+         * in order on the mojo thread. Suits source lists with many small files.
+         */
+        pipelined
+    }
+
+    public enum ChecksumAlgorithm {
+        sha256,
+        md5,
+        crc32c;
+
+        public String getFileExtension() {
+            return "." + name();
+        }
+
+        /**
+         * Creates a hasher that computes checksums with this algorithm.
+         * @return a new hasher
+         * @throws UnsupportedOperationException if the algorithm is not available in this JVM
+         */
+        DigestingOutputStream.Hasher createHasher() {
+            switch (this) {
+                case sha256:
+                    return DigestingOutputStream.Hasher.of(newMessageDigest("SHA-256"));
+                case md5:
+                    return DigestingOutputStream.Hasher.of(newMessageDigest("MD5"));
+                case crc32c:
+                    return DigestingOutputStream.Hasher.of(newCrc32c());
+                default:
+                    throw new IllegalStateException("bug: algorithm " + this + " not handled");
+            }
+        }
+
+        private static MessageDigest newMessageDigest(String algorithm) {
+            try {
+                return MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new UnsupportedOperationException(e);
+            }
+        }
+
+        /*
+         * CRC32C was added in Java 9, and this plugin runs on Java 8.
+         */
+        private static Checksum newCrc32c() {
+            try {
+                return (Checksum) Class.forName("java.util.zip.CRC32C").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new UnsupportedOperationException("crc32c requires Java 9 or later", e);
+            }
+        }
+    }
+
     static class RepeatedItemException extends IllegalArgumentException {
         public RepeatedItemException(String s) {
             super(s);
@@ -105,6 +467,10 @@ public class ConcatenateMojo extends org.apache.maven.plugin.AbstractMojo {
         map.put("directory", fileset.getDirectory());
         map.put("includes", fileset.getIncludes());
         map.put("excludes", fileset.getExcludes());
+        if (fileset instanceof OrderableFileSet && isArchiveFileset((OrderableFileSet) fileset)) {
+            map.put("archive", ((OrderableFileSet) fileset).getArchive());
+            map.put("dependency", ((OrderableFileSet) fileset).getDependency());
+        }
         return "FileSet{" + map.toString() + "}";
     }
 
@@ -113,39 +479,572 @@ public class ConcatenateMojo extends org.apache.maven.plugin.AbstractMojo {
     }
 
     public void execute() throws MojoExecutionException, MojoFailureException {
-        if (sources == null) {
+        List<Bundle> allBundles = prepare();
+        OutputClaims.Claim claim = claimOutputs(allBundles);
+        try {
+            execute(allBundles);
+        } finally {
+            claim.close();
+        }
+    }
+
+    /**
+     * Checks the configuration and resolves the settings derived from it.
+     * @return the list of bundles to produce
+     * @throws MojoExecutionException if the configuration is invalid
+     */
+    List<Bundle> prepare() throws MojoExecutionException {
+        List<Bundle> allBundles = getBundles();
+        compressionCodec = resolveCompressionCodec();
+        checkDropLinesMatching();
+        checkSourceEncoding(allBundles);
+        checkEntryTemplates();
+        checkArchiveFormat(allBundles);
+        checkChecksums();
+        checkWriteStrategy();
+        return allBundles;
+    }
+
+    /**
+     * Claims the files written for a list of bundles.
+     * @param allBundles the bundles
+     * @return the claim, which must be closed when the files have been written
+     * @throws MojoExecutionException if another execution has claimed any of the files
+     */
+    OutputClaims.Claim claimOutputs(List<Bundle> allBundles) throws MojoExecutionException {
+        List<File> allWrittenFiles = allBundles.stream()
+                .map(Bundle::getOutputFile)
+                .filter(Objects::nonNull)
+                .flatMap(outputFile -> getProducedFiles(outputFile).stream())
+                .collect(Collectors.toList());
+        try {
+            return OutputClaims.claim(allWrittenFiles, describeExecution());
+        } catch (OutputClaims.OutputCollisionException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+
+    private String describeExecution() {
+        return executionId + " in " + projectId;
+    }
+
+    private void execute(List<Bundle> allBundles) throws MojoExecutionException {
+        OrderableFileSetManager fileSetManager = createFileSetManager();
+        ScanCache scanCache = useScanCache ? new ScanCache(getScanCacheDirectory()) : null;
+        if (shareDirectoryScans || scanCache != null) {
+            List<OrderableFileSet> allFilesets = allBundles.stream()
+                    .flatMap(bundle -> Stream.of(bundle.getSources()))
+                    .filter(fileset -> !isArchiveFileset(fileset) && fileset.getScanner() == OrderableFileSet.Scanner.standard)
+                    .collect(Collectors.toList());
+            fileSetManager.setDirectoryListingCache(new DirectoryListingCache(allFilesets, scanCache));
+        }
+        ExecutionMetrics metrics = new ExecutionMetrics(executionId);
+        try (SourceArchive.Registry archives = new SourceArchive.Registry()) {
+            for (Bundle bundle : allBundles) {
+                execute(bundle, fileSetManager, archives, metrics.addBundle(bundle.getOutputFile()));
+            }
+        } catch (IOException e) {
+            getLog().warn("failed to close source archive: " + e);
+        }
+        metrics.finish();
+        if (checksumPropertyPrefix != null && projectProperties != null) {
+            exposeChecksums(allBundles);
+        }
+        if (scanCache != null) {
+            getLog().info(String.format("scan cache: %d directory listing(s) reused, %d director(ies) listed", scanCache.getHits(), scanCache.getMisses()));
+        }
+        if (logMetrics) {
+            getLog().info("metrics: " + metrics.summarize());
+        }
+        if (writeMetrics) {
+            File reportFile = getMetricsReportFile();
+            try {
+                metrics.write(reportFile);
+            } catch (IOException e) {
+                throw new MojoExecutionException("failed to write metrics report " + reportFile, e);
+            }
+        }
+    }
+
+    /**
+     * Creates a file set manager that does not share directory listings.
+     * @return a new file set manager
+     */
+    OrderableFileSetManager createFileSetManager() {
+        OrderableFileSetManager fileSetManager = new OrderableFileSetManager();
+        fileSetManager.setSortMemoryBudget(sortMemoryBudget);
+        if (stateDirectory != null) {
+            fileSetManager.setSortTempDirectory(new File(stateDirectory, "sort"));
+        }
+        return fileSetManager;
+    }
+
+    /**
+     * Sets project properties to the checksums recorded in the sidecar files of the
+     * written files. Sidecar files are read rather than checksums being retained in
+     * memory, so that properties are also set if an up-to-date output was not rewritten.
+     */
+    private void exposeChecksums(List<Bundle> allBundles) throws MojoExecutionException {
+        boolean first = true;
+        for (Bundle bundle : allBundles) {
+            for (File writtenFile : getWrittenFiles(bundle.getOutputFile())) {
+                for (ChecksumAlgorithm algorithm : getChecksums()) {
+                    File checksumFile = getChecksumFile(writtenFile, algorithm);
+                    String checksum;
+                    try {
+                        checksum = new String(Files.readAllBytes(checksumFile.toPath()), StandardCharsets.US_ASCII).split("\\s+", 2)[0];
+                    } catch (IOException e) {
+                        throw new MojoExecutionException("failed to read checksum file " + checksumFile, e);
+                    }
+                    projectProperties.setProperty(checksumPropertyPrefix + "." + writtenFile.getName() + "." + algorithm, checksum);
+                    if (first) {
+                        projectProperties.setProperty(checksumPropertyPrefix + "." + algorithm, checksum);
+                    }
+                }
+                first = false;
+            }
+        }
+    }
+
+    static File getChecksumFile(File writtenFile, ChecksumAlgorithm algorithm) {
+        return new File(writtenFile.getPath() + algorithm.getFileExtension());
+    }
+
+    File getMetricsReportFile() {
+        if (stateDirectory == null) {
+            throw new IllegalStateException("state directory not set");
+        }
+        return new File(new File(stateDirectory, "metrics"), executionId + ".json");
+    }
+
+    @Nullable
+    private CompressionCodec resolveCompressionCodec() throws MojoExecutionException {
+        if (Guava.Strings.isNullOrEmpty(compression)) {
+            return null;
+        }
+        if (compressionThreads < 1) {
+            throw new MojoExecutionException("compressionThreads must be positive: " + compressionThreads);
+        }
+        ClassLoader classLoader = getClass().getClassLoader();
+        CompressionCodec codec = CompressionCodecs.forName(compression, classLoader);
+        if (codec == null) {
+            throw new MojoExecutionException("compression codec not found: " + compression + "; available codecs are " + CompressionCodecs.getNames(classLoader));
+        }
+        return codec;
+    }
+
+    private void checkWriteStrategy() throws MojoExecutionException {
+        if (writeStrategy != WriteStrategy.pipelined) {
+            return;
+        }
+        if (readerThreads < 1) {
+            throw new MojoExecutionException("readerThreads must be positive: " + readerThreads);
+        }
+        if (maxInFlightBytes < 0) {
+            throw new MojoExecutionException("maxInFlightBytes must be nonnegative: " + maxInFlightBytes);
+        }
+    }
+
+    private void checkArchiveFormat(List<Bundle> allBundles) throws MojoExecutionException {
+        archiveEntryTime = getOutputTimestamp();
+        if (archiveFormat == null) {
+            return;
+        }
+        List<String> unsupported = new ArrayList<>();
+        if (!Guava.Strings.isNullOrEmpty(divider)) {
+            unsupported.add("divider");
+        }
+        if (!Guava.Strings.isNullOrEmpty(header) || !Guava.Strings.isNullOrEmpty(footer)) {
+            unsupported.add("header/footer");
+        }
+        if (stripBom || getDropPattern() != null || ensureTrailingNewline) {
+            unsupported.add("line filters");
+        }
+        if (setsLineEnding(allBundles)) {
+            unsupported.add("fileset lineEnding");
+        }
+        if (sourceMap) {
+            unsupported.add("sourceMap");
+        }
+        if (archiveFormat == ArchiveConcatenator.Format.zip) {
+            if (compressionCodec != null) {
+                unsupported.add("compression");
+            }
+            if (!getIndexFormats().isEmpty()) {
+                unsupported.add("indexFormats");
+            }
+        }
+        if (!unsupported.isEmpty()) {
+            throw new MojoExecutionException("archiveFormat " + archiveFormat + " cannot be combined with " + String.join(", ", unsupported));
+        }
+    }
+
+    /**
+     * Gets the modification time to record for archive entries.
+     * @return the time in milliseconds since the epoch, or null if not set
+     * @throws MojoExecutionException if the output timestamp is not valid
+     */
+    @Nullable
+    private Long getOutputTimestamp() throws MojoExecutionException {
+        // as with other plugins, a single character (such as "0") means the timestamp is not set
+        if (outputTimestamp == null || outputTimestamp.length() < 2 || outputTimestamp.startsWith("${")) {
+            return null;
+        }
+        try {
+            if (outputTimestamp.chars().allMatch(Character::isDigit)) {
+                return Long.parseLong(outputTimestamp) * 1000;
+            }
+            return OffsetDateTime.parse(outputTimestamp).toInstant().toEpochMilli();
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new MojoExecutionException("outputTimestamp is not an ISO-8601 date and time with offset or a number of seconds: " + outputTimestamp, e);
+        }
+    }
+
+    private void checkChecksums() throws MojoExecutionException {
+        for (ChecksumAlgorithm algorithm : getChecksums()) {
+            try {
+                algorithm.createHasher();
+            } catch (UnsupportedOperationException e) {
+                throw new MojoExecutionException("checksum algorithm not available: " + algorithm, e);
+            }
+        }
+    }
+
+    private List<ChecksumAlgorithm> getChecksums() {
+        return checksums == null ? Collections.emptyList() : Arrays.asList(checksums);
+    }
+
+    private void checkDropLinesMatching() throws MojoExecutionException {
+        try {
+            getDropPattern();
+        } catch (PatternSyntaxException e) {
+            throw new MojoExecutionException("dropLinesMatching is not a valid regular expression: " + dropLinesMatching, e);
+        }
+    }
+
+    /**
+     * Checks that the source encoding can be filtered line by line, if any line filter applies.
+     * Lines are split on the bytes of {@code \n} and {@code \r}, so the encoding must encode
+     * those characters as single ASCII bytes.
+     */
+    private void checkSourceEncoding(List<Bundle> allBundles) throws MojoExecutionException {
+        if (!stripBom && getDropPattern() == null && !ensureTrailingNewline && !setsLineEnding(allBundles)) {
+            return;
+        }
+        Charset charset;
+        try {
+            charset = getSourceCharset();
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("sourceEncoding is not a supported charset: " + sourceEncoding, e);
+        }
+        if (!LineFilter.isAsciiCompatible(charset)) {
+            throw new MojoExecutionException("line filters do not support sourceEncoding " + charset.name() + "; line terminators must be encoded as single ASCII bytes");
+        }
+    }
+
+    /**
+     * Checks whether any fileset sets a line ending other than {@code keep}. Line endings that
+     * are not recognized count as set; they are reported when the fileset is scanned.
+     */
+    private static boolean setsLineEnding(List<Bundle> allBundles) {
+        return allBundles.stream()
+                .flatMap(bundle -> Stream.of(bundle.getSources() == null ? new OrderableFileSet[0] : bundle.getSources()))
+                .anyMatch(fileset -> fileset != null && !Guava.Strings.isNullOrEmpty(fileset.getLineEnding()) && !"keep".equals(fileset.getLineEnding()));
+    }
+
+    private void checkEntryTemplates() throws MojoExecutionException {
+        try {
+            compileEntryTemplate(header);
+            compileEntryTemplate(footer);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("invalid header or footer template: " + e.getMessage(), e);
+        }
+    }
+
+    @Nullable
+    private EntryTemplate compileEntryTemplate(@Nullable String template) {
+        if (Guava.Strings.isNullOrEmpty(template)) {
+            return null;
+        }
+        return EntryTemplate.compile(template, getDividerCharset());
+    }
+
+    @Nullable
+    private Pattern getDropPattern() {
+        if (Guava.Strings.isNullOrEmpty(dropLinesMatching)) {
+            return null;
+        }
+        return Pattern.compile(dropLinesMatching);
+    }
+
+    /**
+     * Gets the list of bundles to produce. The bundle defined by the top-level {@code sources}
+     * and {@code outputFile} parameters, if any, is first.
+     * @return the list of bundles
+     * @throws MojoExecutionException if the bundle configuration is invalid
+     */
+    private List<Bundle> getBundles() throws MojoExecutionException {
+        List<Bundle> allBundles = new ArrayList<>();
+        if (sources != null) {
+            allBundles.add(new Bundle(sources, outputFile));
+        }
+        if (bundles != null) {
+            for (int i = 0; i < bundles.length; i++) {
+                Bundle bundle = bundles[i];
+                if (bundle.getSources() == null) {
+                    throw new MojoExecutionException("sources filesets not set on bundle at index " + i);
+                }
+                if (bundle.getOutputFile() == null) {
+                    throw new MojoExecutionException("output file not set on bundle at index " + i);
+                }
+                allBundles.add(bundle);
+            }
+        }
+        if (allBundles.isEmpty()) {
             throw new IllegalStateException("sources filesets not yet set");
         }
+        Set<File> outputFiles = new HashSet<>();
+        for (Bundle bundle : allBundles) {
+            if (bundle.getOutputFile() != null && !outputFiles.add(bundle.getOutputFile().getAbsoluteFile())) {
+                throw new MojoExecutionException("more than one bundle has output file " + bundle.getOutputFile());
+            }
+        }
+        return allBundles;
+    }
+
+    static boolean isArchiveFileset(OrderableFileSet fileset) {
+        return fileset.getArchive() != null || fileset.getDependency() != null;
+    }
+
+    /**
+     * Gets the archive whose entries are the files of a fileset.
+     * @param fileset the fileset
+     * @param i index of the fileset, for error messages
+     * @return the archive file, or null if the fileset selects files from a directory
+     * @throws MojoExecutionException if the archive is not set correctly or does not exist
+     */
+    @Nullable
+    File resolveArchive(OrderableFileSet fileset, int i) throws MojoExecutionException {
+        if (fileset.getArchive() != null && fileset.getDependency() != null) {
+            throw new MojoExecutionException("fileset at index " + i + " sets both archive and dependency");
+        }
+        File archive;
+        if (fileset.getArchive() != null) {
+            archive = new File(fileset.getArchive());
+        } else if (fileset.getDependency() != null) {
+            archive = getLocalRepositoryFile(fileset.getDependency());
+        } else {
+            return null;
+        }
+        if (!archive.isFile()) {
+            throw new MojoExecutionException("archive of fileset at index " + i + " not found: " + archive
+                    + (fileset.getDependency() == null ? "" : "; declare " + fileset.getDependency() + " as a dependency so that it is downloaded"));
+        }
+        return archive;
+    }
+
+    /**
+     * Gets the pathname of an artifact in the local repository.
+     * @param coordinates {@code groupId:artifactId[:extension[:classifier]]:version}
+     * @return the pathname
+     * @throws MojoExecutionException if the coordinates are invalid or the local repository is not known
+     */
+    File getLocalRepositoryFile(String coordinates) throws MojoExecutionException {
+        String[] parts = coordinates.trim().split(":", -1);
+        if (parts.length < 3 || parts.length > 5 || Arrays.stream(parts).anyMatch(String::isEmpty)) {
+            throw new MojoExecutionException("dependency must be groupId:artifactId[:extension[:classifier]]:version: " + coordinates);
+        }
+        if (Guava.Strings.isNullOrEmpty(localRepository)) {
+            throw new MojoExecutionException("local repository not known; cannot resolve " + coordinates);
+        }
+        String groupId = parts[0], artifactId = parts[1], version = parts[parts.length - 1];
+        String extension = parts.length >= 4 ? parts[2] : "jar";
+        String classifier = parts.length == 5 ? "-" + parts[3] : "";
+        File directory = new File(new File(new File(localRepository, groupId.replace('.', File.separatorChar)), artifactId), version);
+        return new File(directory, artifactId + "-" + version + classifier + "." + extension);
+    }
+
+    private void execute(Bundle bundle, OrderableFileSetManager fileSetManager, SourceArchive.Registry archives, ExecutionMetrics.BundleMetrics metrics) throws MojoExecutionException {
+        Map<File, SourceInfo> sourceInfos = new HashMap<>();
+        Collection<File> sourceFiles = collectSourceFiles(bundle, fileSetManager, archives, sourceInfos, metrics);
+        if (incremental) {
+            writeConcatenatedIfStale(sourceFiles, bundle.getOutputFile(), sourceInfos, metrics);
+        } else {
+            concatenate(sourceFiles, bundle.getOutputFile(), sourceInfos, metrics);
+        }
+    }
+
+    /**
+     * Collects the source files of a bundle, in output order.
+     * @param bundle the bundle
+     * @param fileSetManager the file set manager
+     * @param archives archives opened during the execution
+     * @param sourceInfos map to which details of each source file are added
+     * @param metrics metrics of the bundle
+     * @return the source files
+     * @throws MojoExecutionException if a fileset is invalid or cannot be scanned, or yields no files
+     */
+    Collection<File> collectSourceFiles(Bundle bundle, OrderableFileSetManager fileSetManager, SourceArchive.Registry archives, Map<File, SourceInfo> sourceInfos, ExecutionMetrics.BundleMetrics metrics) throws MojoExecutionException {
+        OrderableFileSet[] sources = bundle.getSources();
         final Collection<File> sourceFiles = createBucket();
-        FileSetManager fileSetManager = new OrderableFileSetManager();
         getLog().debug(sources.length + " sources specified");
         for (int i = 0; i < sources.length; i++) {
             OrderableFileSet fileset = sources[i];
             String filesetDir = fileset.getDirectory();
-            if (filesetDir == null) {
+            File archiveFile = resolveArchive(fileset, i);
+            if (filesetDir == null && archiveFile == null) {
                 throw new MojoExecutionException("fileset directory not set on fileset at index " + i + ": " + describeFileset(fileset));
             }
-            File parent = new File(filesetDir);
-            String[] includedFiles = fileSetManager.getIncludedFiles( fileset );
-            if (!fileset.isIgnoreEmptyIncludedFilesList() && includedFiles.length == 0) {
-                throw new NoYieldFromFileSetException(fileset, i);
+            SourceArchive archive;
+            try {
+                archive = archiveFile == null ? null : archives.get(archiveFile);
+            } catch (IOException e) {
+                throw new MojoExecutionException("failed to open archive " + archiveFile + " of fileset at index " + i, e);
+            }
+            if (fileset.getScanThreads() < 1) {
+                throw new MojoExecutionException("scan threads must be positive on fileset at index " + i + ": " + fileset.getScanThreads());
             }
-            Stream.of(includedFiles).forEach(p -> {
-                File file = new File(parent, p);
-                boolean result = sourceFiles.add(file);
-                if (getLog().isDebugEnabled()) {
-                    getLog().debug("included file " + file + " (Collection.add = " + result + ")");
+            String lineEnding = fileset.getLineEnding();
+            try {
+                LineFilter.parseLineEnding(lineEnding);
+            } catch (IllegalArgumentException e) {
+                throw new MojoExecutionException("invalid line ending on fileset at index " + i + ": " + lineEnding, e);
+            }
+            long scanStart = System.nanoTime();
+            int numIncludedFiles = 0;
+            AtomicLong sortNanos = new AtomicLong();
+            try (Stream<String> includedFiles = archive == null ? fileSetManager.streamIncludedFiles(fileset, sortNanos::addAndGet) : fileSetManager.streamIncludedEntries(fileset, archive, sortNanos::addAndGet)) {
+                long bucketStart = System.nanoTime();
+                long sortNanosBeforeBucket = sortNanos.get();
+                Iterator<String> it = includedFiles.iterator();
+                while (it.hasNext()) {
+                    String includedFile = it.next();
+                    File file = archive == null ? new File(filesetDir, includedFile) : archive.getEntryFile(filesetDir, includedFile);
+                    boolean result = sourceFiles.add(file);
+                    sourceInfos.putIfAbsent(file, new SourceInfo(includedFile, lineEnding));
+                    if (getLog().isDebugEnabled()) {
+                        getLog().debug("included file " + file + " (Collection.add = " + result + ")");
+                    }
+                    numIncludedFiles++;
                 }
-            });
+                metrics.addFileset(archive == null ? filesetDir : archive.getFile() + "!/" + Guava.Strings.nullToEmpty(filesetDir), numIncludedFiles,
+                        bucketStart - scanStart - sortNanosBeforeBucket, sortNanos.get());
+                metrics.bucketNanos += System.nanoTime() - bucketStart - (sortNanos.get() - sortNanosBeforeBucket);
+            } catch (IOException e) {
+                throw new MojoExecutionException("failed to collect files from fileset at index " + i, e);
+            } catch (UncheckedIOException e) {
+                throw new MojoExecutionException("failed to collect files from fileset at index " + i, e.getCause());
+            }
+            if (!fileset.isIgnoreEmptyIncludedFilesList() && numIncludedFiles == 0) {
+                throw new NoYieldFromFileSetException(fileset, i);
+            }
         }
+        metrics.sourceFiles = sourceFiles.size();
         if (!ignoreEmptySourcesList && sourceFiles.isEmpty()) {
             throw new NoYieldFromAnyFilesetsException();
         }
+        return sourceFiles;
+    }
+
+    private void concatenate(Collection<File> sourceFiles, File outputFile, Map<File, SourceInfo> sourceInfos, ExecutionMetrics.BundleMetrics metrics) throws MojoExecutionException {
+        long writeStart = System.nanoTime();
         try {
-            writeConcatenated(sourceFiles);
+            writeConcatenated(sourceFiles, outputFile, sourceInfos, null, metrics);
         } catch (IOException e) {
             throw new MojoExecutionException("failed to copy source files to destination " + outputFile, e);
         }
+        metrics.writeNanos = System.nanoTime() - writeStart;
+    }
+
+    private void writeConcatenatedIfStale(Collection<File> sourceFiles, File outputFile, Map<File, SourceInfo> sourceInfos, ExecutionMetrics.BundleMetrics metrics) throws MojoExecutionException {
+        if (outputFile == null) {
+            throw new IllegalStateException("output file not set");
+        }
+        File manifestFile = getUpToDateManifestFile(outputFile);
+        UpToDateManifest manifest = createUpToDateManifest(sourceFiles, outputFile, sourceInfos);
+        List<File> producedFiles = getProducedFiles(outputFile);
+        try {
+            if (manifest.isUpToDate(manifestFile, producedFiles)) {
+                getLog().info("skipping concatenation because output file is up to date: " + outputFile.getName());
+                metrics.skipped = true;
+                return;
+            }
+            Files.deleteIfExists(manifestFile.toPath());
+        } catch (IOException e) {
+            throw new MojoExecutionException("failed to check manifest " + manifestFile, e);
+        }
+        concatenate(sourceFiles, outputFile, sourceInfos, metrics);
+        try {
+            manifest.write(manifestFile, producedFiles);
+        } catch (IOException e) {
+            throw new MojoExecutionException("failed to write manifest " + manifestFile, e);
+        }
+    }
+
+    /**
+     * Creates a description of the source files and of the settings that affect the content of the output file.
+     * @param sourceFiles the source files
+     * @param outputFile the output file
+     * @param sourceInfos details of the source files
+     * @return the manifest
+     */
+    private UpToDateManifest createUpToDateManifest(Collection<File> sourceFiles, File outputFile, Map<File, SourceInfo> sourceInfos) {
+        return new UpToDateManifest()
+                .setting("outputFile", outputFile.getAbsolutePath())
+                .setting("repeatedFileStrategy", repeatedFileStrategy)
+                .setting("divider", divider)
+                .setting("dividerCharset", dividerCharset)
+                .setting("header", header)
+                .setting("footer", footer)
+                .setting("defaultCharset", Charset.defaultCharset().name())
+                .setting("compression", compression)
+                .setting("keepUncompressed", keepUncompressed)
+                .setting("compressionThreads", compressionThreads)
+                .setting("checksums", getChecksums())
+                .setting("stripBom", stripBom)
+                .setting("dropLinesMatching", dropLinesMatching)
+                .setting("ensureTrailingNewline", ensureTrailingNewline)
+                .setting("sourceEncoding", sourceEncoding)
+                .setting("lineEndings", sourceFiles.stream().map(file -> getLineEnding(sourceInfos, file)).collect(Collectors.toList()))
+                .setting("indexFormats", getIndexFormats())
+                .setting("hashIndexEntries", hashIndexEntries)
+                .setting("archiveFormat", archiveFormat)
+                .setting("storeArchiveEntries", storeArchiveEntries)
+                .setting("outputTimestamp", archiveFormat == null ? null : outputTimestamp)
+                .setting("sourceMap", sourceMap)
+                .setting("chainSourceMaps", chainSourceMaps)
+                .sources(sourceFiles, file -> getRelativePath(sourceInfos, file))
+                .sources(sourceFiles.stream()
+                        .filter(SourceArchive.EntryFile.class::isInstance)
+                        .map(file -> ((SourceArchive.EntryFile) file).getArchiveFile())
+                        .distinct()
+                        .collect(Collectors.toList()))
+                .sources(sourceMap && chainSourceMaps
+                        ? sourceFiles.stream().map(SourceMapGenerator::getInputMapFile).collect(Collectors.toList())
+                        : Collections.emptyList());
+    }
+
+    File getScanCacheDirectory() {
+        if (stateDirectory == null) {
+            throw new IllegalStateException("state directory not set");
+        }
+        return new File(stateDirectory, "scan-cache");
+    }
+
+    /**
+     * Gets the pathname of the file that describes the inputs used to produce an output file.
+     * The filename includes a hash of the output file pathname, so that multiple executions
+     * that produce output files with the same name in different directories do not collide.
+     * @param outputFile the output file
+     * @return the manifest file
+     */
+    File getUpToDateManifestFile(File outputFile) {
+        if (stateDirectory == null) {
+            throw new IllegalStateException("state directory not set");
+        }
+        String outputPathname = outputFile.getAbsolutePath();
+        String filename = String.format("%s-%08x.manifest", outputFile.getName(), outputPathname.hashCode());
+        return new File(stateDirectory, filename);
     }
 
     static class NoYieldFromFileSetException extends MojoExecutionException {
@@ -173,26 +1072,345 @@ public class ConcatenateMojo extends org.apache.maven.plugin.AbstractMojo {
         return charset;
     }
 
-    protected void writeConcatenated(Iterable<File> sourceFiles) throws IOException {
-        byte[] dividerBytes = Guava.Strings.nullToEmpty(divider).getBytes(getDividerCharset());
+    protected Charset getSourceCharset() {
+        if (Guava.Strings.isNullOrEmpty(sourceEncoding) || DEFAULT_DIVIDER_CHARSET.equals(sourceEncoding)) {
+            return Charset.defaultCharset();
+        }
+        return Charset.forName(sourceEncoding.toUpperCase());
+    }
+
+    /**
+     * Writes the concatenation of source files to an output file, and to its compressed
+     * counterpart if compression is enabled.
+     * @param sourceFiles the source files
+     * @param outputFile the output file
+     * @return the number of source files written
+     * @throws IOException on I/O error
+     */
+    protected int writeConcatenated(Iterable<File> sourceFiles, File outputFile) throws IOException {
+        return writeConcatenated(sourceFiles, outputFile, Collections.emptyMap());
+    }
+
+    /**
+     * Details of a source file that are not part of its pathname.
+     */
+    static class SourceInfo {
+
+        /**
+         * Pathname of the file relative to the directory of the fileset that included it.
+         */
+        public final String relativePath;
+
+        @Nullable
+        public final String lineEnding;
+
+        public SourceInfo(String relativePath, @Nullable String lineEnding) {
+            this.relativePath = requireNonNull(relativePath);
+            this.lineEnding = lineEnding;
+        }
+    }
+
+    /**
+     * Writes the concatenation of source files to an output file, and to its compressed
+     * counterpart if compression is enabled.
+     * @param sourceFiles the source files
+     * @param outputFile the output file
+     * @param sourceInfos details of source files; files not in the map keep their line endings
+     * @return the number of source files written
+     * @throws IOException on I/O error
+     */
+    protected int writeConcatenated(Iterable<File> sourceFiles, File outputFile, Map<File, SourceInfo> sourceInfos) throws IOException {
+        return writeConcatenated(sourceFiles, outputFile, sourceInfos, null);
+    }
+
+    /**
+     * Writes the concatenation of source files to an output file, and to its compressed
+     * counterpart if compression is enabled.
+     * @param sourceFiles the source files
+     * @param outputFile the output file
+     * @param sourceInfos details of source files; files not in the map keep their line endings
+     * @param entryListener additional listener to notify as each source file is written, or null
+     * @return the number of source files written
+     * @throws IOException on I/O error
+     */
+    int writeConcatenated(Iterable<File> sourceFiles, File outputFile, Map<File, SourceInfo> sourceInfos, @Nullable Concatenator.EntryListener entryListener) throws IOException {
+        return writeConcatenated(sourceFiles, outputFile, sourceInfos, entryListener, null);
+    }
+
+    /**
+     * Writes the concatenation of source files to an output file, and to its compressed
+     * counterpart if compression is enabled.
+     * @param sourceFiles the source files
+     * @param outputFile the output file
+     * @param sourceInfos details of source files; files not in the map keep their line endings
+     * @param entryListener additional listener to notify as each source file is written, or null
+     * @param metrics metrics to which the files and bytes read and the bytes written are added, or null
+     * @return the number of source files written
+     * @throws IOException on I/O error
+     */
+    int writeConcatenated(Iterable<File> sourceFiles, File outputFile, Map<File, SourceInfo> sourceInfos, @Nullable Concatenator.EntryListener entryListener, @Nullable ExecutionMetrics.BundleMetrics metrics) throws IOException {
+        byte[] dividerBytes = getDividerBytes();
         if (outputFile == null) {
             throw new IllegalStateException("output file not set");
         }
         Guava.Files.createParentDirs(outputFile);
-        int numFiles = 0;
-        try (OutputStream output = new FileOutputStream(outputFile)) {
-            for (File sourceFile : sourceFiles) {
-                if (numFiles > 0 && dividerBytes.length > 0) {
-                    output.write(dividerBytes);
+        Concatenator concatenator = createConcatenator(dividerBytes, sourceInfos);
+        if (entryListener != null) {
+            concatenator.addEntryListener(entryListener);
+        }
+        OutputIndex index = null;
+        if (!getIndexFormats().isEmpty()) {
+            index = new OutputIndex(file -> getRelativePath(sourceInfos, file));
+            concatenator.addEntryListener(index);
+            if (hashIndexEntries) {
+                concatenator.enableEntryHashing();
+            }
+        }
+        SourceMapGenerator sourceMapGenerator = null;
+        if (sourceMap) {
+            sourceMapGenerator = new SourceMapGenerator(chainSourceMaps);
+            concatenator.addEntryListener(sourceMapGenerator);
+            concatenator.addOutputObserver(sourceMapGenerator);
+        }
+        final int numFiles;
+        Map<File, List<DigestingOutputStream.Hasher>> hashersByFile = new LinkedHashMap<>();
+        AtomicLong bytesWritten = new AtomicLong();
+        try (StagedOutput staged = new StagedOutput(syncOutput)) {
+            try (OutputStream output = openOutput(outputFile, staged, hashersByFile, bytesWritten)) {
+                numFiles = concatenator.concatenate(sourceFiles, output);
+                if (sourceMapGenerator != null) {
+                    String comment = SourceMapGenerator.getSourceMappingUrlComment(outputFile, getSourceMapFile(outputFile));
+                    if (!sourceMapGenerator.isAtLineStart()) {
+                        comment = "\n" + comment;
+                    }
+                    output.write(comment.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            writeChecksumFiles(hashersByFile, staged);
+            if (sourceMapGenerator != null) {
+                sourceMapGenerator.write(staged.stage(getSourceMapFile(outputFile)), outputFile.getName(), outputFile.getAbsoluteFile().getParentFile());
+            }
+            if (index != null) {
+                for (OutputIndex.Format format : getIndexFormats()) {
+                    index.write(format, staged.stage(getIndexFile(outputFile, format)));
                 }
-                try (InputStream input = new FileInputStream(sourceFile)) {
-                    Guava.ByteStreams.copy(input, output);
+            }
+            staged.commit();
+        }
+        if (metrics != null) {
+            metrics.filesRead += concatenator.getFilesRead();
+            metrics.bytesRead += concatenator.getBytesRead();
+            metrics.bytesWritten += bytesWritten.get();
+        }
+        for (File writtenFile : getWrittenFiles(outputFile)) {
+            getLog().info(String.format("concatenated %d file(s) to %s%s%s", numFiles,
+                    StringUtils.abbreviateMiddle(writtenFile.getParent(), "...", 64), File.separator, writtenFile.getName()));
+        }
+        return numFiles;
+    }
+
+    byte[] getDividerBytes() {
+        return Guava.Strings.nullToEmpty(divider).getBytes(getDividerCharset());
+    }
+
+    /**
+     * Checks whether the output file is the only file written for a bundle and holds
+     * the concatenation as is, so that a region of it can be rewritten in place.
+     * @return true if the output file can be spliced
+     */
+    boolean isSpliceable() {
+        return compressionCodec == null && archiveFormat == null && !sourceMap
+                && getIndexFormats().isEmpty() && getChecksums().isEmpty();
+    }
+
+    boolean isSyncOutput() {
+        return syncOutput;
+    }
+
+    /**
+     * Opens the stream to which the concatenation is written. If compression is enabled, the
+     * stream compresses its input, and also copies it to the output file if the uncompressed
+     * output is to be kept. Streams write to temporary files that are moved into place when
+     * the staged output is committed.
+     */
+    private OutputStream openOutput(File outputFile, StagedOutput staged, Map<File, List<DigestingOutputStream.Hasher>> hashersByFile, AtomicLong bytesWritten) throws IOException {
+        if (compressionCodec == null) {
+            return openWrittenFile(outputFile, staged, hashersByFile, bytesWritten);
+        }
+        OutputStream compressed = new BufferedOutputStream(openWrittenFile(getCompressedFile(outputFile), staged, hashersByFile, bytesWritten), COMPRESSED_OUTPUT_BUFFER_SIZE);
+        try {
+            compressed = compressionCodec.compress(compressed, compressionThreads);
+            if (keepUncompressed) {
+                return new TeeOutputStream(openWrittenFile(outputFile, staged, hashersByFile, bytesWritten), compressed);
+            }
+        } catch (IOException | RuntimeException e) {
+            compressed.close();
+            throw e;
+        }
+        return compressed;
+    }
+
+    /**
+     * Opens a stream that writes to the staged counterpart of a written file, computing
+     * checksums of the bytes written if checksums are enabled. The length of the file is
+     * added to the given count when the stream is closed.
+     */
+    private OutputStream openWrittenFile(File writtenFile, StagedOutput staged, Map<File, List<DigestingOutputStream.Hasher>> hashersByFile, AtomicLong bytesWritten) throws IOException {
+        OutputStream output = new CountedFileOutputStream(staged.stage(writtenFile), bytesWritten);
+        if (getChecksums().isEmpty()) {
+            return output;
+        }
+        List<DigestingOutputStream.Hasher> hashers = getChecksums().stream()
+                .map(ChecksumAlgorithm::createHasher)
+                .collect(Collectors.toList());
+        hashersByFile.put(writtenFile, hashers);
+        return new DigestingOutputStream(output, hashers);
+    }
+
+    /**
+     * File output stream that adds the number of bytes written to a count when it is closed.
+     * It remains a {@link FileOutputStream}, so that its channel can be the target of transfers.
+     */
+    private static class CountedFileOutputStream extends FileOutputStream {
+
+        private final AtomicLong count;
+        private boolean closed;
+
+        public CountedFileOutputStream(File file, AtomicLong count) throws FileNotFoundException {
+            super(file);
+            this.count = count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                try {
+                    count.addAndGet(getChannel().position());
+                } finally {
+                    super.close();
                 }
-                numFiles++;
             }
         }
-        getLog().info(String.format("concatenated %d file(s) to %s%s%s", numFiles,
-                StringUtils.abbreviateMiddle(outputFile.getParent(), "...", 64), File.separator, outputFile.getName()));
+    }
+
+    private void writeChecksumFiles(Map<File, List<DigestingOutputStream.Hasher>> hashersByFile, StagedOutput staged) throws IOException {
+        for (Map.Entry<File, List<DigestingOutputStream.Hasher>> entry : hashersByFile.entrySet()) {
+            File writtenFile = entry.getKey();
+            List<DigestingOutputStream.Hasher> hashers = entry.getValue();
+            for (int i = 0; i < hashers.size(); i++) {
+                File checksumFile = getChecksumFile(writtenFile, getChecksums().get(i));
+                String line = hashers.get(i).toHex() + "  " + writtenFile.getName() + "\n";
+                Files.write(staged.stage(checksumFile).toPath(), line.getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+    }
+
+    private File getCompressedFile(File outputFile) {
+        requireNonNull(compressionCodec, "compression codec not resolved");
+        return new File(outputFile.getPath() + compressionCodec.getFileExtension());
+    }
+
+    /**
+     * Gets the list of files written for an output file, which depends on whether compression is enabled.
+     * @param outputFile the output file
+     * @return the list of written files
+     */
+    List<File> getWrittenFiles(File outputFile) {
+        List<File> writtenFiles = new ArrayList<>(2);
+        if (compressionCodec == null || keepUncompressed) {
+            writtenFiles.add(outputFile);
+        }
+        if (compressionCodec != null) {
+            writtenFiles.add(getCompressedFile(outputFile));
+        }
+        return writtenFiles;
+    }
+
+    /**
+     * Gets the list of all files produced for an output file: the written files, followed by
+     * the checksum files of each written file, the index files, and the source map, if enabled.
+     * @param outputFile the output file
+     * @return the list of produced files
+     */
+    List<File> getProducedFiles(File outputFile) {
+        List<File> writtenFiles = getWrittenFiles(outputFile);
+        List<File> producedFiles = new ArrayList<>(writtenFiles);
+        for (File writtenFile : writtenFiles) {
+            for (ChecksumAlgorithm algorithm : getChecksums()) {
+                producedFiles.add(getChecksumFile(writtenFile, algorithm));
+            }
+        }
+        for (OutputIndex.Format format : getIndexFormats()) {
+            producedFiles.add(getIndexFile(outputFile, format));
+        }
+        if (sourceMap) {
+            producedFiles.add(getSourceMapFile(outputFile));
+        }
+        return producedFiles;
+    }
+
+    private static String getRelativePath(Map<File, SourceInfo> sourceInfos, File file) {
+        SourceInfo info = sourceInfos.get(file);
+        return info == null ? file.getPath() : info.relativePath;
+    }
+
+    @Nullable
+    private static String getLineEnding(Map<File, SourceInfo> sourceInfos, File file) {
+        SourceInfo info = sourceInfos.get(file);
+        return info == null ? null : info.lineEnding;
+    }
+
+    static File getIndexFile(File outputFile, OutputIndex.Format format) {
+        return new File(outputFile.getPath() + format.getFileExtension());
+    }
+
+    static File getSourceMapFile(File outputFile) {
+        return new File(outputFile.getPath() + ".map");
+    }
+
+    private List<OutputIndex.Format> getIndexFormats() {
+        return indexFormats == null ? Collections.emptyList() : Arrays.asList(indexFormats);
+    }
+
+    /**
+     * Creates the concatenator, which writes an archive if an archive format is set, or
+     * otherwise a flat concatenation with the header and footer templates if any are set.
+     * If any line filter applies, source files are filtered as they are copied,
+     * regardless of the write strategy.
+     */
+    Concatenator createConcatenator(byte[] dividerBytes, Map<File, SourceInfo> sourceInfos) {
+        if (archiveFormat != null) {
+            return ArchiveConcatenator.create(archiveFormat, file -> getRelativePath(sourceInfos, file), archiveEntryTime, storeArchiveEntries, mapThreshold);
+        }
+        Concatenator concatenator = createConcatenator(dividerBytes, sourceInfos, getDropPattern());
+        EntryTemplate headerTemplate = compileEntryTemplate(header), footerTemplate = compileEntryTemplate(footer);
+        if (headerTemplate != null || footerTemplate != null) {
+            concatenator.setEntryTemplates(headerTemplate, footerTemplate, file -> getRelativePath(sourceInfos, file));
+        }
+        return concatenator;
+    }
+
+    private Concatenator createConcatenator(byte[] dividerBytes, Map<File, SourceInfo> sourceInfos, @Nullable Pattern dropPattern) {
+        boolean filtering = stripBom || dropPattern != null || ensureTrailingNewline
+                || sourceInfos.values().stream().anyMatch(info -> LineFilter.parseLineEnding(info.lineEnding) != null);
+        if (filtering) {
+            Charset charset = getSourceCharset();
+            Map<String, LineFilter> filtersByLineEnding = new HashMap<>();
+            Function<File, LineFilter> filters = file -> filtersByLineEnding.computeIfAbsent(Guava.Strings.nullToEmpty(getLineEnding(sourceInfos, file)),
+                    lineEnding -> new LineFilter(stripBom, LineFilter.parseLineEnding(lineEnding), dropPattern, charset, ensureTrailingNewline));
+            return new Concatenator.FilteringConcatenator(dividerBytes, filters);
+        }
+        switch (writeStrategy) {
+            case stream:
+                return new Concatenator.StreamConcatenator(dividerBytes);
+            case channel:
+                return new Concatenator.ChannelConcatenator(dividerBytes, mapThreshold);
+            case pipelined:
+                return new PipelinedConcatenator(dividerBytes, readerThreads, maxInFlightBytes, mapThreshold);
+            default:
+                throw new IllegalStateException("bug: strategy " + writeStrategy + " not handled");
+        }
     }
 
     void setSources(OrderableFileSet[] sources) {
@@ -203,6 +1421,18 @@ public class ConcatenateMojo extends org.apache.maven.plugin.AbstractMojo {
         this.outputFile = outputFile;
     }
 
+    void setBundles(Bundle[] bundles) {
+        this.bundles = bundles;
+    }
+
+    void setShareDirectoryScans(boolean shareDirectoryScans) {
+        this.shareDirectoryScans = shareDirectoryScans;
+    }
+
+    void setUseScanCache(boolean useScanCache) {
+        this.useScanCache = useScanCache;
+    }
+
     @SuppressWarnings("unused")
     private static class BadSourceSpecificationException extends MojoExecutionException {
 
@@ -255,7 +1485,127 @@ public class ConcatenateMojo extends org.apache.maven.plugin.AbstractMojo {
         this.divider = requireNonNull(divider);
     }
 
+    void setHeader(String header) {
+        this.header = header;
+    }
+
+    void setFooter(String footer) {
+        this.footer = footer;
+    }
+
     void setDividerCharset(String dividerCharset) {
         this.dividerCharset = dividerCharset;
     }
+
+    void setCompression(String compression) {
+        this.compression = compression;
+    }
+
+    void setKeepUncompressed(boolean keepUncompressed) {
+        this.keepUncompressed = keepUncompressed;
+    }
+
+    void setCompressionThreads(int compressionThreads) {
+        this.compressionThreads = compressionThreads;
+    }
+
+    void setChecksums(ChecksumAlgorithm... checksums) {
+        this.checksums = checksums;
+    }
+
+    void setChecksumPropertyPrefix(String checksumPropertyPrefix) {
+        this.checksumPropertyPrefix = checksumPropertyPrefix;
+    }
+
+    void setProjectProperties(Properties projectProperties) {
+        this.projectProperties = projectProperties;
+    }
+
+    void setIndexFormats(OutputIndex.Format... indexFormats) {
+        this.indexFormats = indexFormats;
+    }
+
+    void setHashIndexEntries(boolean hashIndexEntries) {
+        this.hashIndexEntries = hashIndexEntries;
+    }
+
+    void setSourceMap(boolean sourceMap) {
+        this.sourceMap = sourceMap;
+    }
+
+    void setChainSourceMaps(boolean chainSourceMaps) {
+        this.chainSourceMaps = chainSourceMaps;
+    }
+
+    void setArchiveFormat(ArchiveConcatenator.Format archiveFormat) {
+        this.archiveFormat = archiveFormat;
+    }
+
+    void setStoreArchiveEntries(boolean storeArchiveEntries) {
+        this.storeArchiveEntries = storeArchiveEntries;
+    }
+
+    void setOutputTimestamp(String outputTimestamp) {
+        this.outputTimestamp = outputTimestamp;
+    }
+
+    void setLocalRepository(String localRepository) {
+        this.localRepository = localRepository;
+    }
+
+    void setSyncOutput(boolean syncOutput) {
+        this.syncOutput = syncOutput;
+    }
+
+    void setMapThreshold(long mapThreshold) {
+        this.mapThreshold = mapThreshold;
+    }
+
+    void setWriteMetrics(boolean writeMetrics) {
+        this.writeMetrics = writeMetrics;
+    }
+
+    void setLogMetrics(boolean logMetrics) {
+        this.logMetrics = logMetrics;
+    }
+
+    void setSortMemoryBudget(long sortMemoryBudget) {
+        this.sortMemoryBudget = sortMemoryBudget;
+    }
+
+    void setStripBom(boolean stripBom) {
+        this.stripBom = stripBom;
+    }
+
+    void setDropLinesMatching(String dropLinesMatching) {
+        this.dropLinesMatching = dropLinesMatching;
+    }
+
+    void setEnsureTrailingNewline(boolean ensureTrailingNewline) {
+        this.ensureTrailingNewline = ensureTrailingNewline;
+    }
+
+    void setSourceEncoding(String sourceEncoding) {
+        this.sourceEncoding = sourceEncoding;
+    }
+
+    void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    void setStateDirectory(File stateDirectory) {
+        this.stateDirectory = stateDirectory;
+    }
+
+    void setWriteStrategy(WriteStrategy writeStrategy) {
+        this.writeStrategy = requireNonNull(writeStrategy);
+    }
+
+    void setReaderThreads(int readerThreads) {
+        this.readerThreads = readerThreads;
+    }
+
+    void setMaxInFlightBytes(long maxInFlightBytes) {
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
 }
@@ -0,0 +1,555 @@
+package com.github.mike10004.catmvnplugin;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writes the contents of a sequence of source files to an output, with a divider
+ * between each pair of adjacent files, and optionally a header and footer around each file.
+ */
+abstract class Concatenator {
+
+    protected final byte[] dividerBytes;
+
+    private final List<EntryListener> entryListeners;
+    private final List<DigestingOutputStream.ByteObserver> outputObservers;
+    @Nullable
+    private MessageDigest entryDigest;
+    @Nullable
+    private EntryTemplate header;
+    @Nullable
+    private EntryTemplate footer;
+    private Function<File, String> relativePaths = File::getPath;
+    private int startIndex;
+    private long startPosition;
+    private long position;
+    private long memberPosition;
+    private int filesRead;
+    private long bytesRead;
+
+    protected Concatenator(byte[] dividerBytes) {
+        this.dividerBytes = requireNonNull(dividerBytes);
+        entryListeners = new ArrayList<>();
+        outputObservers = new ArrayList<>();
+    }
+
+    /**
+     * Receives the location of each source file in the output.
+     */
+    interface EntryListener {
+
+        /**
+         * Notifies the listener that the bytes belonging to a source file are about to be
+         * written. These are the divider that precedes the file, if it is not the first,
+         * followed by the header, the content, and the footer.
+         * @param sourceFile the source file
+         * @param offset position in the output of the first byte belonging to the file
+         */
+        default void memberStarted(File sourceFile, long offset) {
+        }
+
+        /**
+         * Notifies the listener that a source file is about to be written. Bytes observed
+         * by output observers after this call, until the entry is written, are the file content.
+         * @param sourceFile the source file
+         * @param offset position in the output of the first byte of the file content
+         */
+        default void entryStarted(File sourceFile, long offset) {
+        }
+
+        /**
+         * Notifies the listener that a source file has been written.
+         * @param sourceFile the source file
+         * @param offset position in the output of the first byte of the file content
+         * @param length number of bytes written for the file
+         * @param sha256 hash of the bytes written for the file, as hexadecimal digits, or null if entries are not hashed
+         */
+        void entryWritten(File sourceFile, long offset, long length, @Nullable String sha256);
+    }
+
+    /**
+     * Adds a listener that is notified as each source file is written.
+     * @param entryListener the listener
+     */
+    public void addEntryListener(EntryListener entryListener) {
+        entryListeners.add(requireNonNull(entryListener));
+    }
+
+    /**
+     * Enables computing the SHA-256 hash of each entry, which is passed to entry listeners.
+     * Hashing entries requires the output bytes to pass through the JVM.
+     */
+    public void enableEntryHashing() {
+        try {
+            entryDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Adds an observer of the bytes written to the output, in the order they are written.
+     * Observing output requires the output bytes to pass through the JVM.
+     * @param observer the observer
+     */
+    public void addOutputObserver(DigestingOutputStream.ByteObserver observer) {
+        outputObservers.add(requireNonNull(observer));
+    }
+
+    /**
+     * Sets the templates of text written before and after the content of each source file.
+     * @param header the header template, or null for no header
+     * @param footer the footer template, or null for no footer
+     * @param relativePaths function that supplies the relative pathname of each source file
+     */
+    public void setEntryTemplates(@Nullable EntryTemplate header, @Nullable EntryTemplate footer, Function<File, String> relativePaths) {
+        this.header = header;
+        this.footer = footer;
+        this.relativePaths = requireNonNull(relativePaths);
+    }
+
+    /**
+     * Makes the next concatenation continue an output that already holds some files.
+     * The first file written is then preceded by a divider unless the start index is zero,
+     * headers and footers are rendered with indexes counted from the start index, and
+     * listeners are given offsets counted from the start position.
+     * @param startIndex number of files already in the output
+     * @param startPosition number of bytes already in the output
+     */
+    public void resumeAt(int startIndex, long startPosition) {
+        if (startIndex < 0) {
+            throw new IllegalArgumentException("start index must be nonnegative: " + startIndex);
+        }
+        if (startPosition < 0) {
+            throw new IllegalArgumentException("start position must be nonnegative: " + startPosition);
+        }
+        this.startIndex = startIndex;
+        this.startPosition = startPosition;
+    }
+
+    /**
+     * Gets the index of the first file written by a concatenation.
+     * @return the start index, which is zero unless the output is resumed
+     */
+    protected int getStartIndex() {
+        return startIndex;
+    }
+
+    /**
+     * Prepares the output stream for writing. Subclasses must write all bytes through the
+     * stream returned by this method, and must report the entries and dividers written.
+     * @param output the output stream
+     * @return the stream to write to
+     */
+    protected OutputStream track(OutputStream output) {
+        position = startPosition;
+        memberPosition = startPosition;
+        List<DigestingOutputStream.ByteObserver> observers = new ArrayList<>(outputObservers);
+        if (entryDigest != null) {
+            entryDigest.reset();
+            observers.add(DigestingOutputStream.Hasher.of(entryDigest));
+        }
+        if (observers.isEmpty()) {
+            return output;
+        }
+        return new DigestingOutputStream(output, observers);
+    }
+
+    protected void dividerWritten() {
+        memberPosition = position;
+        position += dividerBytes.length;
+    }
+
+    /**
+     * Renders the header of a source file. The caller must write the remaining bytes of
+     * the returned buffer before the file content, and before rendering another header or footer.
+     * @param sourceFile the source file
+     * @param index position of the source file in the output
+     * @return the header, or null if there is no header
+     */
+    @Nullable
+    protected ByteBuffer renderHeader(File sourceFile, int index) {
+        return render(header, sourceFile, index);
+    }
+
+    /**
+     * Renders the footer of a source file. The caller must write the remaining bytes of
+     * the returned buffer after the file content, and before rendering another header or footer.
+     * @param sourceFile the source file
+     * @param index position of the source file in the output
+     * @return the footer, or null if there is no footer
+     */
+    @Nullable
+    protected ByteBuffer renderFooter(File sourceFile, int index) {
+        return render(footer, sourceFile, index);
+    }
+
+    @Nullable
+    private ByteBuffer render(@Nullable EntryTemplate template, File sourceFile, int index) {
+        if (template == null) {
+            return null;
+        }
+        ByteBuffer rendered = template.render(sourceFile, relativePaths.apply(sourceFile), index);
+        metadataWritten(rendered.remaining());
+        return rendered;
+    }
+
+    /**
+     * Records bytes written that are neither file content nor dividers, such as headers.
+     * @param length the number of bytes
+     */
+    protected void metadataWritten(long length) {
+        position += length;
+    }
+
+    /**
+     * Writes a rendered header or footer to a stream.
+     */
+    protected static void write(@Nullable ByteBuffer rendered, OutputStream output) throws IOException {
+        if (rendered != null && rendered.hasRemaining()) {
+            output.write(rendered.array(), rendered.arrayOffset() + rendered.position(), rendered.remaining());
+        }
+    }
+
+    /**
+     * Writes a rendered header or footer to a channel.
+     */
+    protected static void write(@Nullable ByteBuffer rendered, WritableByteChannel target) throws IOException {
+        if (rendered != null) {
+            NioChannels.writeFully(rendered, target);
+        }
+    }
+
+    protected void entryStarted(File sourceFile) {
+        if (entryDigest != null) {
+            entryDigest.reset();
+        }
+        for (EntryListener entryListener : entryListeners) {
+            entryListener.memberStarted(sourceFile, memberPosition);
+            entryListener.entryStarted(sourceFile, position);
+        }
+    }
+
+    protected void entryWritten(File sourceFile, long length) {
+        if (!entryListeners.isEmpty()) {
+            String sha256 = entryDigest == null ? null : DigestingOutputStream.Hasher.of(entryDigest).toHex();
+            for (EntryListener entryListener : entryListeners) {
+                entryListener.entryWritten(sourceFile, position, length, sha256);
+            }
+        }
+        position += length;
+    }
+
+    /**
+     * Records that a source file has been read.
+     * @param length the number of bytes read from the file
+     */
+    protected void sourceRead(long length) {
+        filesRead++;
+        bytesRead += length;
+    }
+
+    /**
+     * Gets the number of source files read by this instance.
+     */
+    public int getFilesRead() {
+        return filesRead;
+    }
+
+    /**
+     * Gets the number of bytes read from source files by this instance.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Writes the source files to the output. Does not close the output.
+     * @param sourceFiles the source files
+     * @param output the output stream
+     * @return the number of files written
+     * @throws IOException on I/O error
+     */
+    public abstract int concatenate(Iterable<File> sourceFiles, OutputStream output) throws IOException;
+
+    /**
+     * Concatenator that copies bytes through a heap buffer using
+     * {@link InputStream} and {@link OutputStream} instances.
+     */
+    static class StreamConcatenator extends Concatenator {
+
+        public StreamConcatenator(byte[] dividerBytes) {
+            super(dividerBytes);
+        }
+
+        @Override
+        public int concatenate(Iterable<File> sourceFiles, OutputStream output) throws IOException {
+            output = track(output);
+            int numFiles = 0;
+            for (File sourceFile : sourceFiles) {
+                int index = getStartIndex() + numFiles;
+                if (index > 0) {
+                    if (dividerBytes.length > 0) {
+                        output.write(dividerBytes);
+                    }
+                    dividerWritten();
+                }
+                write(renderHeader(sourceFile, index), output);
+                entryStarted(sourceFile);
+                long length;
+                try (InputStream input = SourceArchive.EntryFile.openStream(sourceFile)) {
+                    length = Guava.ByteStreams.copy(input, output);
+                }
+                sourceRead(length);
+                entryWritten(sourceFile, length);
+                write(renderFooter(sourceFile, index), output);
+                numFiles++;
+            }
+            return numFiles;
+        }
+    }
+
+    /**
+     * Concatenator that passes the content of each source file through a {@link LineFilter}.
+     * Output is buffered, and the buffer is flushed after the last file is written.
+     */
+    static class FilteringConcatenator extends Concatenator {
+
+        private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+        private final Function<File, LineFilter> filters;
+
+        /**
+         * Constructs an instance.
+         * @param dividerBytes divider
+         * @param filters function that supplies the filter for each source file
+         */
+        public FilteringConcatenator(byte[] dividerBytes, Function<File, LineFilter> filters) {
+            super(dividerBytes);
+            this.filters = requireNonNull(filters);
+        }
+
+        @Override
+        public int concatenate(Iterable<File> sourceFiles, OutputStream output) throws IOException {
+            // tracking happens above the buffer, so that entry hashes see bytes as they are written
+            OutputStream buffered = track(new BufferedOutputStream(output, OUTPUT_BUFFER_SIZE));
+            int numFiles = 0;
+            for (File sourceFile : sourceFiles) {
+                int index = getStartIndex() + numFiles;
+                if (index > 0) {
+                    if (dividerBytes.length > 0) {
+                        buffered.write(dividerBytes);
+                    }
+                    dividerWritten();
+                }
+                write(renderHeader(sourceFile, index), buffered);
+                entryStarted(sourceFile);
+                long length;
+                try (CountingInputStream input = new CountingInputStream(SourceArchive.EntryFile.openStream(sourceFile))) {
+                    LineFilter filter = filters.apply(sourceFile);
+                    // a file whose line endings are kept while those of other files are changed may need no filtering
+                    length = filter.isIdentity() ? Guava.ByteStreams.copy(input, buffered) : filter.copy(input, buffered);
+                    sourceRead(input.getCount());
+                }
+                entryWritten(sourceFile, length);
+                write(renderFooter(sourceFile, index), buffered);
+                numFiles++;
+            }
+            buffered.flush();
+            return numFiles;
+        }
+    }
+
+    /**
+     * Concatenator that writes source files to a channel, choosing for each file the
+     * cheapest way to copy its bytes. If the output is a file, file bodies are copied with
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which allows the
+     * operating system to copy directly between files where supported. Otherwise, files
+     * at least as large as the map threshold are memory-mapped and written in large slices,
+     * and smaller files are read through a buffer.
+     */
+    static class ChannelConcatenator extends Concatenator {
+
+        public static final long DEFAULT_MAP_THRESHOLD = 16 * 1024 * 1024;
+
+        private static final int MAP_SLICE_SIZE = 64 * 1024 * 1024;
+        private static final int COPY_BUFFER_SIZE = 64 * 1024;
+        private static final int CHANNEL_CHUNK_SIZE = 256 * 1024;
+
+        private final ByteBuffer divider;
+        private final long mapThreshold;
+        private ByteBuffer copyBuffer;
+
+        public ChannelConcatenator(byte[] dividerBytes) {
+            this(dividerBytes, DEFAULT_MAP_THRESHOLD);
+        }
+
+        /**
+         * Constructs an instance.
+         * @param dividerBytes divider
+         * @param mapThreshold minimum size of a source file that is memory-mapped; negative to never map
+         */
+        public ChannelConcatenator(byte[] dividerBytes, long mapThreshold) {
+            super(dividerBytes);
+            divider = ByteBuffer.allocateDirect(dividerBytes.length);
+            divider.put(dividerBytes);
+            this.mapThreshold = mapThreshold;
+        }
+
+        /**
+         * Ways to copy the bytes of a source file to the output.
+         */
+        enum ReadPath {
+            transfer,
+            mapped,
+            stream
+        }
+
+        static ReadPath chooseReadPath(long size, WritableByteChannel target, long mapThreshold) {
+            if (target instanceof FileChannel) {
+                return ReadPath.transfer;
+            }
+            if (mapThreshold >= 0 && size >= mapThreshold) {
+                return ReadPath.mapped;
+            }
+            return ReadPath.stream;
+        }
+
+        @Override
+        public int concatenate(Iterable<File> sourceFiles, OutputStream output) throws IOException {
+            WritableByteChannel target = toChannel(track(output));
+            int numFiles = 0;
+            for (File sourceFile : sourceFiles) {
+                int index = getStartIndex() + numFiles;
+                if (index > 0) {
+                    writeDivider(target);
+                }
+                write(renderHeader(sourceFile, index), target);
+                entryStarted(sourceFile);
+                entryWritten(sourceFile, transfer(sourceFile, target));
+                write(renderFooter(sourceFile, index), target);
+                numFiles++;
+            }
+            return numFiles;
+        }
+
+        protected void writeDivider(WritableByteChannel target) throws IOException {
+            if (dividerBytes.length > 0) {
+                divider.rewind();
+                NioChannels.writeFully(divider, target);
+            }
+            dividerWritten();
+        }
+
+        /**
+         * Copies the content of a source file to the target.
+         * @return the number of bytes copied
+         */
+        protected long transfer(File sourceFile, WritableByteChannel target) throws IOException {
+            long length = copy(sourceFile, target);
+            sourceRead(length);
+            return length;
+        }
+
+        private long copy(File sourceFile, WritableByteChannel target) throws IOException {
+            if (sourceFile instanceof SourceArchive.EntryFile) {
+                // entries are inflated as they are read, so they can only be read through a buffer
+                try (ReadableByteChannel input = SourceArchive.EntryFile.openChannel(sourceFile)) {
+                    return NioChannels.copy(input, target, getCopyBuffer());
+                }
+            }
+            try (FileChannel input = FileChannel.open(sourceFile.toPath(), StandardOpenOption.READ)) {
+                ReadPath readPath = chooseReadPath(input.size(), target, mapThreshold);
+                switch (readPath) {
+                    case transfer:
+                        return NioChannels.transferFully(input, target);
+                    case mapped:
+                        return NioChannels.writeMapped(input, target, MAP_SLICE_SIZE);
+                    case stream:
+                        return NioChannels.copy(input, target, getCopyBuffer());
+                    default:
+                        throw new IllegalStateException("bug: read path " + readPath + " not handled");
+                }
+            }
+        }
+
+        private ByteBuffer getCopyBuffer() {
+            if (copyBuffer == null) {
+                copyBuffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            }
+            return copyBuffer;
+        }
+
+        protected static WritableByteChannel toChannel(OutputStream output) {
+            if (output instanceof FileOutputStream) {
+                return ((FileOutputStream) output).getChannel();
+            }
+            return NioChannels.newChannel(output, CHANNEL_CHUNK_SIZE);
+        }
+    }
+
+
+    /**
+     * Input stream that counts the bytes read from the underlying stream.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        public CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+}
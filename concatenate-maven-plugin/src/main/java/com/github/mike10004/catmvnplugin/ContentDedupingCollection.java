@@ -0,0 +1,123 @@
+package com.github.mike10004.catmvnplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collection of files that rejects files whose content is identical to the content
+ * of a file already in the collection. File size is used as a pre-filter, so a file
+ * is only hashed if another file of the same size has been added.
+ */
+class ContentDedupingCollection extends AbstractCollection<File> {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean failOnRepeat;
+    private final List<File> files;
+    private final Map<Long, SizeGroup> sizeGroups;
+
+    /**
+     * Constructs an instance.
+     * @param failOnRepeat true if adding a file with repeated content should throw an
+     * exception; false if the file should be silently rejected
+     */
+    public ContentDedupingCollection(boolean failOnRepeat) {
+        this.failOnRepeat = failOnRepeat;
+        files = new ArrayList<>();
+        sizeGroups = new HashMap<>();
+    }
+
+    /**
+     * Files already added that have a given size.
+     */
+    private static class SizeGroup {
+
+        /**
+         * The first file of this size, until it has been hashed.
+         */
+        public File unhashed;
+
+        public final Set<String> digests = new HashSet<>();
+
+        public SizeGroup(File first) {
+            unhashed = first;
+        }
+    }
+
+    /**
+     * Adds a file, unless its content is the same as that of a file already added.
+     * @param file the file
+     * @return true if the file was added
+     * @throws ConcatenateMojo.RepeatedItemException if the content is repeated and
+     * this collection is configured to fail on repeats
+     * @throws UncheckedIOException if the file cannot be read
+     */
+    @Override
+    public boolean add(File file) {
+        long size = file.length();
+        SizeGroup group = sizeGroups.get(size);
+        if (group == null) {
+            sizeGroups.put(size, new SizeGroup(file));
+        } else {
+            if (group.unhashed != null) {
+                group.digests.add(digest(group.unhashed));
+                group.unhashed = null;
+            }
+            if (!group.digests.add(digest(file))) {
+                if (failOnRepeat) {
+                    throw new ConcatenateMojo.RepeatedItemException("content of " + file + " is the same as that of a file already included");
+                }
+                return false;
+            }
+        }
+        return files.add(file);
+    }
+
+    private static String digest(File file) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (ReadableByteChannel input = SourceArchive.EntryFile.openChannel(file)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (input.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to hash " + file, e);
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public Iterator<File> iterator() {
+        return files.iterator();
+    }
+
+    @Override
+    public int size() {
+        return files.size();
+    }
+}
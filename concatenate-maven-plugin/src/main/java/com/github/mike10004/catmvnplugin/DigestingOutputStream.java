@@ -0,0 +1,101 @@
+package com.github.mike10004.catmvnplugin;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Checksum;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Output stream that computes checksums of, or otherwise observes, the bytes written through it.
+ */
+class DigestingOutputStream extends FilterOutputStream {
+
+    private final List<ByteObserver> observers;
+
+    /**
+     * Constructs an instance.
+     * @param out the underlying stream
+     * @param observers the observers, such as hashers, to update with each byte written
+     */
+    public DigestingOutputStream(OutputStream out, List<? extends ByteObserver> observers) {
+        super(out);
+        this.observers = new ArrayList<>(observers);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        byte[] single = {(byte) b};
+        for (ByteObserver observer : observers) {
+            observer.update(single, 0, 1);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        for (ByteObserver observer : observers) {
+            observer.update(b, off, len);
+        }
+    }
+
+    /**
+     * Receiver of the bytes written to a stream.
+     */
+    interface ByteObserver {
+
+        void update(byte[] b, int off, int len);
+    }
+
+    /**
+     * Incremental computation of a checksum.
+     */
+    interface Hasher extends ByteObserver {
+
+        /**
+         * Gets the checksum of the bytes so far, as lowercase hexadecimal digits.
+         * @return the checksum
+         */
+        String toHex();
+
+        static Hasher of(MessageDigest digest) {
+            requireNonNull(digest);
+            return new Hasher() {
+                @Override
+                public void update(byte[] b, int off, int len) {
+                    digest.update(b, off, len);
+                }
+
+                @Override
+                public String toHex() {
+                    byte[] hash = digest.digest();
+                    StringBuilder sb = new StringBuilder(hash.length * 2);
+                    for (byte x : hash) {
+                        sb.append(String.format("%02x", x));
+                    }
+                    return sb.toString();
+                }
+            };
+        }
+
+        static Hasher of(Checksum checksum) {
+            requireNonNull(checksum);
+            return new Hasher() {
+                @Override
+                public void update(byte[] b, int off, int len) {
+                    checksum.update(b, off, len);
+                }
+
+                @Override
+                public String toHex() {
+                    return String.format("%08x", checksum.getValue());
+                }
+            };
+        }
+    }
+}
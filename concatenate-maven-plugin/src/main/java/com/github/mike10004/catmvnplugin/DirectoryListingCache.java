@@ -0,0 +1,196 @@
+package com.github.mike10004.catmvnplugin;
+
+import org.apache.maven.shared.model.fileset.FileSet;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cache of directory listings shared by multiple filesets. Each distinct fileset directory
+ * is walked once, descending only into subdirectories that could hold files included by at
+ * least one of the filesets registered for that directory. The included files of a fileset
+ * are then determined by matching the listed pathnames against the fileset patterns. Listing
+ * order and matching rules follow the {@code DirectoryScanner} used by {@code FileSetManager},
+ * so the result for each fileset is the same as if it had been scanned separately.
+ *
+ * <p>If a {@link ScanCache} is provided, directory listings stored there by an earlier build
+ * are reused for directories that have not been modified, and new listings are stored there.
+ *
+ * <p>Lookups are serialized, so an instance may be shared by threads.
+ */
+class DirectoryListingCache {
+
+    private final Map<String, List<FileSetMatcher>> matchersByDirectory;
+    private final Map<String, Boolean> followSymlinksByDirectory;
+    private final Map<String, Listing> listings;
+    private final Map<List<Object>, String[]> results;
+
+    @Nullable
+    private final ScanCache scanCache;
+
+    /**
+     * Constructs an instance.
+     * @param fileSets the filesets whose directories are to be listed
+     */
+    public DirectoryListingCache(Iterable<? extends FileSet> fileSets) {
+        this(fileSets, null);
+    }
+
+    /**
+     * Constructs an instance.
+     * @param fileSets the filesets whose directories are to be listed
+     * @param scanCache persistent cache of scan results; null if results are not to be persisted
+     */
+    public DirectoryListingCache(Iterable<? extends FileSet> fileSets, @Nullable ScanCache scanCache) {
+        this.scanCache = scanCache;
+        matchersByDirectory = new LinkedHashMap<>();
+        followSymlinksByDirectory = new HashMap<>();
+        for (FileSet fileSet : fileSets) {
+            String directory = getDirectoryKey(fileSet);
+            if (directory != null) {
+                matchersByDirectory.computeIfAbsent(directory, k -> new ArrayList<>()).add(new FileSetMatcher(fileSet));
+                followSymlinksByDirectory.merge(directory, fileSet.isFollowSymlinks(), Boolean::logicalOr);
+            }
+        }
+        listings = new HashMap<>();
+        results = new HashMap<>();
+    }
+
+    @Nullable
+    private static String getDirectoryKey(FileSet fileSet) {
+        String directory = fileSet.getDirectory();
+        if (directory == null) {
+            return null;
+        }
+        return new File(directory).getAbsolutePath();
+    }
+
+    private static List<Object> getResultKey(FileSet fileSet) {
+        return Arrays.asList(getDirectoryKey(fileSet), fileSet.getIncludes(), fileSet.getExcludes(),
+                fileSet.isUseDefaultExcludes(), fileSet.isFollowSymlinks());
+    }
+
+    /**
+     * Gets the files included by a fileset, if the fileset directory is one of the directories
+     * listed by this cache.
+     * @param fileSet the fileset
+     * @return the array of included files, relative to the fileset directory, or null if
+     * the files included by the fileset cannot be determined from the cache
+     */
+    @Nullable
+    public synchronized String[] getIncludedFiles(FileSet fileSet) {
+        String directory = getDirectoryKey(fileSet);
+        List<FileSetMatcher> registered = matchersByDirectory.get(directory);
+        if (registered == null) {
+            return null;
+        }
+        List<Object> resultKey = getResultKey(fileSet);
+        String[] result = results.get(resultKey);
+        if (result == null) {
+            Listing listing = listings.computeIfAbsent(directory, d -> scan(new File(d), registered, followSymlinksByDirectory.get(d)));
+            FileSetMatcher matcher = new FileSetMatcher(fileSet);
+            if (!listing.isComplete(matcher, fileSet.isFollowSymlinks())) {
+                return null;
+            }
+            result = listing.match(matcher, fileSet.isFollowSymlinks());
+            results.put(resultKey, result);
+        }
+        return result.clone();
+    }
+
+    private Listing scan(File basedir, List<FileSetMatcher> matchers, boolean followSymlinks) {
+        if (scanCache == null) {
+            return Listing.scan(basedir, matchers, followSymlinks, ScanCache.DirectoryListing::list);
+        }
+        ScanCache.Scan scan = scanCache.open(basedir.getAbsolutePath());
+        Listing listing = Listing.scan(basedir, matchers, followSymlinks, scan::list);
+        scan.save();
+        return listing;
+    }
+
+    private static class Entry {
+
+        public final String name;
+
+        /**
+         * Flag that indicates the entry is excluded if symlinks are not followed.
+         */
+        public final boolean linked;
+
+        public Entry(String name, boolean linked) {
+            this.name = name;
+            this.linked = linked;
+        }
+    }
+
+    private static class Listing {
+
+        private final List<Entry> files;
+        private final List<Entry> unlistedDirectories;
+
+        private Listing() {
+            files = new ArrayList<>();
+            unlistedDirectories = new ArrayList<>();
+        }
+
+        public static Listing scan(File basedir, List<FileSetMatcher> matchers, boolean followSymlinks, Function<File, ScanCache.DirectoryListing> lister) {
+            Listing listing = new Listing();
+            listing.scandir(basedir, "", false, matchers, followSymlinks, lister);
+            return listing;
+        }
+
+        /*
+         * The directory scanner excludes all entries of a directory that is a symbolic link
+         * if symlinks are not followed, and does not descend into excluded directories.
+         */
+        private void scandir(File dir, String vpath, boolean linked, List<FileSetMatcher> matchers, boolean followSymlinks, Function<File, ScanCache.DirectoryListing> lister) {
+            ScanCache.DirectoryListing listing = lister.apply(dir);
+            boolean entriesLinked = linked || Files.isSymbolicLink(dir.toPath());
+            for (ScanCache.Entry entry : listing.entries) {
+                String path = vpath + entry.name;
+                if (entry.directory) {
+                    if ((!entriesLinked || followSymlinks) && couldAnyHoldIncluded(matchers, path)) {
+                        scandir(new File(dir, entry.name), path + File.separator, entriesLinked, matchers, followSymlinks, lister);
+                    } else {
+                        unlistedDirectories.add(new Entry(path, entriesLinked));
+                    }
+                } else {
+                    files.add(new Entry(path, entriesLinked));
+                }
+            }
+        }
+
+        private static boolean couldAnyHoldIncluded(List<FileSetMatcher> matchers, String path) {
+            return matchers.stream().anyMatch(matcher -> matcher.couldHoldIncluded(path));
+        }
+
+        /**
+         * Checks whether the listing contains all files that could be included by a fileset.
+         */
+        public boolean isComplete(FileSetMatcher matcher, boolean followSymlinks) {
+            return unlistedDirectories.stream()
+                    .noneMatch(entry -> (!entry.linked || followSymlinks) && matcher.couldHoldIncluded(entry.name));
+        }
+
+        public String[] match(FileSetMatcher matcher, boolean followSymlinks) {
+            if (files.isEmpty()) {
+                return new String[0];
+            }
+            List<String> included = new ArrayList<>();
+            for (Entry entry : files) {
+                if ((!entry.linked || followSymlinks) && matcher.matches(entry.name)) {
+                    included.add(entry.name);
+                }
+            }
+            return included.toArray(new String[0]);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.mike10004.catmvnplugin;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Template of text written before or after each source file, such as
+ * {@code /* ${relativePath} (${size} bytes) *}{@code /}. A template is compiled once
+ * into a list of segments. Literal segments are encoded when the template is compiled;
+ * rendering only encodes the field values, into a buffer that is reused for every file.
+ * Write <code>$${</code> for a literal <code>${</code>.
+ *
+ * <p>Instances are not thread-safe.
+ */
+class EntryTemplate {
+
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    /**
+     * Values that may be substituted for a placeholder.
+     */
+    public enum Field {
+
+        /**
+         * Pathname of the source file relative to the directory of its fileset.
+         */
+        relativePath,
+
+        /**
+         * Absolute pathname of the source file.
+         */
+        path,
+
+        /**
+         * Filename of the source file. (Not {@code name}, which Maven resolves to the project name.)
+         */
+        fileName,
+
+        /**
+         * Size of the source file in bytes.
+         */
+        size,
+
+        /**
+         * Position of the source file in the output, starting at 0.
+         */
+        index
+    }
+
+    private static class Segment {
+
+        @Nullable
+        public final byte[] literal;
+        @Nullable
+        public final Field field;
+
+        public Segment(@Nullable byte[] literal, @Nullable Field field) {
+            this.literal = literal;
+            this.field = field;
+        }
+    }
+
+    private final Segment[] segments;
+    private final boolean usesSize;
+    private final CharsetEncoder encoder;
+    private CharBuffer chars;
+    private ByteBuffer rendered;
+
+    private EntryTemplate(List<Segment> segments, Charset charset) {
+        this.segments = segments.toArray(new Segment[0]);
+        usesSize = segments.stream().anyMatch(segment -> segment.field == Field.size);
+        encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars = CharBuffer.allocate(INITIAL_BUFFER_SIZE);
+        rendered = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    }
+
+    /**
+     * Compiles a template.
+     * @param template the template text
+     * @param charset charset of the output
+     * @return the compiled template
+     * @throws IllegalArgumentException if a placeholder is unterminated or names an unknown field
+     */
+    public static EntryTemplate compile(String template, Charset charset) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int pos = 0;
+        while (pos < template.length()) {
+            if (template.startsWith("$${", pos)) {
+                literal.append("${");
+                pos += 3;
+            } else if (template.startsWith("${", pos)) {
+                int end = template.indexOf('}', pos + 2);
+                if (end < 0) {
+                    throw new IllegalArgumentException("unterminated placeholder at position " + pos + " in " + template);
+                }
+                String name = template.substring(pos + 2, end);
+                Field field;
+                try {
+                    field = Field.valueOf(name);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("unknown placeholder ${" + name + "}; expected one of " + Arrays.toString(Field.values()));
+                }
+                if (literal.length() > 0) {
+                    segments.add(new Segment(literal.toString().getBytes(charset), null));
+                    literal.setLength(0);
+                }
+                segments.add(new Segment(null, field));
+                pos = end + 1;
+            } else {
+                literal.append(template.charAt(pos));
+                pos++;
+            }
+        }
+        if (literal.length() > 0) {
+            segments.add(new Segment(literal.toString().getBytes(charset), null));
+        }
+        return new EntryTemplate(segments, requireNonNull(charset));
+    }
+
+    /**
+     * Renders the template for a source file. The returned buffer is reused by the next call.
+     * @param sourceFile the source file
+     * @param relativePath pathname of the source file relative to the directory of its fileset
+     * @param index position of the source file in the output
+     * @return a buffer whose remaining bytes are the rendered text
+     */
+    public ByteBuffer render(File sourceFile, String relativePath, int index) {
+        rendered.clear();
+        long size = usesSize ? sourceFile.length() : 0;
+        for (Segment segment : segments) {
+            if (segment.literal != null) {
+                ensureRemaining(segment.literal.length);
+                rendered.put(segment.literal);
+                continue;
+            }
+            Field field = requireNonNull(segment.field);
+            chars.clear();
+            switch (field) {
+                case relativePath:
+                    appendChars(relativePath);
+                    break;
+                case path:
+                    appendChars(sourceFile.getAbsolutePath());
+                    break;
+                case fileName:
+                    appendChars(sourceFile.getName());
+                    break;
+                case size:
+                    appendDigits(size);
+                    break;
+                case index:
+                    appendDigits(index);
+                    break;
+                default:
+                    throw new IllegalStateException("bug: field " + field + " not handled");
+            }
+            chars.flip();
+            encodeChars();
+        }
+        rendered.flip();
+        return rendered;
+    }
+
+    private void appendChars(String value) {
+        if (chars.remaining() < value.length()) {
+            chars = CharBuffer.allocate(Math.max(chars.capacity() * 2, value.length()));
+        }
+        chars.put(value);
+    }
+
+    private void appendDigits(long value) {
+        // digits are written right to left into the end of the buffer, then moved to the start
+        int end = chars.capacity();
+        int start = end;
+        do {
+            chars.put(--start, (char) ('0' + value % 10));
+            value /= 10;
+        } while (value > 0);
+        for (int i = start; i < end; i++) {
+            chars.put(chars.get(i));
+        }
+    }
+
+    private void encodeChars() {
+        encoder.reset();
+        while (encoder.encode(chars, rendered, true).isOverflow()) {
+            ensureRemaining(rendered.capacity());
+        }
+        while (encoder.flush(rendered).isOverflow()) {
+            ensureRemaining(rendered.capacity());
+        }
+    }
+
+    private void ensureRemaining(int length) {
+        if (rendered.remaining() < length) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(rendered.capacity() * 2, rendered.position() + length));
+            rendered.flip();
+            larger.put(rendered);
+            rendered = larger;
+        }
+    }
+}
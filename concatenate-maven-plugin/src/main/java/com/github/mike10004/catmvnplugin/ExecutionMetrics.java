@@ -0,0 +1,180 @@
+package com.github.mike10004.catmvnplugin;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Timings and counts collected during one execution of the mojo. The scan and sort phases
+ * are timed per fileset, and the bucket and write phases are timed per bundle. Files and
+ * bytes read are counted as source files are copied, and bytes written as output files
+ * are written.
+ */
+class ExecutionMetrics {
+
+    private final String executionId;
+    private final long startTime;
+    private long endTime;
+    private final List<BundleMetrics> bundles;
+
+    public ExecutionMetrics(String executionId) {
+        this.executionId = requireNonNull(executionId);
+        startTime = System.nanoTime();
+        bundles = new ArrayList<>();
+    }
+
+    public BundleMetrics addBundle(@Nullable File outputFile) {
+        BundleMetrics bundle = new BundleMetrics(outputFile);
+        bundles.add(bundle);
+        return bundle;
+    }
+
+    /**
+     * Marks the end of the execution.
+     */
+    public void finish() {
+        endTime = System.nanoTime();
+    }
+
+    static class FilesetMetrics {
+
+        public final String directory;
+        public final int includedFiles;
+        public final long scanNanos;
+        public final long sortNanos;
+
+        public FilesetMetrics(String directory, int includedFiles, long scanNanos, long sortNanos) {
+            this.directory = directory;
+            this.includedFiles = includedFiles;
+            this.scanNanos = scanNanos;
+            this.sortNanos = sortNanos;
+        }
+    }
+
+    static class BundleMetrics {
+
+        @Nullable
+        public final File outputFile;
+        public final List<FilesetMetrics> filesets = new ArrayList<>();
+        public long bucketNanos;
+        public int sourceFiles;
+        public boolean skipped;
+        public long writeNanos;
+        public int filesRead;
+        public long bytesRead;
+        public long bytesWritten;
+
+        public BundleMetrics(@Nullable File outputFile) {
+            this.outputFile = outputFile;
+        }
+
+        public void addFileset(String directory, int includedFiles, long scanNanos, long sortNanos) {
+            filesets.add(new FilesetMetrics(directory, includedFiles, scanNanos, sortNanos));
+        }
+
+        public long getScanNanos() {
+            return filesets.stream().mapToLong(fileset -> fileset.scanNanos).sum();
+        }
+
+        public long getSortNanos() {
+            return filesets.stream().mapToLong(fileset -> fileset.sortNanos).sum();
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static long throughput(long bytes, long nanos) {
+        return nanos > 0 ? Math.round(bytes / (nanos / 1e9)) : 0;
+    }
+
+    private static String quote(@Nullable Object value) {
+        if (value == null) {
+            return "null";
+        }
+        return '"' + StringEscapeUtils.escapeJson(value.toString()) + '"';
+    }
+
+    /**
+     * Renders the metrics as a JSON object.
+     * @return the JSON text
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\n");
+        sb.append("  \"executionId\": ").append(quote(executionId)).append(",\n");
+        sb.append("  \"totalMillis\": ").append(millis(endTime - startTime)).append(",\n");
+        sb.append("  \"bundles\": [");
+        for (int b = 0; b < bundles.size(); b++) {
+            BundleMetrics bundle = bundles.get(b);
+            sb.append(b > 0 ? ",\n" : "\n");
+            sb.append("    {\n");
+            sb.append("      \"outputFile\": ").append(quote(bundle.outputFile)).append(",\n");
+            sb.append("      \"scanMillis\": ").append(millis(bundle.getScanNanos())).append(",\n");
+            sb.append("      \"sortMillis\": ").append(millis(bundle.getSortNanos())).append(",\n");
+            sb.append("      \"filesets\": [");
+            for (int f = 0; f < bundle.filesets.size(); f++) {
+                FilesetMetrics fileset = bundle.filesets.get(f);
+                sb.append(f > 0 ? ",\n" : "\n");
+                sb.append("        {\"directory\": ").append(quote(fileset.directory))
+                        .append(", \"includedFiles\": ").append(fileset.includedFiles)
+                        .append(", \"scanMillis\": ").append(millis(fileset.scanNanos))
+                        .append(", \"sortMillis\": ").append(millis(fileset.sortNanos)).append('}');
+            }
+            sb.append(bundle.filesets.isEmpty() ? "],\n" : "\n      ],\n");
+            sb.append("      \"bucketMillis\": ").append(millis(bundle.bucketNanos)).append(",\n");
+            sb.append("      \"sourceFiles\": ").append(bundle.sourceFiles).append(",\n");
+            sb.append("      \"skipped\": ").append(bundle.skipped).append(",\n");
+            sb.append("      \"writeMillis\": ").append(millis(bundle.writeNanos)).append(",\n");
+            sb.append("      \"filesRead\": ").append(bundle.filesRead).append(",\n");
+            sb.append("      \"bytesRead\": ").append(bundle.bytesRead).append(",\n");
+            sb.append("      \"bytesWritten\": ").append(bundle.bytesWritten).append(",\n");
+            sb.append("      \"readBytesPerSecond\": ").append(throughput(bundle.bytesRead, bundle.writeNanos)).append('\n');
+            sb.append("    }");
+        }
+        sb.append(bundles.isEmpty() ? "]\n" : "\n  ]\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    /**
+     * Writes the metrics to a file as JSON.
+     * @param reportFile the file
+     * @throws IOException on I/O error
+     */
+    public void write(File reportFile) throws IOException {
+        Guava.Files.createParentDirs(reportFile);
+        Files.write(reportFile.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Summarizes the metrics of all bundles in one line.
+     * @return the summary
+     */
+    public String summarize() {
+        long scanNanos = 0, sortNanos = 0, bucketNanos = 0, writeNanos = 0, bytesRead = 0, bytesWritten = 0;
+        int filesRead = 0;
+        for (BundleMetrics bundle : bundles) {
+            scanNanos += bundle.getScanNanos();
+            sortNanos += bundle.getSortNanos();
+            bucketNanos += bundle.bucketNanos;
+            writeNanos += bundle.writeNanos;
+            filesRead += bundle.filesRead;
+            bytesRead += bundle.bytesRead;
+            bytesWritten += bundle.bytesWritten;
+        }
+        return String.format(Locale.ROOT, "%s: total %s ms (scan %s ms, sort %s ms, bucket %s ms, write %s ms); %d file(s) read, %d byte(s) read, %d byte(s) written, %.1f MB/s",
+                executionId, millis(endTime - startTime), millis(scanNanos), millis(sortNanos), millis(bucketNanos), millis(writeNanos),
+                filesRead, bytesRead, bytesWritten, throughput(bytesRead, writeNanos) / 1e6);
+    }
+}
@@ -0,0 +1,261 @@
+package com.github.mike10004.catmvnplugin;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sorts strings within a memory budget. Strings are accumulated until their estimated
+ * size exceeds the budget, and then the accumulated strings are sorted and written to a
+ * temporary file as a run. If any runs were written, the sorted sequence is produced
+ * lazily by merging the runs; otherwise the strings are sorted in memory. The sort is
+ * stable.
+ */
+class ExternalSorter {
+
+    /**
+     * Estimate of the heap space used by a string and a reference to it, apart from its characters.
+     */
+    private static final int ESTIMATED_OVERHEAD_PER_STRING = 64;
+    private static final int RUN_BUFFER_SIZE = 64 * 1024;
+
+    private final Comparator<String> comparator;
+    private final long memoryBudget;
+
+    @Nullable
+    private final File tempDirectory;
+
+    /**
+     * Constructs an instance.
+     * @param comparator the comparator
+     * @param memoryBudget approximate maximum number of bytes of strings held in memory;
+     *                     zero or negative means unlimited
+     * @param tempDirectory directory for runs; null means the default temporary directory
+     */
+    public ExternalSorter(Comparator<String> comparator, long memoryBudget, @Nullable File tempDirectory) {
+        this.comparator = requireNonNull(comparator);
+        this.memoryBudget = memoryBudget;
+        this.tempDirectory = tempDirectory;
+    }
+
+    static long estimateSize(String item) {
+        return ESTIMATED_OVERHEAD_PER_STRING + 2L * item.length();
+    }
+
+    /**
+     * Sorts strings. The returned stream must be closed in order to delete the temporary
+     * files holding the runs, if any.
+     * @param items the strings to sort
+     * @return a stream of the sorted strings
+     * @throws IOException if writing a run fails
+     */
+    public Stream<String> sort(Iterator<String> items) throws IOException {
+        return sort(items::forEachRemaining);
+    }
+
+    /**
+     * Sorts the strings supplied by a producer. The producer is called once, and passes
+     * each string to the consumer it is given, so that the strings need not be held in
+     * memory before they are sorted. The returned stream must be closed in order to delete
+     * the temporary files holding the runs, if any.
+     * @param producer the producer
+     * @return a stream of the sorted strings
+     * @throws IOException if writing a run fails
+     */
+    public Stream<String> sort(Consumer<Consumer<String>> producer) throws IOException {
+        List<String> chunk = new ArrayList<>();
+        long[] chunkSize = {0};
+        List<File> runs = new ArrayList<>();
+        try {
+            try {
+                producer.accept(item -> {
+                    chunk.add(item);
+                    chunkSize[0] += estimateSize(item);
+                    if (memoryBudget > 0 && chunkSize[0] > memoryBudget) {
+                        try {
+                            runs.add(writeRun(chunk));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        chunk.clear();
+                        chunkSize[0] = 0;
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (runs.isEmpty()) {
+                chunk.sort(comparator);
+                return chunk.stream();
+            }
+            if (!chunk.isEmpty()) {
+                runs.add(writeRun(chunk));
+                chunk.clear();
+            }
+            Merge merge = new Merge(runs, comparator);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merge, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(merge::close);
+        } catch (IOException | RuntimeException e) {
+            runs.forEach(File::delete);
+            throw e;
+        }
+    }
+
+    private File writeRun(List<String> chunk) throws IOException {
+        chunk.sort(comparator);
+        File runFile = tempDirectory == null
+                ? File.createTempFile("sort-run", ".tmp")
+                : Files.createTempFile(Files.createDirectories(tempDirectory.toPath()), "sort-run", ".tmp").toFile();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), RUN_BUFFER_SIZE))) {
+            out.writeInt(chunk.size());
+            for (String item : chunk) {
+                byte[] bytes = item.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        } catch (IOException | RuntimeException e) {
+            //noinspection ResultOfMethodCallIgnored
+            runFile.delete();
+            throw e;
+        }
+        return runFile;
+    }
+
+    private static class Run implements Closeable {
+
+        public final int index;
+        private final File file;
+        private final DataInputStream in;
+        private int remaining;
+        public String head;
+
+        public Run(int index, File file) throws IOException {
+            this.index = index;
+            this.file = file;
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), RUN_BUFFER_SIZE));
+            remaining = in.readInt();
+        }
+
+        /**
+         * Reads the next string into {@link #head}.
+         * @return false if the run is exhausted
+         */
+        public boolean advance() throws IOException {
+            if (remaining == 0) {
+                head = null;
+                return false;
+            }
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            head = new String(bytes, StandardCharsets.UTF_8);
+            remaining--;
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+    }
+
+    private static class Merge implements Iterator<String>, Closeable {
+
+        private final List<File> runFiles;
+        private final List<Run> runs;
+        private final PriorityQueue<Run> queue;
+        private boolean closed;
+
+        public Merge(List<File> runFiles, Comparator<String> comparator) throws IOException {
+            this.runFiles = runFiles;
+            runs = new ArrayList<>(runFiles.size());
+            // ties go to the earlier run, which keeps the sort stable
+            Comparator<Run> runComparator = Comparator.<Run, String>comparing(run -> run.head, comparator).thenComparingInt(run -> run.index);
+            queue = new PriorityQueue<>(runFiles.size(), runComparator);
+            try {
+                for (int i = 0; i < runFiles.size(); i++) {
+                    Run run = new Run(i, runFiles.get(i));
+                    runs.add(run);
+                    if (run.advance()) {
+                        queue.add(run);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public String next() {
+            Run run = queue.poll();
+            if (run == null) {
+                throw new NoSuchElementException();
+            }
+            String item = run.head;
+            try {
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException("failed to read sort run", e);
+            }
+            if (queue.isEmpty()) {
+                close();
+            }
+            return item;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            for (Run run : runs) {
+                try {
+                    run.close();
+                } catch (IOException ignore) {
+                    // the file is in a temporary directory
+                }
+            }
+            for (File runFile : runFiles) {
+                //noinspection ResultOfMethodCallIgnored
+                runFile.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.mike10004.catmvnplugin;
+
+import org.apache.maven.shared.model.fileset.FileSet;
+import org.apache.maven.shared.utils.io.DirectoryScanner;
+import org.apache.maven.shared.utils.io.MatchPatterns;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matcher that applies the include and exclude patterns of a fileset to relative pathnames.
+ * The patterns are normalized the same way {@code FileSetManager} sets them up on a
+ * {@link DirectoryScanner}, so pathnames are matched exactly as they would be by a scan of
+ * the fileset directory. Pathnames use the platform file separator, as returned by
+ * {@link DirectoryScanner#getIncludedFiles()}.
+ */
+class FileSetMatcher {
+
+    private static final boolean CASE_SENSITIVE = true;
+
+    private final MatchPatterns includesPatterns;
+    private final MatchPatterns excludesPatterns;
+    private final MatchPatterns excludedSubtreesPatterns;
+
+    public FileSetMatcher(FileSet fileSet) {
+        List<String> includes = normalizePatterns(fileSet.getIncludes());
+        if (includes.isEmpty()) {
+            includes.add("**");
+        }
+        List<String> excludes = normalizePatterns(fileSet.getExcludes());
+        if (fileSet.isUseDefaultExcludes()) {
+            for (String pattern : DirectoryScanner.DEFAULTEXCLUDES) {
+                excludes.add(pattern.replace('/', File.separatorChar).replace('\\', File.separatorChar));
+            }
+        }
+        includesPatterns = MatchPatterns.from(includes.toArray(new String[0]));
+        excludesPatterns = MatchPatterns.from(excludes.toArray(new String[0]));
+        excludedSubtreesPatterns = MatchPatterns.from(getExcludedSubtrees(excludes).toArray(new String[0]));
+    }
+
+    /**
+     * Gets the patterns of directories below which every pathname is excluded, which are
+     * the exclude patterns that end with {@code /**}, without that suffix.
+     */
+    private static List<String> getExcludedSubtrees(List<String> excludes) {
+        String suffix = File.separator + "**";
+        List<String> subtrees = new ArrayList<>();
+        for (String pattern : excludes) {
+            if (pattern.endsWith(suffix) && pattern.length() > suffix.length() && !pattern.startsWith("%")) {
+                subtrees.add(pattern.substring(0, pattern.length() - suffix.length()));
+            }
+        }
+        return subtrees;
+    }
+
+    static String normalizePattern(String pattern) {
+        pattern = pattern.trim().replace('/', File.separatorChar).replace('\\', File.separatorChar);
+        if (pattern.endsWith(File.separator)) {
+            pattern += "**";
+        }
+        return pattern;
+    }
+
+    private static List<String> normalizePatterns(List<String> patterns) {
+        List<String> normalized = new ArrayList<>(patterns.size());
+        for (String pattern : patterns) {
+            normalized.add(normalizePattern(pattern));
+        }
+        return normalized;
+    }
+
+    /**
+     * Checks whether a pathname is included by the fileset rules.
+     * @param name the relative pathname
+     * @return true if the pathname matches an include pattern and no exclude pattern
+     */
+    public boolean matches(String name) {
+        return includesPatterns.matches(name, CASE_SENSITIVE) && !excludesPatterns.matches(name, CASE_SENSITIVE);
+    }
+
+    /**
+     * Checks whether a directory needs to be descended into. A directory scanner descends
+     * into directories that are included and into directories that could contain files that
+     * match an include pattern, but nothing is included below a directory that matches an
+     * exclude pattern such as {@code node_modules/**} without the trailing {@code /**}.
+     * @param name relative pathname of the directory
+     * @return false if no pathname below the directory can be included
+     */
+    public boolean couldHoldIncluded(String name) {
+        if (excludedSubtreesPatterns.matches(name, CASE_SENSITIVE)) {
+            return false;
+        }
+        return includesPatterns.matchesPatternStart(name, CASE_SENSITIVE) || matches(name);
+    }
+
+}
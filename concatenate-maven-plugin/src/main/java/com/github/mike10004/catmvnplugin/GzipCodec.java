@@ -0,0 +1,38 @@
+package com.github.mike10004.catmvnplugin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Codec that produces gzip output with {@link GZIPOutputStream}, or with a
+ * {@link ParallelGzipOutputStream} if more than one thread is to be used.
+ */
+public class GzipCodec implements CompressionCodec {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int PARALLEL_BLOCK_SIZE = 1024 * 1024;
+
+    @Override
+    public String getName() {
+        return "gzip";
+    }
+
+    @Override
+    public String getFileExtension() {
+        return ".gz";
+    }
+
+    @Override
+    public OutputStream compress(OutputStream output) throws IOException {
+        return new GZIPOutputStream(output, BUFFER_SIZE);
+    }
+
+    @Override
+    public OutputStream compress(OutputStream output, int threads) throws IOException {
+        if (threads > 1) {
+            return new ParallelGzipOutputStream(output, threads, PARALLEL_BLOCK_SIZE);
+        }
+        return compress(output);
+    }
+}
@@ -0,0 +1,235 @@
+package com.github.mike10004.catmvnplugin;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Filter applied to the content of a source file as it is copied to the output.
+ * Content is processed in a single streaming pass. Lines are terminated by
+ * {@code \n}, {@code \r\n}, or {@code \r}. Lines are only held in memory if
+ * a pattern is to be matched against them.
+ */
+class LineFilter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final byte[] LF = {'\n'};
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] CR = {'\r'};
+
+    private final boolean stripBom;
+    @Nullable
+    private final byte[] lineEnding;
+    @Nullable
+    private final Pattern dropPattern;
+    private final Charset charset;
+    private final boolean ensureTrailingNewline;
+
+    /**
+     * Constructs an instance.
+     * @param stripBom true to remove a UTF-8 byte order mark from the start of the content
+     * @param lineEnding line terminator that replaces each line terminator; null to keep terminators as they are
+     * @param dropPattern pattern that identifies lines to drop; null to keep all lines
+     * @param charset charset used to decode lines that are matched against the pattern
+     * @param ensureTrailingNewline true to terminate the last line if it is not terminated
+     */
+    public LineFilter(boolean stripBom, @Nullable byte[] lineEnding, @Nullable Pattern dropPattern, Charset charset, boolean ensureTrailingNewline) {
+        this.stripBom = stripBom;
+        this.lineEnding = lineEnding == null ? null : lineEnding.clone();
+        this.dropPattern = dropPattern;
+        this.charset = requireNonNull(charset);
+        this.ensureTrailingNewline = ensureTrailingNewline;
+    }
+
+    /**
+     * Checks whether this filter copies content unchanged.
+     * @return true if this filter does nothing
+     */
+    public boolean isIdentity() {
+        return !stripBom && lineEnding == null && dropPattern == null && !ensureTrailingNewline;
+    }
+
+    /**
+     * Checks whether a charset encodes line terminators as the single bytes on which this
+     * filter splits lines. Charsets such as UTF-16 do not, and content in them would be corrupted.
+     * @param charset the charset
+     * @return true if the charset encodes {@code \r\n} as the ASCII bytes
+     */
+    public static boolean isAsciiCompatible(Charset charset) {
+        return Arrays.equals("\r\n".getBytes(charset), CRLF);
+    }
+
+    /**
+     * Gets the line terminator corresponding to a fileset line ending setting.
+     * @param name the setting: {@code keep}, {@code unix}, {@code lf}, {@code dos}, {@code windows}, or {@code crlf}
+     * @return the line terminator, or null if line terminators are to be kept
+     * @throws IllegalArgumentException if the setting is not recognized
+     */
+    @Nullable
+    public static byte[] parseLineEnding(@Nullable String name) {
+        if (name == null || name.isEmpty() || "keep".equals(name)) {
+            return null;
+        }
+        switch (name) {
+            case "unix":
+            case "lf":
+                return LF.clone();
+            case "dos":
+            case "windows":
+            case "crlf":
+                return CRLF.clone();
+            default:
+                throw new IllegalArgumentException("line ending not recognized: " + name);
+        }
+    }
+
+    /**
+     * Copies filtered content from an input stream to an output stream. Closes neither stream.
+     * @param input the input stream
+     * @param output the output stream
+     * @return the number of bytes written
+     * @throws IOException on I/O error
+     */
+    public long copy(InputStream input, OutputStream output) throws IOException {
+        if (stripBom) {
+            input = skipBom(input);
+        }
+        Pass pass = new Pass(output);
+        pass.run(input);
+        return pass.written;
+    }
+
+    private static InputStream skipBom(InputStream input) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(input, UTF8_BOM.length);
+        byte[] head = new byte[UTF8_BOM.length];
+        int n = 0;
+        while (n < head.length) {
+            int r = pushback.read(head, n, head.length - n);
+            if (r < 0) {
+                break;
+            }
+            n += r;
+        }
+        if (n < head.length || !Arrays.equals(head, UTF8_BOM)) {
+            pushback.unread(head, 0, n);
+        }
+        return pushback;
+    }
+
+    private class Pass {
+
+        private final OutputStream output;
+        private final byte[] buffer;
+        private long written;
+        @Nullable
+        private byte[] line;
+        private int lineLength;
+        private boolean lineStarted;
+        @Nullable
+        private byte[] lastTerminator;
+
+        public Pass(OutputStream output) {
+            this.output = output;
+            buffer = new byte[BUFFER_SIZE];
+            if (dropPattern != null) {
+                line = new byte[256];
+            }
+        }
+
+        public void run(InputStream input) throws IOException {
+            boolean pendingCr = false;
+            int n;
+            while ((n = input.read(buffer)) != -1) {
+                int start = 0;
+                for (int i = 0; i < n; i++) {
+                    byte b = buffer[i];
+                    if (pendingCr) {
+                        pendingCr = false;
+                        if (b == '\n') {
+                            endLine(CRLF);
+                            start = i + 1;
+                            continue;
+                        }
+                        endLine(CR);
+                    }
+                    if (b == '\n') {
+                        content(start, i - start);
+                        endLine(LF);
+                        start = i + 1;
+                    } else if (b == '\r') {
+                        content(start, i - start);
+                        pendingCr = true;
+                        start = i + 1;
+                    }
+                }
+                content(start, n - start);
+            }
+            if (pendingCr) {
+                endLine(CR);
+            } else if (lineStarted && !isDropped()) {
+                writeLine();
+                if (ensureTrailingNewline) {
+                    write(lineEnding != null ? lineEnding : lastTerminator != null ? lastTerminator : LF);
+                }
+            }
+        }
+
+        private void content(int offset, int length) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            lineStarted = true;
+            if (line == null) {
+                write(buffer, offset, length);
+            } else {
+                if (lineLength + length > line.length) {
+                    line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+                }
+                System.arraycopy(buffer, offset, line, lineLength, length);
+                lineLength += length;
+            }
+        }
+
+        private void endLine(byte[] terminator) throws IOException {
+            if (!isDropped()) {
+                writeLine();
+                write(lineEnding != null ? lineEnding : terminator);
+            }
+            lineLength = 0;
+            lineStarted = false;
+            lastTerminator = terminator;
+        }
+
+        private boolean isDropped() {
+            if (dropPattern == null) {
+                return false;
+            }
+            CharSequence text = charset.decode(ByteBuffer.wrap(requireNonNull(line), 0, lineLength));
+            return dropPattern.matcher(text).find();
+        }
+
+        private void write(byte[] b) throws IOException {
+            write(b, 0, b.length);
+        }
+
+        private void write(byte[] b, int off, int len) throws IOException {
+            output.write(b, off, len);
+            written += len;
+        }
+
+        private void writeLine() throws IOException {
+            if (line != null && lineLength > 0) {
+                write(line, 0, lineLength);
+            }
+        }
+    }
+}
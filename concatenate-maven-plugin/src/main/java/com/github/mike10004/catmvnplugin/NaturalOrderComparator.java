@@ -0,0 +1,76 @@
+package com.github.mike10004.catmvnplugin;
+
+import java.util.Comparator;
+
+/**
+ * Comparator that orders strings so that embedded numbers are compared by numeric value,
+ * so that {@code part9} comes before {@code part10}. Runs of digits are compared by value,
+ * regardless of length, and other characters are compared by character value. Strings that
+ * are equal by this ordering, such as {@code a01} and {@code a1}, are ordered by
+ * {@link String#compareTo(String)}.
+ */
+class NaturalOrderComparator implements Comparator<String> {
+
+    public static final NaturalOrderComparator INSTANCE = new NaturalOrderComparator();
+
+    private NaturalOrderComparator() {}
+
+    @Override
+    public int compare(String a, String b) {
+        int i = 0, j = 0;
+        int na = a.length(), nb = b.length();
+        while (i < na && j < nb) {
+            char ca = a.charAt(i), cb = b.charAt(j);
+            if (isDigit(ca) && isDigit(cb)) {
+                int startA = i, startB = j;
+                while (i < na && isDigit(a.charAt(i))) {
+                    i++;
+                }
+                while (j < nb && isDigit(b.charAt(j))) {
+                    j++;
+                }
+                int result = compareNumbers(a, startA, i, b, startB, j);
+                if (result != 0) {
+                    return result;
+                }
+            } else {
+                if (ca != cb) {
+                    return Character.compare(ca, cb);
+                }
+                i++;
+                j++;
+            }
+        }
+        if (i < na || j < nb) {
+            return i < na ? 1 : -1;
+        }
+        return a.compareTo(b);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Compares the numeric values of two runs of digits, which may be arbitrarily long.
+     */
+    private static int compareNumbers(String a, int startA, int endA, String b, int startB, int endB) {
+        while (startA < endA - 1 && a.charAt(startA) == '0') {
+            startA++;
+        }
+        while (startB < endB - 1 && b.charAt(startB) == '0') {
+            startB++;
+        }
+        int lengthA = endA - startA, lengthB = endB - startB;
+        if (lengthA != lengthB) {
+            return Integer.compare(lengthA, lengthB);
+        }
+        for (int k = 0; k < lengthA; k++) {
+            int result = Character.compare(a.charAt(startA + k), b.charAt(startB + k));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,166 @@
+package com.github.mike10004.catmvnplugin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Static utility methods relating to NIO channels.
+ */
+@SuppressWarnings({"WeakerAccess", "UnusedReturnValue"})
+class NioChannels {
+
+    private NioChannels() {}
+
+    /**
+     * Transfers all bytes from the current position of a file channel to the end of the file.
+     * A single call to {@link FileChannel#transferTo(long, long, WritableByteChannel)} may
+     * transfer fewer bytes than requested, so this method loops until the end of the file is reached.
+     * @param from the source channel
+     * @param to the target channel
+     * @return the number of bytes transferred
+     * @throws IOException if an I/O error occurs
+     */
+    public static long transferFully(FileChannel from, WritableByteChannel to) throws IOException {
+        requireNonNull(from);
+        requireNonNull(to);
+        long position = from.position();
+        long size = from.size();
+        long total = 0;
+        while (position < size) {
+            long n = from.transferTo(position, size - position, to);
+            if (n <= 0) {
+                // file was truncated while we were reading it
+                break;
+            }
+            position += n;
+            total += n;
+        }
+        from.position(position);
+        return total;
+    }
+
+    /**
+     * Writes all remaining bytes of a buffer to a channel.
+     * @param buffer the buffer
+     * @param to the target channel
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    public static int writeFully(ByteBuffer buffer, WritableByteChannel to) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            total += to.write(buffer);
+        }
+        return total;
+    }
+
+    /**
+     * Writes all bytes from the current position of a file channel to the end of the file
+     * by mapping the file into memory, one slice at a time, and writing each slice to the target.
+     * @param from the source channel
+     * @param to the target channel
+     * @param sliceSize maximum number of bytes mapped at once
+     * @return the number of bytes written
+     * @throws IOException if an I/O error occurs
+     */
+    public static long writeMapped(FileChannel from, WritableByteChannel to, int sliceSize) throws IOException {
+        long position = from.position();
+        long size = from.size();
+        long total = 0;
+        while (position < size) {
+            long length = Math.min(size - position, sliceSize);
+            MappedByteBuffer slice = from.map(FileChannel.MapMode.READ_ONLY, position, length);
+            total += writeFully(slice, to);
+            position += length;
+        }
+        from.position(position);
+        return total;
+    }
+
+    /**
+     * Copies all bytes from the current position of a channel to the end of its content
+     * through a buffer.
+     * @param from the source channel
+     * @param to the target channel
+     * @param buffer the buffer; its content is overwritten
+     * @return the number of bytes copied
+     * @throws IOException if an I/O error occurs
+     */
+    public static long copy(ReadableByteChannel from, WritableByteChannel to, ByteBuffer buffer) throws IOException {
+        long total = 0;
+        buffer.clear();
+        while (from.read(buffer) >= 0) {
+            buffer.flip();
+            total += writeFully(buffer, to);
+            buffer.clear();
+        }
+        return total;
+    }
+
+    /**
+     * Creates a channel that writes to an output stream. Unlike the channel returned by
+     * {@link java.nio.channels.Channels#newChannel(OutputStream)}, which passes bytes to the
+     * stream in chunks of at most 8 KiB, this channel writes the content of array-backed buffers
+     * in a single call and the content of other buffers in chunks of up to {@code chunkSize} bytes.
+     * @param out the output stream
+     * @param chunkSize maximum number of bytes copied out of a direct buffer at once
+     * @return a new channel
+     */
+    public static WritableByteChannel newChannel(OutputStream out, int chunkSize) {
+        return new OutputStreamChannel(out, chunkSize);
+    }
+
+    private static class OutputStreamChannel implements WritableByteChannel {
+
+        private final OutputStream out;
+        private final int chunkSize;
+        private byte[] chunk;
+        private boolean open = true;
+
+        public OutputStreamChannel(OutputStream out, int chunkSize) {
+            this.out = requireNonNull(out);
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            int len = src.remaining();
+            if (src.hasArray()) {
+                out.write(src.array(), src.arrayOffset() + src.position(), len);
+                src.position(src.limit());
+                return len;
+            }
+            if (chunk == null) {
+                chunk = new byte[chunkSize];
+            }
+            while (src.hasRemaining()) {
+                int n = Math.min(src.remaining(), chunk.length);
+                src.get(chunk, 0, n);
+                out.write(chunk, 0, n);
+            }
+            return len;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            open = false;
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.github.mike10004.catmvnplugin;
+
+import org.apache.maven.shared.model.fileset.FileSet;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+
+/**
+ * Scanner that lists the files included by a fileset with {@link Files#walkFileTree}.
+ * The attributes of each entry are read once, and on file systems that supply them with the
+ * directory listing they are not read separately, whereas {@code DirectoryScanner} checks
+ * whether each entry is a directory and then whether it is a file. Directories below which
+ * no file can be included are not listed. Each directory is walked as a separate task, so
+ * that sibling subdirectories can be walked concurrently.
+ *
+ * <p>Listing order and matching rules follow the {@code DirectoryScanner} used by
+ * {@code FileSetManager}: pathnames are in the order the directories are listed, with the
+ * files of a subdirectory in place of the subdirectory, and if symlinks are not followed,
+ * all entries of a directory that is a symbolic link are excluded.
+ */
+class NioDirectoryScanner {
+
+    private final int threads;
+
+    /**
+     * Constructs an instance.
+     * @param threads number of threads that walk directories; 1 walks on the calling thread
+     */
+    public NioDirectoryScanner(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Gets the files included by a fileset.
+     * @param fileSet the fileset
+     * @return the array of included files, relative to the fileset directory
+     * @throws UncheckedIOException if the type of an entry cannot be determined
+     */
+    public String[] getIncludedFiles(FileSet fileSet) {
+        Path root = new File(fileSet.getDirectory()).toPath();
+        boolean followSymlinks = fileSet.isFollowSymlinks();
+        LinkOption[] linkOptions = followSymlinks ? new LinkOption[0] : new LinkOption[]{LinkOption.NOFOLLOW_LINKS};
+        if (!Files.isDirectory(root, linkOptions)) {
+            return new String[0];
+        }
+        Walk walk = new Walk(root, "", null, null, new FileSetMatcher(fileSet), followSymlinks, threads > 1);
+        List<String> included;
+        if (threads > 1) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                included = pool.invoke(walk);
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            included = walk.compute();
+        }
+        return included.toArray(new String[0]);
+    }
+
+    /**
+     * Walks the directory of a fileset on the calling thread, passing each included file to
+     * a consumer as it is found, so that the included files need not be held in memory.
+     * Files are passed in the same order as they are returned by {@link #getIncludedFiles(FileSet)}.
+     * @param fileSet the fileset
+     * @param consumer consumer of the pathname, relative to the fileset directory, and the
+     *                 attributes of each included file; the attributes are those of the link
+     *                 if the file is a symbolic link that is not followed
+     * @throws UncheckedIOException if the type of an entry cannot be determined
+     */
+    public void scan(FileSet fileSet, BiConsumer<String, BasicFileAttributes> consumer) {
+        Path root = new File(fileSet.getDirectory()).toPath();
+        boolean followSymlinks = fileSet.isFollowSymlinks();
+        LinkOption[] linkOptions = followSymlinks ? new LinkOption[0] : new LinkOption[]{LinkOption.NOFOLLOW_LINKS};
+        if (Files.isDirectory(root, linkOptions)) {
+            new Walk(root, "", null, null, new FileSetMatcher(fileSet), followSymlinks, false).walk(consumer);
+        }
+    }
+
+    /**
+     * Included file found by a walk.
+     */
+    private static class Included {
+
+        public final String name;
+        public final BasicFileAttributes attributes;
+
+        public Included(String name, BasicFileAttributes attributes) {
+            this.name = name;
+            this.attributes = attributes;
+        }
+    }
+
+    /**
+     * Task that walks a directory and its subdirectories.
+     */
+    private static class Walk extends RecursiveTask<List<String>> {
+
+        private final Path dir;
+        private final String vpath;
+        @Nullable
+        private final Walk parent;
+        private final FileSetMatcher matcher;
+        private final boolean followSymlinks;
+        private final boolean parallel;
+        @Nullable
+        private Object fileKey;
+
+        public Walk(Path dir, String vpath, @Nullable Walk parent, @Nullable Object fileKey, FileSetMatcher matcher, boolean followSymlinks, boolean parallel) {
+            this.dir = dir;
+            this.vpath = vpath;
+            this.parent = parent;
+            this.fileKey = fileKey;
+            this.matcher = matcher;
+            this.followSymlinks = followSymlinks;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected List<String> compute() {
+            List<Object> entries = list();
+            if (parallel) {
+                for (Object entry : entries) {
+                    if (entry instanceof Walk) {
+                        ((Walk) entry).fork();
+                    }
+                }
+            }
+            List<String> included = new ArrayList<>();
+            for (Object entry : entries) {
+                if (entry instanceof Walk) {
+                    included.addAll(parallel ? ((Walk) entry).join() : ((Walk) entry).compute());
+                } else {
+                    included.add(((Included) entry).name);
+                }
+            }
+            return included;
+        }
+
+        /**
+         * Walks the directory and its subdirectories on the calling thread.
+         */
+        public void walk(BiConsumer<String, BasicFileAttributes> consumer) {
+            for (Object entry : list()) {
+                if (entry instanceof Walk) {
+                    ((Walk) entry).walk(consumer);
+                } else {
+                    consumer.accept(((Included) entry).name, ((Included) entry).attributes);
+                }
+            }
+        }
+
+        /**
+         * Lists the directory.
+         * @return included files and walks of subdirectories that could hold included files,
+         * in listing order
+         */
+        private List<Object> list() {
+            Set<FileVisitOption> options = followSymlinks ? EnumSet.of(FileVisitOption.FOLLOW_LINKS) : EnumSet.noneOf(FileVisitOption.class);
+            List<Object> entries = new ArrayList<>();
+            try {
+                Files.walkFileTree(dir, options, 1, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attrs) {
+                        if (fileKey == null) {
+                            fileKey = attrs.fileKey();
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        String name = vpath + file.getFileName();
+                        if (attrs.isDirectory()) {
+                            if (matcher.couldHoldIncluded(name) && !isAncestorOrSelf(attrs.fileKey())) {
+                                entries.add(new Walk(file, name + File.separator, Walk.this, attrs.fileKey(), matcher, followSymlinks, parallel));
+                            }
+                        } else if (attrs.isRegularFile() || (attrs.isSymbolicLink() && Files.isRegularFile(file))) {
+                            if (matcher.matches(name)) {
+                                entries.add(new Included(name, attrs));
+                            }
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        // unreadable entries are skipped, as they are by the directory scanner
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return entries;
+        }
+
+        /**
+         * Checks whether a directory, which may have been reached through a symbolic link,
+         * is this directory or one of its ancestors.
+         */
+        private boolean isAncestorOrSelf(@Nullable Object key) {
+            if (key == null) {
+                return false;
+            }
+            for (Walk walk = this; walk != null; walk = walk.parent) {
+                if (key.equals(walk.fileKey)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -4,6 +4,8 @@ import org.apache.maven.shared.model.fileset.FileSet;
 
 import javax.annotation.Nullable;
 
+import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
 import java.util.Comparator;
 
@@ -18,6 +20,16 @@ public class OrderableFileSet extends FileSet {
 
     private boolean ignoreEmptyIncludedFilesList;
 
+    @Nullable
+    private String archive;
+
+    @Nullable
+    private String dependency;
+
+    private Scanner scanner = Scanner.standard;
+
+    private int scanThreads = 1;
+
     public OrderableFileSet() {
     }
 
@@ -26,6 +38,25 @@ public class OrderableFileSet extends FileSet {
         strict
     }
 
+    /**
+     * Ways to list the files in a fileset directory.
+     */
+    public enum Scanner {
+
+        /**
+         * List files with the directory scanner used by {@code FileSetManager}, sharing
+         * listings with other filesets where enabled.
+         */
+        standard,
+
+        /**
+         * List files with {@link java.nio.file.Files#walkFileTree}, which reads the type of each
+         * entry along with the directory listing and skips directories below which nothing
+         * can be included. Included files are the same as with the standard scanner.
+         */
+        nio
+    }
+
     public enum SortingStrategy {
 
         /**
@@ -36,18 +67,90 @@ public class OrderableFileSet extends FileSet {
         /**
          * Sort included files and directories by pathname.
          */
-        alphabetical;
+        alphabetical,
+
+        /**
+         * Sort included files and directories by pathname, comparing embedded numbers
+         * by numeric value, so that {@code part9} comes before {@code part10}.
+         */
+        natural,
+
+        /**
+         * Sort included files and directories by last modified time, oldest first.
+         * Ties are broken by pathname.
+         */
+        lastModified,
 
+        /**
+         * Sort included files and directories by size, smallest first.
+         * Ties are broken by pathname.
+         */
+        size;
+
+        /**
+         * Sorts pathnames. Use {@link #sort(File, String[])} for sorting strategies that
+         * use file attributes.
+         * @param items the pathnames
+         * @throws IllegalStateException if this sorting strategy uses file attributes
+         */
         public void sort(String[] items) {
+            if (usesFileAttributes()) {
+                throw new IllegalStateException("sorting strategy " + this + " requires the fileset directory");
+            }
             if (this != none) {
-                Arrays.sort(items, getComparator());
+                Arrays.parallelSort(items, getComparator());
+            }
+        }
+
+        /**
+         * Sorts pathnames relative to a directory.
+         * @param basedir the directory
+         * @param items the pathnames
+         */
+        public void sort(File basedir, String[] items) {
+            if (usesFileAttributes()) {
+                SortKeys.sort(basedir, items, this);
+            } else {
+                sort(items);
             }
         }
 
-        private Comparator<String> getComparator() {
+        /**
+         * Checks whether this strategy sorts by file attributes rather than by pathname.
+         * @return true if this strategy uses file attributes
+         */
+        public boolean usesFileAttributes() {
+            return this == lastModified || this == size;
+        }
+
+        long getKey(File file) {
+            switch (this) {
+                case lastModified:
+                    return file.lastModified();
+                case size:
+                    return file.length();
+                default:
+                    throw new IllegalStateException("BUG: sorting strategy does not use file attributes: " + this);
+            }
+        }
+
+        long getKey(BasicFileAttributes attributes) {
+            switch (this) {
+                case lastModified:
+                    return attributes.lastModifiedTime().toMillis();
+                case size:
+                    return attributes.size();
+                default:
+                    throw new IllegalStateException("BUG: sorting strategy does not use file attributes: " + this);
+            }
+        }
+
+        Comparator<String> getComparator() {
             switch (this) {
                 case alphabetical:
                     return String::compareTo;
+                case natural:
+                    return NaturalOrderComparator.INSTANCE;
                 default:
                     throw new IllegalStateException("BUG: unhandled enum constant: SortingStrategy" + this);
             }
@@ -70,6 +173,57 @@ public class OrderableFileSet extends FileSet {
         this.ignoreEmptyIncludedFilesList = ignoreEmptyIncludedFilesList;
     }
 
+    /**
+     * Gets the pathname of a zip-format archive, such as a JAR, whose entries are the
+     * files of this fileset. If set, the directory of this fileset is a directory within
+     * the archive, and may be omitted.
+     * @return the archive pathname, or null if this fileset selects files from a directory
+     */
+    @Nullable
+    public String getArchive() {
+        return archive;
+    }
+
+    public void setArchive(@Nullable String archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Gets the coordinates of an artifact in the local repository whose entries are the
+     * files of this fileset, in the form {@code groupId:artifactId[:extension[:classifier]]:version}.
+     * The extension defaults to {@code jar}. Otherwise like {@link #getArchive()}.
+     * @return the artifact coordinates, or null
+     */
+    @Nullable
+    public String getDependency() {
+        return dependency;
+    }
+
+    public void setDependency(@Nullable String dependency) {
+        this.dependency = dependency;
+    }
+
+    public Scanner getScanner() {
+        return scanner;
+    }
+
+    public void setScanner(Scanner scanner) {
+        this.scanner = requireNonNull(scanner);
+    }
+
+    /**
+     * Gets the number of threads that walk sibling subdirectories concurrently
+     * when the {@link Scanner#nio} scanner is used.
+     * @return the number of threads; 1 walks the directory tree on the calling thread
+     */
+    public int getScanThreads() {
+        return scanThreads;
+    }
+
+    public void setScanThreads(int scanThreads) {
+        this.scanThreads = scanThreads;
+    }
+
     @Nullable
     public SortingStrategy getSort() {
         return sort;
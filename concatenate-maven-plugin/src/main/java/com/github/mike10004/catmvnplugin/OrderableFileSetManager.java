@@ -23,16 +23,22 @@ import com.github.mike10004.catmvnplugin.OrderableFileSet.OrderingStrategy;
 import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.shared.model.fileset.FileSet;
 import org.apache.maven.shared.model.fileset.util.FileSetManager;
+import org.apache.maven.shared.utils.io.MatchPattern;
 import org.codehaus.plexus.logging.Logger;
 
 import javax.annotation.Nullable;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedHashSet;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.LongConsumer;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Provides operations for use with FileSet instances, such as retrieving the included/excluded files, deleting all
@@ -41,8 +47,22 @@ import java.util.stream.Stream;
  * @author jdcasey
  * @version $Id: FileSetManager.java 1721672 2015-12-25 13:18:36Z khmarbaise $
  */
+@ThreadSafe
 public class OrderableFileSetManager extends FileSetManager
 {
+    /**
+     * Default maximum number of bytes of pathnames held in memory while sorting a stream of included files.
+     */
+    public static final long DEFAULT_SORT_MEMORY_BUDGET = 64 * 1024 * 1024;
+
+    @Nullable
+    private volatile DirectoryListingCache directoryListingCache;
+
+    private volatile long sortMemoryBudget = DEFAULT_SORT_MEMORY_BUDGET;
+
+    @Nullable
+    private volatile File sortTempDirectory;
+
     @SuppressWarnings({"unused", "BooleanParameter"})
     public OrderableFileSetManager(Log log, boolean verbose) {
         super(log, verbose);
@@ -108,10 +128,249 @@ public class OrderableFileSetManager extends FileSetManager
      */
     @Override
     public String[] getIncludedFiles( FileSet fileSet ) {
-        return getIncludedFilesOrDirectories(fileSet, super::getIncludedFiles);
+        return getIncludedFilesOrDirectories(fileSet, this::scanIncludedFiles);
+    }
+
+    /**
+     * Gets the files included by a fileset in the order they are listed by the directory scanner.
+     * If the fileset selects the {@link OrderableFileSet.Scanner#nio nio} scanner, the fileset
+     * directory is walked with that scanner. Otherwise, if a directory listing cache is set and
+     * it can provide the files for the fileset, then the cached listing is used; otherwise the
+     * fileset directory is scanned.
+     * @param fileSet the fileset
+     * @return the array of matching filenames, relative to the basedir of the file-set
+     */
+    protected String[] scanIncludedFiles( FileSet fileSet ) {
+        OrderableFileSet.Scanner scanner = maybeGetProperty(fileSet, OrderableFileSet::getScanner, OrderableFileSet.Scanner.standard);
+        switch (scanner) {
+            case nio:
+                int threads = maybeGetProperty(fileSet, OrderableFileSet::getScanThreads, 1);
+                return new NioDirectoryScanner(threads).getIncludedFiles(fileSet);
+            case standard:
+                if (directoryListingCache != null) {
+                    String[] includedFiles = directoryListingCache.getIncludedFiles(fileSet);
+                    if (includedFiles != null) {
+                        return includedFiles;
+                    }
+                }
+                return super.getIncludedFiles(fileSet);
+            default:
+                throw new IllegalStateException("bug: scanner " + scanner + " not handled");
+        }
+    }
+
+    /**
+     * Sets the cache of directory listings to be used when scanning for included files.
+     * @param directoryListingCache the cache; null means always scan
+     */
+    void setDirectoryListingCache(@Nullable DirectoryListingCache directoryListingCache) {
+        this.directoryListingCache = directoryListingCache;
+    }
+
+    /**
+     * Sets the approximate maximum number of bytes of pathnames in each run sorted in memory
+     * when sorting a stream of included files. Longer lists are sorted in runs that are written
+     * to temporary files and merged. The budget does not cover lists that are held in memory
+     * before they are sorted.
+     * @param sortMemoryBudget the budget; zero or negative means unlimited
+     */
+    void setSortMemoryBudget(long sortMemoryBudget) {
+        this.sortMemoryBudget = sortMemoryBudget;
+    }
+
+    /**
+     * Sets the directory where sort runs are written.
+     * @param sortTempDirectory the directory; null means the default temporary directory
+     */
+    void setSortTempDirectory(@Nullable File sortTempDirectory) {
+        this.sortTempDirectory = sortTempDirectory;
+    }
+
+    /**
+     * Gets the files included by a fileset as a stream. The files are the same, and in the
+     * same order, as those returned by {@link #getIncludedFiles(FileSet)}, but if the fileset
+     * is sorted, the sort is performed within the memory budget, and the sorted pathnames
+     * are produced lazily. The stream must be closed in order to delete any temporary files.
+     * @param fileSet the fileset
+     * @return a stream of matching filenames, relative to the basedir of the file-set
+     * @throws IOException if sorting requires temporary files and they cannot be written
+     */
+    public Stream<String> streamIncludedFiles( FileSet fileSet ) throws IOException {
+        return streamIncludedFiles(fileSet, nanos -> {});
+    }
+
+    /**
+     * Gets the files included by a fileset as a stream, reporting the time spent sorting.
+     *
+     * <p>Every sorting strategy is a total order on pathnames, so the sorted result does not
+     * depend on the order in which files are found. Unless the files of a sorted fileset are
+     * already held by the directory listing cache, or the fileset is to be scanned by multiple
+     * threads, the fileset directory is therefore walked on the calling thread and each file
+     * is passed to the sorter as it is found, so that the list of files is not held in memory
+     * before it is sorted. Unsorted filesets are scanned in full before the stream is returned.
+     * @param fileSet the fileset
+     * @param sortTimer receives the nanoseconds spent sorting, including time spent merging
+     *                  sort runs as the stream is consumed
+     * @return a stream of matching filenames, relative to the basedir of the file-set
+     * @throws IOException if sorting requires temporary files and they cannot be written
+     * @see #streamIncludedFiles(FileSet)
+     */
+    Stream<String> streamIncludedFiles( FileSet fileSet, LongConsumer sortTimer ) throws IOException {
+        OrderableFileSet.SortingStrategy sortingStrategy = getSortingStrategy(fileSet);
+        if (sortingStrategy == null || sortingStrategy == OrderableFileSet.SortingStrategy.none) {
+            return Stream.of(getOrderedFilesOrDirectories(fileSet, this::scanIncludedFiles));
+        }
+        File basedir = new File(fileSet.getDirectory());
+        String[] includedFiles = getCachedIncludedFiles(fileSet);
+        if (includedFiles == null && maybeGetProperty(fileSet, OrderableFileSet::getScanThreads, 1) > 1) {
+            includedFiles = scanIncludedFiles(fileSet);
+        }
+        if (includedFiles != null) {
+            return sortIncluded(sortingStrategy, includedFiles, items -> SortKeys.encodeAll(basedir, items, sortingStrategy), sortTimer);
+        }
+        NioDirectoryScanner scanner = new NioDirectoryScanner(1);
+        return sort(sortingStrategy, consumer -> scanner.scan(fileSet, (name, attributes) -> {
+            if (sortingStrategy.usesFileAttributes()) {
+                consumer.accept(SortKeys.encode(SortKeys.getKey(new File(basedir, name).toPath(), attributes, sortingStrategy), name));
+            } else {
+                consumer.accept(name);
+            }
+        }), sortTimer);
+    }
+
+    /**
+     * Gets the files included by a fileset from the directory listing cache, if the fileset
+     * uses the standard scanner and the cache can provide them.
+     * @return the array of matching filenames, or null
+     */
+    @Nullable
+    private String[] getCachedIncludedFiles( FileSet fileSet ) {
+        OrderableFileSet.Scanner scanner = maybeGetProperty(fileSet, OrderableFileSet::getScanner, OrderableFileSet.Scanner.standard);
+        if (scanner != OrderableFileSet.Scanner.standard || directoryListingCache == null) {
+            return null;
+        }
+        return directoryListingCache.getIncludedFiles(fileSet);
+    }
+
+    /**
+     * Gets the entries of an archive included by a fileset as a stream. The fileset directory,
+     * if set, is a directory within the archive, and the entry names are matched and ordered
+     * the same way as the pathnames of files in a fileset directory.
+     * @param fileSet the fileset
+     * @param archive the archive
+     * @return a stream of matching entry names, relative to the fileset directory, with platform separators
+     * @throws IOException if sorting requires temporary files and they cannot be written
+     */
+    public Stream<String> streamIncludedEntries( FileSet fileSet, SourceArchive archive ) throws IOException {
+        return streamIncludedEntries(fileSet, archive, nanos -> {});
+    }
+
+    /**
+     * Gets the entries of an archive included by a fileset as a stream, reporting the time spent sorting.
+     * @param fileSet the fileset
+     * @param archive the archive
+     * @param sortTimer receives the nanoseconds spent sorting, including time spent merging
+     *                  sort runs as the stream is consumed
+     * @return a stream of matching entry names, relative to the fileset directory, with platform separators
+     * @throws IOException if sorting requires temporary files and they cannot be written
+     * @see #streamIncludedEntries(FileSet, SourceArchive)
+     */
+    Stream<String> streamIncludedEntries( FileSet fileSet, SourceArchive archive, LongConsumer sortTimer ) throws IOException {
+        String directory = Guava.Strings.nullToEmpty(fileSet.getDirectory());
+        String[] includedEntries = getOrderedFilesOrDirectories(fileSet, fs -> archive.list(directory, new FileSetMatcher(fs)));
+        OrderableFileSet.SortingStrategy sortingStrategy = getSortingStrategy(fileSet);
+        if (sortingStrategy == null || sortingStrategy == OrderableFileSet.SortingStrategy.none) {
+            return Stream.of(includedEntries);
+        }
+        // the entries of an archive are listed from its central directory, which is held in memory anyway
+        return sortIncluded(sortingStrategy, includedEntries, items -> {
+            for (int i = 0; i < items.length; i++) {
+                items[i] = SortKeys.encode(sortingStrategy.getKey(archive.getEntryFile(directory, items[i])), items[i]);
+            }
+        }, sortTimer);
+    }
+
+    /**
+     * Sorts an array of pathnames. Each element of the array is cleared once it has been
+     * passed to the sorter, so that the array does not hold pathnames that have been
+     * written to sort runs.
+     * @param encoder function that encodes the pathnames in place with their keys, if the
+     *                strategy uses file attributes
+     */
+    private Stream<String> sortIncluded( OrderableFileSet.SortingStrategy sortingStrategy, String[] includedFiles, Consumer<String[]> encoder, LongConsumer sortTimer ) throws IOException {
+        long start = System.nanoTime();
+        if (sortingStrategy.usesFileAttributes()) {
+            encoder.accept(includedFiles);
+        }
+        sortTimer.accept(System.nanoTime() - start);
+        return sort(sortingStrategy, consumer -> {
+            for (int i = 0; i < includedFiles.length; i++) {
+                String item = includedFiles[i];
+                includedFiles[i] = null;
+                consumer.accept(item);
+            }
+        }, sortTimer);
+    }
+
+    /**
+     * Sorts the pathnames supplied by a producer within the memory budget. If the strategy
+     * uses file attributes, the producer must supply {@link SortKeys#encode(long, String) encoded}
+     * pathnames.
+     * @param sortTimer receives the nanoseconds spent sorting, excluding time spent by the producer
+     */
+    private Stream<String> sort( OrderableFileSet.SortingStrategy sortingStrategy, Consumer<Consumer<String>> producer, LongConsumer sortTimer ) throws IOException {
+        boolean encoded = sortingStrategy.usesFileAttributes();
+        // encoded strings sort by key and then by pathname, so that runs need not hold separate keys
+        ExternalSorter sorter = new ExternalSorter(encoded ? String::compareTo : sortingStrategy.getComparator(), sortMemoryBudget, sortTempDirectory);
+        long[] producerNanos = {0};
+        long start = System.nanoTime();
+        Stream<String> sorted = sorter.sort(consumer -> {
+            long producerStart = System.nanoTime();
+            long[] consumerNanos = {0};
+            producer.accept(item -> {
+                long consumerStart = System.nanoTime();
+                consumer.accept(item);
+                consumerNanos[0] += System.nanoTime() - consumerStart;
+            });
+            producerNanos[0] = System.nanoTime() - producerStart - consumerNanos[0];
+        });
+        sortTimer.accept(System.nanoTime() - start - producerNanos[0]);
+        Iterator<String> it = sorted.iterator();
+        Iterator<String> timed = new Iterator<String>() {
+            @Override
+            public boolean hasNext() {
+                long start = System.nanoTime();
+                boolean hasNext = it.hasNext();
+                sortTimer.accept(System.nanoTime() - start);
+                return hasNext;
+            }
+
+            @Override
+            public String next() {
+                long start = System.nanoTime();
+                String next = it.next();
+                sortTimer.accept(System.nanoTime() - start);
+                return encoded ? SortKeys.decode(next) : next;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(timed, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(sorted::close);
     }
 
     protected String[] getIncludedFilesOrDirectories( FileSet fileSet, Function<FileSet, String[]> superGetter ) {
+        String[] includedFilesAndDirectories = getOrderedFilesOrDirectories(fileSet, superGetter);
+        OrderableFileSet.SortingStrategy sortingStrategy = getSortingStrategy(fileSet);
+        if (sortingStrategy != null) {
+            if (fileSet.getDirectory() == null) {
+                sortingStrategy.sort(includedFilesAndDirectories);
+            } else {
+                sortingStrategy.sort(new File(fileSet.getDirectory()), includedFilesAndDirectories);
+            }
+        }
+        return includedFilesAndDirectories;
+    }
+
+    private String[] getOrderedFilesOrDirectories( FileSet fileSet, Function<FileSet, String[]> superGetter ) {
         OrderingStrategy strategy = getOrderingStrategy(fileSet);
         final String[] includedFilesAndDirectories;
         switch (strategy) {
@@ -128,45 +387,53 @@ public class OrderableFileSetManager extends FileSetManager
             default:
                 throw new IllegalArgumentException("bug: unhandled ordering strategy: " + strategy);
         }
-        OrderableFileSet.SortingStrategy sortingStrategy = getSortingStrategy(fileSet);
-        if (sortingStrategy != null) {
-            sortingStrategy.sort(includedFilesAndDirectories);
-        }
         return includedFilesAndDirectories;
     }
 
-    private static FileSet cloneExceptIncludes(FileSet source) {
-        FileSet target = new FileSet();
-        target.setDirectory(source.getDirectory());
-        target.setLineEnding(source.getLineEnding());
-        target.setModelEncoding(source.getModelEncoding());
-        target.setDirectoryMode(source.getDirectoryMode());
-        target.setExcludes(source.getExcludes());
-        target.setFileMode(source.getFileMode());
-        target.setFollowSymlinks(source.isFollowSymlinks());
-        target.setMapper(source.getMapper());
-        target.setOutputDirectory(source.getOutputDirectory());
-        target.setUseDefaultExcludes(source.isUseDefaultExcludes());
-        return target;
-    }
-
-    protected Stream<FileSet> expandIncludes(FileSet orderedFileSet) {
-        List<String> includes = orderedFileSet.getIncludes();
-        return includes.stream().map(include -> {
-            FileSet singleIncludeFileset = cloneExceptIncludes(orderedFileSet);
-            singleIncludeFileset.setIncludes(Collections.singletonList(include));
-            return singleIncludeFileset;
-        });
-    }
-
+    /**
+     * Gets the files or directories included by a fileset, ordered by the index of the first include
+     * pattern that each one matches. The fileset is scanned once with all of its include patterns,
+     * and then each pathname is assigned to the bucket of the first include pattern it matches. Within
+     * a bucket, pathnames are in the order the scanner returned them. This produces the same result
+     * as scanning once per include pattern and concatenating the results without repeats.
+     * The buckets are not materialized; the bucket index of each pathname is recorded, and
+     * the pathnames are then placed directly into the result array by a counting sort.
+     * @param orderedFileSet the fileset
+     * @param getter function that scans a fileset
+     * @return the array of pathnames, relative to the basedir of the fileset
+     */
     protected String[] getIncludedFilesOrDirectoriesInIncludesOrder(FileSet orderedFileSet, Function<FileSet, String[]> getter) {
-        Stream<FileSet> virtualFilesets = expandIncludes(orderedFileSet);
-        Collection<String> expandedList = new LinkedHashSet<>();
-        virtualFilesets.forEach(fileset -> {
-            String[] includedThings = getter.apply(fileset);
-            expandedList.addAll(Arrays.asList(includedThings));
-        });
-        return expandedList.toArray(new String[0]);
+        List<String> includes = orderedFileSet.getIncludes();
+        MatchPattern[] includePatterns = new MatchPattern[includes.size()];
+        for (int i = 0; i < includePatterns.length; i++) {
+            includePatterns[i] = MatchPattern.fromString(FileSetMatcher.normalizePattern(includes.get(i)));
+        }
+        String[] includedThings = getter.apply(orderedFileSet);
+        int[] bucketIndexes = new int[includedThings.length];
+        int[] offsets = new int[includePatterns.length + 1];
+        int numMatched = 0;
+        for (int j = 0; j < includedThings.length; j++) {
+            bucketIndexes[j] = -1;
+            for (int i = 0; i < includePatterns.length; i++) {
+                if (includePatterns[i].matchPath(includedThings[j], true)) {
+                    bucketIndexes[j] = i;
+                    offsets[i + 1]++;
+                    numMatched++;
+                    break;
+                }
+            }
+        }
+        for (int i = 0; i < includePatterns.length; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        String[] ordered = new String[numMatched];
+        for (int j = 0; j < includedThings.length; j++) {
+            int i = bucketIndexes[j];
+            if (i >= 0) {
+                ordered[offsets[i]++] = includedThings[j];
+            }
+        }
+        return ordered;
     }
 
     /**
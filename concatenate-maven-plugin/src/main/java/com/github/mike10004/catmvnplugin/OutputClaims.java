@@ -0,0 +1,95 @@
+package com.github.mike10004.catmvnplugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Registry of output files that are being written by executions running in this JVM.
+ * In a parallel build, executions in different modules run concurrently in the same
+ * plugin class realm, so an execution claims its output files before writing them and
+ * fails if another execution already holds a claim on one of them.
+ */
+class OutputClaims {
+
+    private static final ConcurrentMap<String, Claim> claims = new ConcurrentHashMap<>();
+
+    private OutputClaims() {}
+
+    /**
+     * Exception thrown if an output file is already claimed.
+     */
+    static class OutputCollisionException extends IllegalStateException {
+
+        public final File file;
+        public final String owner;
+
+        public OutputCollisionException(File file, String owner) {
+            super("output file " + file + " is being written by another execution: " + owner);
+            this.file = file;
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * Set of claims that are released together.
+     */
+    static class Claim implements AutoCloseable {
+
+        public final String owner;
+        private final List<String> keys;
+
+        private Claim(String owner) {
+            this.owner = owner;
+            keys = new ArrayList<>();
+        }
+
+        /**
+         * Releases the claims.
+         */
+        @Override
+        public void close() {
+            for (String key : keys) {
+                claims.remove(key, this);
+            }
+            keys.clear();
+        }
+    }
+
+    /**
+     * Claims output files. Either all files are claimed or none are.
+     * @param files the output files
+     * @param owner description of the claiming execution
+     * @return the claim, to be closed when the files have been written
+     * @throws OutputCollisionException if a file is already claimed
+     */
+    public static Claim claim(Collection<File> files, String owner) {
+        requireNonNull(owner);
+        Claim claim = new Claim(owner);
+        try {
+            for (File file : files) {
+                String key = toKey(file);
+                Claim existing = claims.putIfAbsent(key, claim);
+                if (existing != null && existing != claim) {
+                    throw new OutputCollisionException(file, existing.owner);
+                }
+                if (existing == null) {
+                    claim.keys.add(key);
+                }
+            }
+        } catch (RuntimeException e) {
+            claim.close();
+            throw e;
+        }
+        return claim;
+    }
+
+    private static String toKey(File file) {
+        return file.getAbsoluteFile().toPath().normalize().toString();
+    }
+}
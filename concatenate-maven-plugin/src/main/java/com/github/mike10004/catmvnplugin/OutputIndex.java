@@ -0,0 +1,165 @@
+package com.github.mike10004.catmvnplugin;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Index of the location of each source file in the concatenated output. Offsets and
+ * lengths refer to the uncompressed output, including the effect of line filters.
+ *
+ * <p>The binary format is big-endian and allows a reader to locate entry {@code i}
+ * without reading the entries before it:
+ * <pre>
+ *   header:  magic "CATI" (4 bytes), version (int), flags (int), entry count (int)
+ *   entries: offset (long), length (long), path offset (int), path length (int),
+ *            [SHA-256 (32 bytes) if flag {@link #FLAG_HASHES} is set]
+ *   paths:   UTF-8 bytes of the paths; path offsets are relative to the start of this section
+ * </pre>
+ */
+class OutputIndex implements Concatenator.EntryListener {
+
+    static final int MAGIC = 0x43415449;
+    static final int VERSION = 1;
+    static final int FLAG_HASHES = 1;
+    static final int HEADER_SIZE = 16;
+    static final int ENTRY_SIZE = 24;
+    static final int HASH_SIZE = 32;
+
+    public enum Format {
+        binary,
+        json;
+
+        public String getFileExtension() {
+            switch (this) {
+                case binary:
+                    return ".idx";
+                case json:
+                    return ".idx.json";
+                default:
+                    throw new IllegalStateException("bug: format " + this + " not handled");
+            }
+        }
+    }
+
+    static class Entry {
+
+        public final String path;
+        public final long offset;
+        public final long length;
+        @Nullable
+        public final String sha256;
+
+        public Entry(String path, long offset, long length, @Nullable String sha256) {
+            this.path = requireNonNull(path);
+            this.offset = offset;
+            this.length = length;
+            this.sha256 = sha256;
+        }
+    }
+
+    private final Function<File, String> pathnames;
+    private final List<Entry> entries;
+    private boolean hashed;
+
+    /**
+     * Constructs an instance.
+     * @param pathnames function that supplies the pathname recorded for each source file
+     */
+    public OutputIndex(Function<File, String> pathnames) {
+        this.pathnames = requireNonNull(pathnames);
+        entries = new ArrayList<>();
+    }
+
+    @Override
+    public void entryWritten(File sourceFile, long offset, long length, @Nullable String sha256) {
+        hashed = sha256 != null;
+        entries.add(new Entry(pathnames.apply(sourceFile), offset, length, sha256));
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Writes the index in the given format.
+     * @param format the format
+     * @param file the file to write
+     * @throws IOException on I/O error
+     */
+    public void write(Format format, File file) throws IOException {
+        switch (format) {
+            case binary:
+                writeBinary(file);
+                break;
+            case json:
+                Files.write(file.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+                break;
+            default:
+                throw new IllegalStateException("bug: format " + format + " not handled");
+        }
+    }
+
+    private void writeBinary(File file) throws IOException {
+        ByteArrayOutputStream paths = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(hashed ? FLAG_HASHES : 0);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                byte[] path = entry.path.getBytes(StandardCharsets.UTF_8);
+                out.writeLong(entry.offset);
+                out.writeLong(entry.length);
+                out.writeInt(paths.size());
+                out.writeInt(path.length);
+                if (hashed) {
+                    out.write(parseHex(requireNonNull(entry.sha256)));
+                }
+                paths.write(path);
+            }
+            paths.writeTo(out);
+        }
+    }
+
+    private static byte[] parseHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(64 + entries.size() * 64);
+        sb.append("{\"entries\":[");
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"path\":\"").append(StringEscapeUtils.escapeJson(entry.path)).append('"');
+            sb.append(",\"offset\":").append(entry.offset);
+            sb.append(",\"length\":").append(entry.length);
+            if (entry.sha256 != null) {
+                sb.append(",\"sha256\":\"").append(entry.sha256).append('"');
+            }
+            sb.append('}');
+        }
+        sb.append("]}\n");
+        return sb.toString();
+    }
+}
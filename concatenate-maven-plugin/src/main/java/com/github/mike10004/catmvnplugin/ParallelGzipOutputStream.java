@@ -0,0 +1,186 @@
+package com.github.mike10004.catmvnplugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Output stream that compresses fixed-size blocks of its input in parallel and writes
+ * each block as a separate gzip member, in order. A sequence of gzip members is a valid
+ * gzip file, and decompresses to the concatenation of the member contents. Compression
+ * is slightly worse than with a single member, because each block is compressed
+ * without reference to the previous block.
+ */
+class ParallelGzipOutputStream extends OutputStream {
+
+    private static final byte[] MEMBER_HEADER = {
+            0x1f, (byte) 0x8b, // magic number
+            Deflater.DEFLATED, // compression method
+            0,                 // flags
+            0, 0, 0, 0,        // modification time
+            0,                 // extra flags
+            0,                 // operating system
+    };
+
+    private static final int MAX_PENDING_PER_THREAD = 2;
+
+    private final OutputStream out;
+    private final ForkJoinPool pool;
+    private final int blockSize;
+    private final int maxPending;
+    private final Deque<Future<byte[]>> pending;
+    private byte[] block;
+    private int count;
+    private int numMembers;
+    private boolean closed;
+
+    /**
+     * Constructs an instance.
+     * @param out the stream to which compressed bytes are written
+     * @param threads number of compression threads
+     * @param blockSize number of uncompressed bytes in each gzip member
+     */
+    public ParallelGzipOutputStream(OutputStream out, int threads, int blockSize) {
+        this.out = requireNonNull(out);
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("block size must be positive: " + blockSize);
+        }
+        this.blockSize = blockSize;
+        pool = new ForkJoinPool(threads);
+        maxPending = threads * MAX_PENDING_PER_THREAD;
+        pending = new ArrayDeque<>();
+        block = new byte[blockSize];
+    }
+
+    private void checkNotClosed() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkNotClosed();
+        block[count++] = (byte) b;
+        if (count == blockSize) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkNotClosed();
+        while (len > 0) {
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = count;
+        pending.add(pool.submit(() -> compressMember(data, length)));
+        numMembers++;
+        block = new byte[blockSize];
+        count = 0;
+        while (pending.size() > maxPending) {
+            writeNextMember();
+        }
+    }
+
+    private void writeNextMember() throws IOException {
+        Future<byte[]> member = pending.remove();
+        try {
+            out.write(member.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("compression failed", e.getCause());
+        }
+    }
+
+    private static byte[] compressMember(byte[] data, int length) {
+        ByteArrayOutputStream member = new ByteArrayOutputStream(length / 2 + 64);
+        member.write(MEMBER_HEADER, 0, MEMBER_HEADER.length);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                member.write(buffer, 0, n);
+            }
+        } finally {
+            deflater.end();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        writeIntLE(member, (int) crc.getValue());
+        writeIntLE(member, length);
+        return member.toByteArray();
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+
+    /**
+     * Writes all members that have been submitted for compression and flushes the
+     * underlying stream. Bytes in the current partial block are not written, because
+     * ending a member early would make the output depend on when the stream is flushed.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkNotClosed();
+        while (!pending.isEmpty()) {
+            writeNextMember();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (count > 0 || numMembers == 0) {
+                submitBlock();
+            }
+            while (!pending.isEmpty()) {
+                writeNextMember();
+            }
+        } finally {
+            closed = true;
+            for (Future<byte[]> member : pending) {
+                member.cancel(true);
+            }
+            pool.shutdownNow();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.github.mike10004.catmvnplugin;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Concatenator that reads upcoming source files on a pool of reader threads while
+ * the calling thread writes completed reads to the output in source order. This hides
+ * the latency of opening and reading many small files. The total size of files read
+ * but not yet written is bounded. Large files are not read ahead; they are transferred
+ * directly to the output when their turn comes, because the per-file overhead is
+ * insignificant relative to their transfer time.
+ */
+class PipelinedConcatenator extends Concatenator.ChannelConcatenator {
+
+    private static final int MAX_QUEUED_PER_READER = 16;
+    private static final int MAX_READ_AHEAD_FILE_SIZE = 1024 * 1024;
+    private static final int MIN_BUFFER_SIZE = 64 * 1024;
+
+    private final int readerThreads;
+    private final int maxInFlightBytes;
+    private final int maxReadAheadFileSize;
+    private final Queue<ByteBuffer> bufferPool;
+
+    /**
+     * Constructs an instance.
+     * @param dividerBytes divider
+     * @param readerThreads number of reader threads
+     * @param maxInFlightBytes maximum number of bytes read but not yet written
+     * @param mapThreshold minimum size of a source file that is memory-mapped; negative to never map
+     */
+    public PipelinedConcatenator(byte[] dividerBytes, int readerThreads, long maxInFlightBytes, long mapThreshold) {
+        super(dividerBytes, mapThreshold);
+        if (readerThreads < 1) {
+            throw new IllegalArgumentException("reader threads must be positive: " + readerThreads);
+        }
+        if (maxInFlightBytes < 0) {
+            throw new IllegalArgumentException("max in-flight bytes must be nonnegative: " + maxInFlightBytes);
+        }
+        this.readerThreads = readerThreads;
+        this.maxInFlightBytes = (int) Math.min(maxInFlightBytes, Integer.MAX_VALUE);
+        maxReadAheadFileSize = Math.min(this.maxInFlightBytes, MAX_READ_AHEAD_FILE_SIZE);
+        bufferPool = new ConcurrentLinkedQueue<>();
+    }
+
+    private static class Member {
+
+        public final File file;
+        public final int permits;
+
+        @Nullable
+        public final Future<ByteBuffer> content;
+
+        public Member(File file, int permits, @Nullable Future<ByteBuffer> content) {
+            this.file = file;
+            this.permits = permits;
+            this.content = content;
+        }
+    }
+
+    @Override
+    public int concatenate(Iterable<File> sourceFiles, OutputStream output) throws IOException {
+        WritableByteChannel target = toChannel(track(output));
+        ExecutorService executor = Executors.newFixedThreadPool(readerThreads, new ReaderThreadFactory());
+        Semaphore budget = new Semaphore(maxInFlightBytes);
+        Deque<Member> pending = new ArrayDeque<>();
+        Iterator<File> sources = sourceFiles.iterator();
+        int maxQueued = readerThreads * MAX_QUEUED_PER_READER;
+        File deferred = null;
+        int numFiles = 0;
+        try {
+            while (true) {
+                while (pending.size() < maxQueued && (deferred != null || sources.hasNext())) {
+                    File file = deferred != null ? deferred : sources.next();
+                    deferred = null;
+                    long size = file.length();
+                    if (size > maxReadAheadFileSize) {
+                        pending.add(new Member(file, 0, null));
+                        continue;
+                    }
+                    int permits = (int) size;
+                    if (!budget.tryAcquire(permits)) {
+                        deferred = file;
+                        break;
+                    }
+                    pending.add(new Member(file, permits, executor.submit(() -> read(file))));
+                }
+                Member member = pending.poll();
+                if (member == null) {
+                    break;
+                }
+                int index = getStartIndex() + numFiles;
+                if (index > 0) {
+                    writeDivider(target);
+                }
+                write(renderHeader(member.file, index), target);
+                entryStarted(member.file);
+                if (member.content == null) {
+                    entryWritten(member.file, transfer(member.file, target));
+                } else {
+                    ByteBuffer buffer = await(member);
+                    budget.release(member.permits);
+                    if (buffer == null) {
+                        entryWritten(member.file, transfer(member.file, target));
+                    } else {
+                        long length = NioChannels.writeFully(buffer, target);
+                        sourceRead(length);
+                        entryWritten(member.file, length);
+                        bufferPool.offer(buffer);
+                    }
+                }
+                write(renderFooter(member.file, index), target);
+                numFiles++;
+            }
+        } finally {
+            for (Member member : pending) {
+                if (member.content != null) {
+                    member.content.cancel(true);
+                }
+            }
+            executor.shutdownNow();
+        }
+        return numFiles;
+    }
+
+    @Nullable
+    private static ByteBuffer await(Member member) throws IOException {
+        try {
+            //noinspection ConstantConditions
+            return member.content.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for read of " + member.file);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("failed to read " + member.file, cause);
+        }
+    }
+
+    /**
+     * Reads a source file into a buffer.
+     * @return the buffer, or null if the file grew larger than the buffer after its size
+     * was checked, in which case it must be transferred instead
+     */
+    @Nullable
+    private ByteBuffer read(File file) throws IOException {
+        try (ReadableByteChannel input = SourceArchive.EntryFile.openChannel(file)) {
+            long size = input instanceof FileChannel ? ((FileChannel) input).size() : file.length();
+            ByteBuffer buffer = takeBuffer((int) Math.min(size, maxReadAheadFileSize));
+            boolean eof = false;
+            while (buffer.hasRemaining()) {
+                if (input.read(buffer) < 0) {
+                    // file was truncated while we were reading it
+                    eof = true;
+                    break;
+                }
+            }
+            if (!eof && hasMore(input)) {
+                bufferPool.offer(buffer);
+                return null;
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    private static boolean hasMore(ReadableByteChannel input) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(1);
+        int n;
+        do {
+            n = input.read(probe);
+        } while (n == 0);
+        return n > 0;
+    }
+
+    private ByteBuffer takeBuffer(int size) {
+        ByteBuffer buffer = bufferPool.poll();
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocateDirect(Math.max(size, MIN_BUFFER_SIZE));
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+
+    private static class ReaderThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger poolCounter = new AtomicInteger();
+
+        private final int poolNumber = poolCounter.incrementAndGet();
+        private final AtomicInteger threadCounter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "cat-reader-" + poolNumber + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.github.mike10004.catmvnplugin;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * On-disk cache of directory listings that persists between builds. Each entry holds the
+ * listings of the directories below a fileset directory that were listed by a scan, along
+ * with the modification time of each directory. A listing is reused as long as its directory
+ * has not been modified, because adding, removing, or renaming a directory entry updates the
+ * modification time of the directory; directories that have been modified are listed again.
+ * Changes to file content do not affect listings, so they do not invalidate entries.
+ *
+ * <p>A listing is not stored if its directory was modified within {@link #MTIME_GRANULARITY_NANOS}
+ * of the time it was listed, because on file systems with coarse timestamps an entry could be
+ * added after the listing without changing the modification time of the directory.
+ */
+class ScanCache {
+
+    private static final String FORMAT_VERSION = "2";
+    private static final long MISSING = -1;
+
+    /**
+     * Coarsest modification time resolution of the file systems in common use (FAT).
+     */
+    static final long MTIME_GRANULARITY_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final File directory;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Constructs an instance.
+     * @param directory directory where cache entries are stored
+     */
+    public ScanCache(File directory) {
+        this.directory = requireNonNull(directory);
+    }
+
+    /**
+     * Listing of a directory, with the modification time the directory had when it was listed.
+     */
+    static class DirectoryListing {
+
+        public final String pathname;
+        public final long lastModified;
+        public final List<Entry> entries;
+
+        /**
+         * Flag that indicates the directory was last modified long enough before it was listed
+         * that a later modification is certain to change its modification time.
+         */
+        public final boolean confirmed;
+
+        public DirectoryListing(String pathname, long lastModified, List<Entry> entries, boolean confirmed) {
+            this.pathname = requireNonNull(pathname);
+            this.lastModified = lastModified;
+            this.entries = requireNonNull(entries);
+            this.confirmed = confirmed;
+        }
+
+        /**
+         * Lists a directory. Entries that are neither files nor directories are omitted.
+         * @param dir the directory
+         * @return the listing, which is empty if the directory does not exist or cannot be listed
+         */
+        public static DirectoryListing list(File dir) {
+            long lastModified = getLastModified(dir);
+            long listedAt = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+            String[] names = dir.list();
+            List<Entry> entries = new ArrayList<>(names == null ? 0 : names.length);
+            if (names != null) {
+                for (String name : names) {
+                    File file = new File(dir, name);
+                    if (file.isDirectory()) {
+                        entries.add(new Entry(name, true));
+                    } else if (file.isFile()) {
+                        entries.add(new Entry(name, false));
+                    }
+                }
+            }
+            boolean confirmed = lastModified == MISSING || lastModified <= listedAt - MTIME_GRANULARITY_NANOS;
+            return new DirectoryListing(dir.getAbsolutePath(), lastModified, entries, confirmed);
+        }
+
+        public boolean isCurrent() {
+            return lastModified == getLastModified(new File(pathname));
+        }
+
+        private static long getLastModified(File dir) {
+            try {
+                return Files.getLastModifiedTime(dir.toPath()).to(TimeUnit.NANOSECONDS);
+            } catch (IOException e) {
+                return MISSING;
+            }
+        }
+    }
+
+    /**
+     * Directory entry.
+     */
+    static class Entry {
+
+        public final String name;
+        public final boolean directory;
+
+        public Entry(String name, boolean directory) {
+            this.name = requireNonNull(name);
+            this.directory = directory;
+        }
+    }
+
+    /**
+     * Lister of directories that reuses the listings stored under a key.
+     */
+    class Scan {
+
+        private final String key;
+        private final Map<String, DirectoryListing> stored;
+        private final Map<String, DirectoryListing> listings;
+
+        private Scan(String key, Map<String, DirectoryListing> stored) {
+            this.key = key;
+            this.stored = stored;
+            listings = new LinkedHashMap<>();
+        }
+
+        /**
+         * Lists a directory, reusing the stored listing if the directory has not been modified.
+         * @param dir the directory
+         * @return the listing
+         */
+        public DirectoryListing list(File dir) {
+            DirectoryListing listing = stored.get(dir.getAbsolutePath());
+            if (listing != null && listing.isCurrent()) {
+                hits.incrementAndGet();
+            } else {
+                listing = DirectoryListing.list(dir);
+                misses.incrementAndGet();
+            }
+            listings.put(listing.pathname, listing);
+            return listing;
+        }
+
+        /**
+         * Stores the confirmed listings of the directories listed by this scan, replacing the
+         * listings stored under the key.
+         */
+        public void save() {
+            put(key, listings.values());
+        }
+    }
+
+    /**
+     * Starts a scan that reuses the listings stored under a key.
+     * @param key the key, which identifies the directory that is scanned
+     * @return the scan
+     */
+    public Scan open(String key) {
+        Map<String, DirectoryListing> stored = read(key);
+        return new Scan(key, stored == null ? Collections.emptyMap() : stored);
+    }
+
+    @Nullable
+    private Map<String, DirectoryListing> read(String key) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(getEntryFile(key).toPath(), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // treat an unreadable entry as a miss; it will be overwritten
+            return null;
+        }
+        if (lines.size() < 2 || !("version " + FORMAT_VERSION).equals(lines.get(0)) || !("key " + escape(key)).equals(lines.get(1))) {
+            return null;
+        }
+        Map<String, DirectoryListing> listings = new HashMap<>();
+        List<Entry> entries = null;
+        for (String line : lines.subList(2, lines.size())) {
+            if (line.startsWith("dir ")) {
+                String[] parts = line.split(" ", 3);
+                if (parts.length != 3) {
+                    return null;
+                }
+                long lastModified;
+                try {
+                    lastModified = Long.parseLong(parts[1]);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                entries = new ArrayList<>();
+                DirectoryListing listing = new DirectoryListing(StringEscapeUtils.unescapeJava(parts[2]), lastModified, entries, true);
+                listings.put(listing.pathname, listing);
+            } else if (entries != null && (line.startsWith("d ") || line.startsWith("f "))) {
+                entries.add(new Entry(StringEscapeUtils.unescapeJava(line.substring(2)), line.charAt(0) == 'd'));
+            } else {
+                return null;
+            }
+        }
+        return listings;
+    }
+
+    /**
+     * Stores directory listings. Listings that are not confirmed are omitted.
+     * @param key the key
+     * @param listings the listings
+     */
+    public void put(String key, Iterable<DirectoryListing> listings) {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("version ").append(FORMAT_VERSION).append('\n');
+        sb.append("key ").append(escape(key)).append('\n');
+        for (DirectoryListing listing : listings) {
+            if (!listing.confirmed) {
+                continue;
+            }
+            sb.append("dir ").append(listing.lastModified).append(' ').append(escape(listing.pathname)).append('\n');
+            for (Entry entry : listing.entries) {
+                sb.append(entry.directory ? "d " : "f ").append(escape(entry.name)).append('\n');
+            }
+        }
+        File entryFile = getEntryFile(key);
+        File tempFile = null;
+        try {
+            Guava.Files.createParentDirs(entryFile);
+            tempFile = File.createTempFile(entryFile.getName(), ".tmp", entryFile.getParentFile());
+            Files.write(tempFile.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ignore) {
+            // failing to store an entry only means the next build lists the directories again
+            if (tempFile != null) {
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            }
+        }
+    }
+
+    private static String escape(String s) {
+        return StringEscapeUtils.escapeJava(s);
+    }
+
+    private File getEntryFile(String key) {
+        return new File(directory, hash(key) + ".scan");
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets the number of directory listings that were reused.
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of directories that were listed because no current listing was stored.
+     */
+    public int getMisses() {
+        return misses.get();
+    }
+}
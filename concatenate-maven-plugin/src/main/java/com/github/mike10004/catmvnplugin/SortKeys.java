@@ -0,0 +1,131 @@
+package com.github.mike10004.catmvnplugin;
+
+import com.github.mike10004.catmvnplugin.OrderableFileSet.SortingStrategy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * Static utility methods for sorting pathnames by keys derived from file attributes.
+ * The key of each file is computed once, from a single {@link Files#readAttributes}
+ * call, and the attributes of different files are read in parallel. Files with
+ * equal keys are ordered by pathname.
+ */
+class SortKeys {
+
+    /**
+     * Key of a file whose attributes cannot be read. Such files sort first.
+     */
+    static final long UNREADABLE = Long.MIN_VALUE;
+
+    private static final int ENCODED_KEY_LENGTH = 16;
+
+    private SortKeys() {}
+
+    /**
+     * Computes the sort key of each pathname.
+     * @param basedir the directory that pathnames are relative to
+     * @param items the relative pathnames
+     * @param strategy the sorting strategy
+     * @return an array of keys, parallel to the array of pathnames
+     */
+    public static long[] readKeys(File basedir, String[] items, SortingStrategy strategy) {
+        long[] keys = new long[items.length];
+        IntStream.range(0, items.length).parallel().forEach(i -> keys[i] = readKey(new File(basedir, items[i]).toPath(), strategy));
+        return keys;
+    }
+
+    private static long readKey(Path file, SortingStrategy strategy) {
+        try {
+            return strategy.getKey(Files.readAttributes(file, BasicFileAttributes.class));
+        } catch (IOException e) {
+            return UNREADABLE;
+        }
+    }
+
+    /**
+     * Computes the sort key of a file from attributes that have already been read. The
+     * attributes of the target are read if the given attributes are those of a symbolic link.
+     * @param file the file
+     * @param attributes the attributes of the file
+     * @param strategy the sorting strategy
+     * @return the key
+     */
+    public static long getKey(Path file, BasicFileAttributes attributes, SortingStrategy strategy) {
+        if (attributes.isSymbolicLink()) {
+            return readKey(file, strategy);
+        }
+        return strategy.getKey(attributes);
+    }
+
+    /**
+     * Replaces each pathname with its {@link #encode(long, String) encoded} form, so that
+     * no separate array of keys is needed.
+     * @param basedir the directory that pathnames are relative to
+     * @param items the relative pathnames
+     * @param strategy the sorting strategy
+     */
+    public static void encodeAll(File basedir, String[] items, SortingStrategy strategy) {
+        IntStream.range(0, items.length).parallel().forEach(i -> items[i] = encode(readKey(new File(basedir, items[i]).toPath(), strategy), items[i]));
+    }
+
+    private static class Keyed {
+
+        public final long key;
+        public final String item;
+
+        public Keyed(long key, String item) {
+            this.key = key;
+            this.item = item;
+        }
+    }
+
+    private static final Comparator<Keyed> KEY_THEN_PATHNAME = Comparator.<Keyed>comparingLong(keyed -> keyed.key).thenComparing(keyed -> keyed.item);
+
+    /**
+     * Sorts pathnames in place by the keys of the files they name.
+     * @param basedir the directory that pathnames are relative to
+     * @param items the relative pathnames
+     * @param strategy the sorting strategy
+     */
+    public static void sort(File basedir, String[] items, SortingStrategy strategy) {
+        long[] keys = readKeys(basedir, items, strategy);
+        Keyed[] keyed = new Keyed[items.length];
+        for (int i = 0; i < items.length; i++) {
+            keyed[i] = new Keyed(keys[i], items[i]);
+        }
+        Arrays.parallelSort(keyed, KEY_THEN_PATHNAME);
+        for (int i = 0; i < items.length; i++) {
+            items[i] = keyed[i].item;
+        }
+    }
+
+    /**
+     * Prefixes a pathname with its key such that the natural ordering of the encoded strings
+     * is the same as the ordering by key and then by pathname.
+     * @param key the key
+     * @param item the pathname
+     * @return the encoded string
+     * @see #decode(String)
+     */
+    public static String encode(long key, String item) {
+        // flipping the sign bit makes the unsigned hex representation sort like the signed value
+        return String.format("%016x", key ^ Long.MIN_VALUE) + item;
+    }
+
+    /**
+     * Removes the key from an encoded string.
+     * @param encoded the encoded string
+     * @return the pathname
+     * @see #encode(long, String)
+     */
+    public static String decode(String encoded) {
+        return encoded.substring(ENCODED_KEY_LENGTH);
+    }
+}
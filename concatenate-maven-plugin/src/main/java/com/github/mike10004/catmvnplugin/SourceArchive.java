@@ -0,0 +1,224 @@
+package com.github.mike10004.catmvnplugin;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Zip-format archive, such as a JAR, whose entries are read as source files without
+ * being extracted. The archive is opened once; its central directory supplies the entry
+ * names, sizes, and times, and each entry is read on demand.
+ */
+class SourceArchive implements Closeable {
+
+    private final File file;
+    private final ZipFile zipFile;
+
+    private SourceArchive(File file, ZipFile zipFile) {
+        this.file = requireNonNull(file);
+        this.zipFile = requireNonNull(zipFile);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Lists the file entries under a directory of the archive that are included by a matcher.
+     * Entries are listed in the order they appear in the archive.
+     * @param directory directory within the archive, with {@code /} separators; empty for the root
+     * @param matcher the matcher, which is given names relative to the directory with platform separators
+     * @return the included names, relative to the directory, with platform separators
+     */
+    public String[] list(String directory, FileSetMatcher matcher) {
+        String prefix = toPrefix(directory);
+        List<String> names = new ArrayList<>();
+        Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            String name = entry.getName();
+            if (entry.isDirectory() || !name.startsWith(prefix)) {
+                continue;
+            }
+            String relative = name.substring(prefix.length()).replace('/', File.separatorChar);
+            if (matcher.matches(relative)) {
+                names.add(relative);
+            }
+        }
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * Gets an entry as a file.
+     * @param directory directory within the archive, as given to {@link #list(String, FileSetMatcher)}
+     * @param relativeName name relative to the directory, with platform separators
+     * @return the entry file
+     * @throws IllegalArgumentException if the archive does not have the entry
+     */
+    public EntryFile getEntryFile(String directory, String relativeName) {
+        String name = toPrefix(directory) + relativeName.replace(File.separatorChar, '/');
+        ZipEntry entry = zipFile.getEntry(name);
+        if (entry == null) {
+            throw new IllegalArgumentException("no entry " + name + " in " + file);
+        }
+        return new EntryFile(this, entry);
+    }
+
+    private static String toPrefix(@Nullable String directory) {
+        if (directory == null) {
+            return "";
+        }
+        String prefix = directory.replace('\\', '/');
+        while (prefix.startsWith("/")) {
+            prefix = prefix.substring(1);
+        }
+        if (!prefix.isEmpty() && !prefix.endsWith("/")) {
+            prefix += "/";
+        }
+        return prefix;
+    }
+
+    @Override
+    public void close() throws IOException {
+        zipFile.close();
+    }
+
+    /**
+     * Entry of an archive that stands in for a source file. The pathname is that of the
+     * archive followed by {@code !} and the entry name, as in a JAR URL, and the length
+     * and last modified time are those recorded for the entry. The content must be read
+     * with {@link #openStream(File)}, which accepts regular files too.
+     */
+    static class EntryFile extends File {
+
+        private final SourceArchive archive;
+        private final ZipEntry entry;
+
+        private EntryFile(SourceArchive archive, ZipEntry entry) {
+            super(archive.file.getPath() + "!" + File.separator + entry.getName().replace('/', File.separatorChar));
+            this.archive = archive;
+            this.entry = entry;
+        }
+
+        public File getArchiveFile() {
+            return archive.file;
+        }
+
+        @Override
+        public long length() {
+            return Math.max(0, entry.getSize());
+        }
+
+        @Override
+        public long lastModified() {
+            return Math.max(0, entry.getTime());
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public boolean isFile() {
+            return true;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return false;
+        }
+
+        public InputStream openStream() throws IOException {
+            return archive.zipFile.getInputStream(entry);
+        }
+
+        /**
+         * Opens a source file, which may be an archive entry, as a channel.
+         * @param file the file
+         * @return a channel; a {@link FileChannel} if the file is not an archive entry
+         * @throws IOException if the file cannot be opened
+         */
+        public static ReadableByteChannel openChannel(File file) throws IOException {
+            if (file instanceof EntryFile) {
+                return Channels.newChannel(((EntryFile) file).openStream());
+            }
+            return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+
+        /**
+         * Opens a source file, which may be an archive entry, for reading.
+         * @param file the file
+         * @return an input stream
+         * @throws IOException if the file cannot be opened
+         */
+        public static InputStream openStream(File file) throws IOException {
+            if (file instanceof EntryFile) {
+                return ((EntryFile) file).openStream();
+            }
+            return new FileInputStream(file);
+        }
+    }
+
+    /**
+     * Archives opened during an execution, each opened once no matter how many filesets
+     * or bundles refer to it.
+     */
+    static class Registry implements Closeable {
+
+        private final ConcurrentMap<File, SourceArchive> archives = new ConcurrentHashMap<>();
+
+        /**
+         * Gets an opened archive.
+         * @param file the archive file
+         * @return the archive
+         * @throws IOException if the archive cannot be opened
+         */
+        public SourceArchive get(File file) throws IOException {
+            File key = file.getAbsoluteFile();
+            SourceArchive archive = archives.get(key);
+            if (archive == null) {
+                SourceArchive opened = new SourceArchive(key, new ZipFile(key));
+                archive = archives.putIfAbsent(key, opened);
+                if (archive == null) {
+                    archive = opened;
+                } else {
+                    opened.close();
+                }
+            }
+            return archive;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (SourceArchive archive : archives.values()) {
+                try {
+                    archive.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            archives.clear();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
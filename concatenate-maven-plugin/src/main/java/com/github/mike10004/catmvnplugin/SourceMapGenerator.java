@@ -0,0 +1,407 @@
+package com.github.mike10004.catmvnplugin;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import javax.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Generator of a Source Map revision 3 file for a concatenated output. As the output is
+ * written, this instance observes its bytes to track the generated line and column where
+ * each source file starts, and the number of lines each source file spans. No file content
+ * is retained. When the map is written, each generated line of a source file is mapped to
+ * the corresponding line of the source file, or, if the source file has a map of its own
+ * at its pathname plus {@code .map} and chaining is enabled, through that map to the
+ * original sources.
+ *
+ * <p>Content is assumed to be UTF-8; columns are counted in UTF-16 code units, as
+ * the format requires.
+ */
+class SourceMapGenerator implements Concatenator.EntryListener, DigestingOutputStream.ByteObserver {
+
+    private static final String BASE64_DIGITS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+    private static final int VLQ_SHIFT = 5;
+    private static final int VLQ_CONTINUATION = 1 << VLQ_SHIFT;
+    private static final int VLQ_MASK = VLQ_CONTINUATION - 1;
+
+    private final boolean chainInputMaps;
+    private final List<Entry> entries;
+    private int line;
+    private int column;
+    private int lastByte = -1;
+    private int startLine;
+    private int startColumn;
+
+    /**
+     * Constructs an instance.
+     * @param chainInputMaps true to map through the source maps of source files
+     */
+    public SourceMapGenerator(boolean chainInputMaps) {
+        this.chainInputMaps = chainInputMaps;
+        entries = new ArrayList<>();
+    }
+
+    private static class Entry {
+
+        public final File sourceFile;
+        public final int startLine;
+        public final int startColumn;
+        public final int lineCount;
+
+        public Entry(File sourceFile, int startLine, int startColumn, int lineCount) {
+            this.sourceFile = sourceFile;
+            this.startLine = startLine;
+            this.startColumn = startColumn;
+            this.lineCount = lineCount;
+        }
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            int x = b[i] & 0xFF;
+            if (x == '\n') {
+                line++;
+                column = 0;
+            } else if ((x & 0xC0) != 0x80) {
+                // count lead bytes only; a four-byte sequence is a surrogate pair in UTF-16
+                column += (x & 0xF8) == 0xF0 ? 2 : 1;
+            }
+        }
+        if (len > 0) {
+            lastByte = b[end - 1] & 0xFF;
+        }
+    }
+
+    @Override
+    public void entryStarted(File sourceFile, long offset) {
+        startLine = line;
+        startColumn = column;
+    }
+
+    @Override
+    public void entryWritten(File sourceFile, long offset, long length, @Nullable String sha256) {
+        if (length == 0) {
+            return;
+        }
+        int endLine = lastByte == '\n' ? line - 1 : line;
+        entries.add(new Entry(sourceFile, startLine, startColumn, endLine - startLine + 1));
+    }
+
+    /**
+     * Checks whether the output observed so far is empty or ends with a line terminator.
+     * @return true if a comment appended to the output would start on a line of its own
+     */
+    public boolean isAtLineStart() {
+        return lastByte == -1 || lastByte == '\n';
+    }
+
+    /**
+     * Gets the comment that points a browser to a source map.
+     * @param outputFile the output file
+     * @param mapFile the source map file, in the same directory as the output file
+     * @return the comment, with a trailing newline
+     */
+    public static String getSourceMappingUrlComment(File outputFile, File mapFile) {
+        if (outputFile.getName().toLowerCase().endsWith(".css")) {
+            return "/*# sourceMappingURL=" + mapFile.getName() + " */\n";
+        }
+        return "//# sourceMappingURL=" + mapFile.getName() + "\n";
+    }
+
+    /**
+     * Gets the pathname of the source map of a source file.
+     * @param sourceFile the source file
+     * @return the pathname of the source map, which may not exist
+     */
+    public static File getInputMapFile(File sourceFile) {
+        return new File(sourceFile.getPath() + ".map");
+    }
+
+    /**
+     * Writes the source map.
+     * @param mapFile the file to write
+     * @param outputName name of the output file, recorded in the map
+     * @param mapDirectory directory that source pathnames are made relative to
+     * @throws IOException on I/O error or if a source map of a source file is invalid
+     */
+    public void write(File mapFile, String outputName, File mapDirectory) throws IOException {
+        Path base = mapDirectory.toPath().toAbsolutePath();
+        Table sources = new Table(), names = new Table();
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mapFile), StandardCharsets.UTF_8))) {
+            out.write("{\"version\":3,\"file\":\"");
+            out.write(StringEscapeUtils.escapeJson(outputName));
+            out.write("\",\"mappings\":\"");
+            Mappings mappings = new Mappings(out);
+            for (Entry entry : entries) {
+                InputMap inputMap = chainInputMaps ? InputMap.read(getInputMapFile(entry.sourceFile)) : null;
+                if (inputMap == null) {
+                    int source = sources.indexOf(relativize(base, entry.sourceFile.toPath()));
+                    for (int k = 0; k < entry.lineCount; k++) {
+                        mappings.add(entry.startLine + k, k == 0 ? entry.startColumn : 0, source, k, 0, -1);
+                    }
+                } else {
+                    int[] sourceIndexes = new int[inputMap.sources.size()];
+                    for (int i = 0; i < sourceIndexes.length; i++) {
+                        String source = inputMap.sources.get(i);
+                        sourceIndexes[i] = sources.indexOf(isUrl(source) ? source : relativize(base, inputMap.directory.resolve(source)));
+                    }
+                    int[] nameIndexes = new int[inputMap.names.size()];
+                    for (int i = 0; i < nameIndexes.length; i++) {
+                        nameIndexes[i] = names.indexOf(inputMap.names.get(i));
+                    }
+                    int lineCount = Math.min(entry.lineCount, inputMap.lines.size());
+                    for (int k = 0; k < lineCount; k++) {
+                        int shift = k == 0 ? entry.startColumn : 0;
+                        for (int[] segment : inputMap.lines.get(k)) {
+                            if (segment.length < 4) {
+                                mappings.add(entry.startLine + k, segment[0] + shift);
+                            } else {
+                                int name = segment.length > 4 ? nameIndexes[segment[4]] : -1;
+                                mappings.add(entry.startLine + k, segment[0] + shift, sourceIndexes[segment[1]], segment[2], segment[3], name);
+                            }
+                        }
+                    }
+                }
+            }
+            out.write("\",\"sources\":");
+            sources.writeTo(out);
+            out.write(",\"names\":");
+            names.writeTo(out);
+            out.write("}\n");
+        }
+    }
+
+    private static boolean isUrl(String source) {
+        return source.matches("^[A-Za-z][A-Za-z0-9+.-]*:.*");
+    }
+
+    private static String relativize(Path base, Path file) {
+        return base.relativize(file.toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * List of distinct strings, each with a stable index.
+     */
+    private static class Table {
+
+        private final Map<String, Integer> indexes = new LinkedHashMap<>();
+
+        public int indexOf(String value) {
+            return indexes.computeIfAbsent(value, v -> indexes.size());
+        }
+
+        public void writeTo(Writer out) throws IOException {
+            out.write('[');
+            boolean first = true;
+            for (String value : indexes.keySet()) {
+                if (!first) {
+                    out.write(',');
+                }
+                out.write('"');
+                out.write(StringEscapeUtils.escapeJson(value));
+                out.write('"');
+                first = false;
+            }
+            out.write(']');
+        }
+    }
+
+    /**
+     * Encoder of the mappings field, which writes segments to the output as they are added.
+     * Segments must be added in order of generated position.
+     */
+    private static class Mappings {
+
+        private final Writer out;
+        private int generatedLine;
+        private int previousColumn;
+        private int previousSource;
+        private int previousSourceLine;
+        private int previousSourceColumn;
+        private int previousName;
+        private boolean lineHasSegment;
+
+        public Mappings(Writer out) {
+            this.out = out;
+        }
+
+        private void startSegment(int line, int column) throws IOException {
+            while (generatedLine < line) {
+                out.write(';');
+                generatedLine++;
+                previousColumn = 0;
+                lineHasSegment = false;
+            }
+            if (lineHasSegment) {
+                out.write(',');
+            }
+            writeVlq(out, column - previousColumn);
+            previousColumn = column;
+            lineHasSegment = true;
+        }
+
+        public void add(int line, int column) throws IOException {
+            startSegment(line, column);
+        }
+
+        public void add(int line, int column, int source, int sourceLine, int sourceColumn, int name) throws IOException {
+            startSegment(line, column);
+            writeVlq(out, source - previousSource);
+            writeVlq(out, sourceLine - previousSourceLine);
+            writeVlq(out, sourceColumn - previousSourceColumn);
+            previousSource = source;
+            previousSourceLine = sourceLine;
+            previousSourceColumn = sourceColumn;
+            if (name >= 0) {
+                writeVlq(out, name - previousName);
+                previousName = name;
+            }
+        }
+    }
+
+    static void writeVlq(Writer out, int value) throws IOException {
+        int vlq = value < 0 ? ((-value) << 1) | 1 : value << 1;
+        do {
+            int digit = vlq & VLQ_MASK;
+            vlq >>>= VLQ_SHIFT;
+            if (vlq != 0) {
+                digit |= VLQ_CONTINUATION;
+            }
+            out.write(BASE64_DIGITS.charAt(digit));
+        } while (vlq != 0);
+    }
+
+    /**
+     * Decodes a mappings field into segments with absolute values, grouped by generated line.
+     * @param mappings the mappings field
+     * @return list of segments of each generated line
+     * @throws IllegalArgumentException if the mappings field is invalid
+     */
+    static List<List<int[]>> decodeMappings(String mappings) {
+        List<List<int[]>> lines = new ArrayList<>();
+        List<int[]> current = new ArrayList<>();
+        int[] previous = new int[5];
+        int pos = 0;
+        int length = mappings.length();
+        while (pos <= length) {
+            if (pos == length || mappings.charAt(pos) == ';') {
+                lines.add(current);
+                current = new ArrayList<>();
+                previous[0] = 0;
+                pos++;
+                continue;
+            }
+            if (mappings.charAt(pos) == ',') {
+                pos++;
+                continue;
+            }
+            int[] fields = new int[5];
+            int numFields = 0;
+            while (pos < length && mappings.charAt(pos) != ',' && mappings.charAt(pos) != ';') {
+                if (numFields == fields.length) {
+                    throw new IllegalArgumentException("too many fields in segment at position " + pos);
+                }
+                int value = 0, shift = 0, digit;
+                do {
+                    if (pos >= length) {
+                        throw new IllegalArgumentException("truncated segment");
+                    }
+                    digit = BASE64_DIGITS.indexOf(mappings.charAt(pos++));
+                    if (digit < 0) {
+                        throw new IllegalArgumentException("invalid character in mappings at position " + (pos - 1));
+                    }
+                    value |= (digit & VLQ_MASK) << shift;
+                    shift += VLQ_SHIFT;
+                } while ((digit & VLQ_CONTINUATION) != 0);
+                int decoded = (value & 1) != 0 ? -(value >>> 1) : value >>> 1;
+                previous[numFields] += decoded;
+                fields[numFields] = previous[numFields];
+                numFields++;
+            }
+            if (numFields != 1 && numFields != 4 && numFields != 5) {
+                throw new IllegalArgumentException("segment has " + numFields + " fields");
+            }
+            int[] segment = new int[numFields];
+            System.arraycopy(fields, 0, segment, 0, numFields);
+            current.add(segment);
+        }
+        return lines;
+    }
+
+    /**
+     * Source map of a source file.
+     */
+    private static class InputMap {
+
+        public final Path directory;
+        public final List<String> sources;
+        public final List<String> names;
+        public final List<List<int[]>> lines;
+
+        private InputMap(Path directory, List<String> sources, List<String> names, List<List<int[]>> lines) {
+            this.directory = directory;
+            this.sources = sources;
+            this.names = names;
+            this.lines = lines;
+        }
+
+        @Nullable
+        public static InputMap read(File mapFile) throws IOException {
+            if (!mapFile.isFile()) {
+                return null;
+            }
+            String text = new String(Files.readAllBytes(mapFile.toPath()), StandardCharsets.UTF_8);
+            try {
+                Map<?, ?> map = (Map<?, ?>) requireNonNull(Json.parse(text));
+                if (map.containsKey("sections")) {
+                    throw new IllegalArgumentException("index maps are not supported");
+                }
+                String sourceRoot = map.get("sourceRoot") instanceof String ? (String) map.get("sourceRoot") : "";
+                if (!sourceRoot.isEmpty() && !sourceRoot.endsWith("/")) {
+                    sourceRoot += "/";
+                }
+                List<String> sources = new ArrayList<>();
+                for (Object source : toList(map.get("sources"))) {
+                    sources.add(sourceRoot + source);
+                }
+                List<String> names = new ArrayList<>();
+                for (Object name : toList(map.get("names"))) {
+                    names.add(String.valueOf(name));
+                }
+                List<List<int[]>> lines = decodeMappings((String) requireNonNull(map.get("mappings"), "mappings"));
+                for (List<int[]> segments : lines) {
+                    for (int[] segment : segments) {
+                        if ((segment.length > 1 && segment[1] >= sources.size()) || (segment.length > 4 && segment[4] >= names.size())) {
+                            throw new IllegalArgumentException("segment refers to missing source or name");
+                        }
+                    }
+                }
+                Path directory = mapFile.getAbsoluteFile().toPath().getParent();
+                return new InputMap(directory, sources, names, lines);
+            } catch (ClassCastException | NullPointerException | IllegalArgumentException e) {
+                throw new IOException("invalid source map " + mapFile, e);
+            }
+        }
+
+        private static List<?> toList(@Nullable Object value) {
+            return value == null ? Collections.emptyList() : (List<?>) value;
+        }
+    }
+}
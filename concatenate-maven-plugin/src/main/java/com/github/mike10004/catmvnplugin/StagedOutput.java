@@ -0,0 +1,102 @@
+package com.github.mike10004.catmvnplugin;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Set of output files that are written to temporary files in the same directories
+ * and moved into place only when all of them have been written. Until then, readers
+ * of an output file see its previous content, if any, and never a partial file.
+ * Closing an instance deletes temporary files that have not been moved into place.
+ */
+class StagedOutput implements Closeable {
+
+    private final boolean sync;
+    private final Map<File, File> tempFilesByTarget;
+
+    /**
+     * Constructs an instance.
+     * @param sync true to force file content and directory entries to storage before and after moving files into place
+     */
+    public StagedOutput(boolean sync) {
+        this.sync = sync;
+        tempFilesByTarget = new LinkedHashMap<>();
+    }
+
+    /**
+     * Creates the temporary file to be written in place of an output file.
+     * @param target the output file
+     * @return the temporary file
+     * @throws IOException if the temporary file cannot be created
+     */
+    public File stage(File target) throws IOException {
+        if (tempFilesByTarget.containsKey(target)) {
+            throw new IllegalArgumentException("already staged: " + target);
+        }
+        File parent = target.getAbsoluteFile().getParentFile();
+        Guava.Files.createParentDirs(target.getAbsoluteFile());
+        File tempFile = File.createTempFile("." + target.getName() + ".", ".tmp", parent);
+        tempFilesByTarget.put(target, tempFile);
+        return tempFile;
+    }
+
+    /**
+     * Moves each temporary file into place, replacing the output file. Each move is
+     * atomic if the file system supports it.
+     * @throws IOException if a file cannot be moved
+     */
+    public void commit() throws IOException {
+        if (sync) {
+            for (File tempFile : tempFilesByTarget.values()) {
+                try (FileChannel channel = FileChannel.open(tempFile.toPath(), StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+            }
+        }
+        Iterator<Map.Entry<File, File>> it = tempFilesByTarget.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<File, File> entry = it.next();
+            File target = entry.getKey(), tempFile = entry.getValue();
+            try {
+                Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            it.remove();
+            if (sync) {
+                syncDirectory(target.getAbsoluteFile().getParentFile());
+            }
+        }
+    }
+
+    /*
+     * Not all platforms allow a directory to be opened for this purpose, so failure is ignored.
+     */
+    private static void syncDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignore) {
+        }
+    }
+
+    /**
+     * Deletes the temporary files that have not been moved into place.
+     */
+    @Override
+    public void close() {
+        for (File tempFile : tempFilesByTarget.values()) {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        }
+        tempFilesByTarget.clear();
+    }
+}
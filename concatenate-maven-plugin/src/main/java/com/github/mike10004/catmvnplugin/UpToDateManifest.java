@@ -0,0 +1,122 @@
+package com.github.mike10004.catmvnplugin;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Description of the inputs to a concatenation, used to determine whether the
+ * output files are up to date. The description includes the configuration settings
+ * that affect the content of the output files and the path, size, and modification
+ * time of each source file, in concatenation order, along with the relative path of each
+ * concatenated file, which may appear in headers, archive entry names, indexes, and source maps. After the output files are written,
+ * the description is saved along with the size and modification time of each output
+ * file, including sidecar files such as checksum files, so that the next build can skip
+ * the concatenation if nothing has changed.
+ */
+class UpToDateManifest {
+
+    private static final String FORMAT_VERSION = "2";
+
+    private final StringBuilder content;
+
+    public UpToDateManifest() {
+        content = new StringBuilder(256);
+        content.append("version ").append(FORMAT_VERSION).append('\n');
+    }
+
+    /**
+     * Adds a configuration setting to the description.
+     * @param name setting name
+     * @param value setting value; may be null
+     * @return this instance
+     */
+    public UpToDateManifest setting(String name, Object value) {
+        content.append("setting ").append(name).append('=')
+                .append(StringEscapeUtils.escapeJava(String.valueOf(value))).append('\n');
+        return this;
+    }
+
+    /**
+     * Adds source files to the description.
+     * @param sourceFiles source files, in concatenation order
+     * @return this instance
+     */
+    public UpToDateManifest sources(Iterable<File> sourceFiles) {
+        for (File file : sourceFiles) {
+            append(content, "source", file);
+        }
+        return this;
+    }
+
+    /**
+     * Adds source files to the description along with their relative paths.
+     * @param sourceFiles source files, in concatenation order
+     * @param relativePaths function that gets the relative path of a source file
+     * @return this instance
+     */
+    public UpToDateManifest sources(Iterable<File> sourceFiles, Function<File, String> relativePaths) {
+        for (File file : sourceFiles) {
+            append(content, "source", file);
+            content.append("relativePath ").append(StringEscapeUtils.escapeJava(relativePaths.apply(file))).append('\n');
+        }
+        return this;
+    }
+
+    private static StringBuilder append(StringBuilder sb, String label, File file) {
+        return sb.append(label).append(' ')
+                .append(file.length()).append(' ')
+                .append(file.lastModified()).append(' ')
+                .append(StringEscapeUtils.escapeJava(file.getAbsolutePath())).append('\n');
+    }
+
+    private String render(Iterable<File> outputFiles) {
+        StringBuilder sb = new StringBuilder(content);
+        for (File outputFile : outputFiles) {
+            append(sb, "output", outputFile);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Checks whether a manifest file written by a previous build matches this description.
+     * @param manifestFile the manifest file
+     * @param outputFiles the output files
+     * @return true if the output files exist and the manifest file matches
+     * @throws IOException on I/O error
+     */
+    public boolean isUpToDate(File manifestFile, Iterable<File> outputFiles) throws IOException {
+        requireNonNull(manifestFile);
+        for (File outputFile : outputFiles) {
+            if (!outputFile.isFile()) {
+                return false;
+            }
+        }
+        String previous;
+        try {
+            previous = new String(Files.readAllBytes(manifestFile.toPath()), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        return previous.equals(render(outputFiles));
+    }
+
+    /**
+     * Writes this description to a file.
+     * @param manifestFile the manifest file
+     * @param outputFiles the output files, which must already have been written
+     * @throws IOException on I/O error
+     */
+    public void write(File manifestFile, Iterable<File> outputFiles) throws IOException {
+        Guava.Files.createParentDirs(manifestFile);
+        Files.write(manifestFile.toPath(), render(outputFiles).getBytes(StandardCharsets.UTF_8));
+    }
+
+}
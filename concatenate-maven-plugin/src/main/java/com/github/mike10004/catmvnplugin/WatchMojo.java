@@ -0,0 +1,410 @@
+package com.github.mike10004.catmvnplugin;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Goal that concatenates source files and then watches the fileset directories, updating
+ * the output files as source files change until the build is stopped. When an output file
+ * holds the concatenation as is, the part of it that precedes the first changed source file
+ * is copied from the previous output instead of being read again from the source files, and
+ * only the rest is concatenated; the result is staged and moved over the output file once
+ * complete. Otherwise the output files are written again in full.
+ */
+@Mojo(name = "cat-watch")
+public class WatchMojo extends ConcatenateMojo {
+
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static final WatchEvent.Kind<Path>[] WATCHED_KINDS = new WatchEvent.Kind[]{
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE,
+            StandardWatchEventKinds.ENTRY_MODIFY,
+    };
+
+    /**
+     * Number of milliseconds without file system events to wait for before updating the
+     * output files, so that a burst of changes, such as a save of many files, causes one update.
+     */
+    @Parameter(defaultValue = "50")
+    private long debounceMillis = 50;
+
+    private volatile boolean stopped;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        List<Bundle> allBundles = prepare();
+        OutputClaims.Claim claim = claimOutputs(allBundles);
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            watch(allBundles, watchService);
+        } catch (IOException e) {
+            throw new MojoExecutionException("failed to watch source directories", e);
+        } finally {
+            claim.close();
+        }
+    }
+
+    /**
+     * Makes the goal return after the update in progress, if any.
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    private void watch(List<Bundle> allBundles, WatchService watchService) throws IOException, MojoExecutionException {
+        Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+        for (Bundle bundle : allBundles) {
+            OrderableFileSet[] sources = bundle.getSources();
+            for (int i = 0; i < sources.length; i++) {
+                register(sources[i], i, watchService, watchedDirectories);
+            }
+        }
+        List<BundleState> states = new ArrayList<>(allBundles.size());
+        for (Bundle bundle : allBundles) {
+            BundleState state = new BundleState(bundle);
+            update(state, new Changes(true));
+            states.add(state);
+        }
+        Set<Path> writtenFiles = new HashSet<>();
+        for (Bundle bundle : allBundles) {
+            for (File producedFile : getProducedFiles(bundle.getOutputFile())) {
+                writtenFiles.add(producedFile.toPath().toAbsolutePath());
+            }
+        }
+        getLog().info(String.format("watching %d director(ies) for changes", watchedDirectories.size()));
+        try {
+            while (!stopped) {
+                WatchKey key = watchService.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    continue;
+                }
+                Changes changes = new Changes(false);
+                do {
+                    collect(key, watchService, watchedDirectories, changes);
+                    key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                } while (key != null);
+                changes.paths.removeAll(writtenFiles);
+                if (!changes.all && changes.paths.isEmpty()) {
+                    continue;
+                }
+                for (BundleState state : states) {
+                    try {
+                        update(state, changes);
+                    } catch (MojoExecutionException e) {
+                        getLog().error("failed to update " + state.bundle.getOutputFile() + ": " + e.getMessage());
+                        state.members = null;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Registers the directories that may hold files of a fileset. For an archive fileset,
+     * the directory that contains the archive is registered.
+     */
+    private void register(OrderableFileSet fileset, int i, WatchService watchService, Map<WatchKey, Path> watchedDirectories) throws IOException, MojoExecutionException {
+        if (isArchiveFileset(fileset)) {
+            File archive = requireNonNull(resolveArchive(fileset, i));
+            Path directory = archive.getAbsoluteFile().getParentFile().toPath();
+            watchedDirectories.put(directory.register(watchService, WATCHED_KINDS), directory);
+            return;
+        }
+        if (fileset.getDirectory() == null) {
+            return;
+        }
+        Path root = new File(fileset.getDirectory()).getAbsoluteFile().toPath();
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        FileSetMatcher matcher = new FileSetMatcher(fileset);
+        registerTree(root, matcher, watchService, watchedDirectories);
+    }
+
+    /**
+     * Registers a directory and its subdirectories, skipping subdirectories below which
+     * the matcher, if any, includes nothing.
+     */
+    private static void registerTree(Path root, @Nullable FileSetMatcher matcher, WatchService watchService, Map<WatchKey, Path> watchedDirectories) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (matcher != null && !dir.equals(root) && !matcher.couldHoldIncluded(root.relativize(dir).toString())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                watchedDirectories.put(dir.register(watchService, WATCHED_KINDS), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Adds the changes reported by a watch key, and registers directories created since
+     * the directory of the key was registered.
+     */
+    private void collect(WatchKey key, WatchService watchService, Map<WatchKey, Path> watchedDirectories, Changes changes) throws IOException {
+        Path directory = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+                changes.all = true;
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            changes.paths.add(path);
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                // files in the new directory, which may have been moved in with their times preserved, are not reported
+                changes.all = true;
+                registerTree(path, null, watchService, watchedDirectories);
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    /**
+     * Paths reported as created, deleted, or modified.
+     */
+    private static class Changes {
+
+        public final Set<Path> paths = new HashSet<>();
+
+        /**
+         * Flag that indicates whether any source file may have changed without being reported.
+         */
+        public boolean all;
+
+        public Changes(boolean all) {
+            this.all = all;
+        }
+
+        public boolean affects(File sourceFile) {
+            if (all) {
+                return true;
+            }
+            File file = sourceFile instanceof SourceArchive.EntryFile ? ((SourceArchive.EntryFile) sourceFile).getArchiveFile() : sourceFile;
+            return paths.contains(file.getAbsoluteFile().toPath());
+        }
+    }
+
+    /**
+     * Rescans the filesets of a bundle and updates its output file.
+     */
+    private void update(BundleState state, Changes changes) throws MojoExecutionException {
+        // archives are opened again, in case they have changed, and stay open until their entries are written
+        try (SourceArchive.Registry archives = new SourceArchive.Registry()) {
+            update(state, changes, archives);
+        } catch (IOException e) {
+            getLog().warn("failed to close source archive: " + e);
+        }
+    }
+
+    private void update(BundleState state, Changes changes, SourceArchive.Registry archives) throws MojoExecutionException {
+        long start = System.nanoTime();
+        File outputFile = state.bundle.getOutputFile();
+        Map<File, SourceInfo> sourceInfos = new HashMap<>();
+        ExecutionMetrics.BundleMetrics metrics = new ExecutionMetrics("watch").addBundle(outputFile);
+        List<File> sourceFiles = new ArrayList<>(collectSourceFiles(state.bundle, createFileSetManager(), archives, sourceInfos, metrics));
+        int first = 0;
+        if (state.members != null) {
+            first = state.findFirstChange(sourceFiles, sourceInfos, changes);
+            if (first == sourceFiles.size() && first == state.members.size()) {
+                getLog().debug("no changes to " + outputFile);
+                return;
+            }
+        }
+        MemberTable table = new MemberTable(sourceInfos);
+        try {
+            if (state.members == null || !isSpliceable() || outputFile.length() != state.length) {
+                writeConcatenated(sourceFiles, outputFile, sourceInfos, table);
+                state.update(table.members, outputFile.length());
+                return;
+            }
+            long offset = first < state.members.size() ? state.members.get(first).offset : state.length;
+            splice(sourceFiles.subList(first, sourceFiles.size()), first, offset, outputFile, sourceInfos, table);
+            List<Member> members = new ArrayList<>(state.members.subList(0, first));
+            members.addAll(table.members);
+            state.update(members, outputFile.length());
+            getLog().info(String.format("updated %s in %d ms: rewrote %d of %d file(s) from byte %d", outputFile.getName(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), sourceFiles.size() - first, sourceFiles.size(), offset));
+        } catch (IOException e) {
+            state.members = null;
+            throw new MojoExecutionException("failed to copy source files to destination " + outputFile, e);
+        }
+    }
+
+    /**
+     * Rewrites an output file, keeping the part that precedes the first changed source file
+     * and appending the rest of the concatenation. The new content is written to a temporary
+     * file that replaces the output file only once it is complete, so the output file is
+     * never seen half-written and is left as it was if the rewrite fails.
+     * @param sourceFiles the source files from the first changed one onward
+     * @param startIndex index of the first changed source file
+     * @param offset number of bytes of the output file to keep
+     */
+    private void splice(List<File> sourceFiles, int startIndex, long offset, File outputFile, Map<File, SourceInfo> sourceInfos, MemberTable table) throws IOException {
+        try (StagedOutput staged = new StagedOutput(isSyncOutput())) {
+            File tempFile = staged.stage(outputFile);
+            try (FileOutputStream output = new FileOutputStream(tempFile)) {
+                try (FileChannel previous = FileChannel.open(outputFile.toPath(), StandardOpenOption.READ)) {
+                    copyPrefix(previous, offset, output.getChannel());
+                }
+                if (!sourceFiles.isEmpty()) {
+                    Concatenator concatenator = createConcatenator(getDividerBytes(), sourceInfos);
+                    concatenator.resumeAt(startIndex, offset);
+                    concatenator.addEntryListener(table);
+                    concatenator.concatenate(sourceFiles, output);
+                }
+            }
+            staged.commit();
+        }
+    }
+
+    private static void copyPrefix(FileChannel from, long length, FileChannel to) throws IOException {
+        long position = 0;
+        while (position < length) {
+            long n = from.transferTo(position, length - position, to);
+            if (n <= 0) {
+                throw new IOException("output file is shorter than " + length + " bytes");
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * Source file as it was when written to the output.
+     */
+    static class Member {
+
+        public final File file;
+        public final long size;
+        public final long lastModified;
+        @Nullable
+        public final String relativePath;
+        @Nullable
+        public final String lineEnding;
+
+        /**
+         * Position in the output of the first byte belonging to the file.
+         */
+        public final long offset;
+
+        public Member(File file, @Nullable SourceInfo info, long offset) {
+            this.file = requireNonNull(file);
+            size = file.length();
+            lastModified = file.lastModified();
+            relativePath = info == null ? null : info.relativePath;
+            lineEnding = info == null ? null : info.lineEnding;
+            this.offset = offset;
+        }
+
+        public boolean isUnchanged(File file, @Nullable SourceInfo info) {
+            return this.file.equals(file)
+                    && size == file.length()
+                    && lastModified == file.lastModified()
+                    && Objects.equals(relativePath, info == null ? null : info.relativePath)
+                    && Objects.equals(lineEnding, info == null ? null : info.lineEnding);
+        }
+    }
+
+    /**
+     * Listener that records the offset of each source file in the output.
+     */
+    static class MemberTable implements Concatenator.EntryListener {
+
+        private final Map<File, SourceInfo> sourceInfos;
+        public final List<Member> members = new ArrayList<>();
+
+        public MemberTable(Map<File, SourceInfo> sourceInfos) {
+            this.sourceInfos = requireNonNull(sourceInfos);
+        }
+
+        @Override
+        public void memberStarted(File sourceFile, long offset) {
+            members.add(new Member(sourceFile, sourceInfos.get(sourceFile), offset));
+        }
+
+        @Override
+        public void entryWritten(File sourceFile, long offset, long length, @Nullable String sha256) {
+        }
+    }
+
+    private static class BundleState {
+
+        public final Bundle bundle;
+
+        /**
+         * Source files in the output file, or null if the output file must be written in full
+         * whether or not any source file changed.
+         */
+        @Nullable
+        public List<Member> members;
+        public long length;
+
+        public BundleState(Bundle bundle) {
+            this.bundle = requireNonNull(bundle);
+        }
+
+        public void update(List<Member> members, long length) {
+            this.members = members;
+            this.length = length;
+        }
+
+        /**
+         * Gets the index of the first source file that is not in the output as it is now.
+         * @return the index, which is the number of source files if none changed
+         */
+        public int findFirstChange(List<File> sourceFiles, Map<File, SourceInfo> sourceInfos, Changes changes) {
+            requireNonNull(members);
+            int n = Math.min(members.size(), sourceFiles.size());
+            for (int i = 0; i < n; i++) {
+                File file = sourceFiles.get(i);
+                if (!members.get(i).isUnchanged(file, sourceInfos.get(file)) || changes.affects(file)) {
+                    return i;
+                }
+            }
+            return n;
+        }
+    }
+
+    void setDebounceMillis(long debounceMillis) {
+        this.debounceMillis = debounceMillis;
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.mike10004.catmvnplugin;
+
+import com.github.mike10004.catmvnplugin.Concatenator.ChannelConcatenator;
+import com.github.mike10004.catmvnplugin.Concatenator.ChannelConcatenator.ReadPath;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ChannelConcatenatorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void chooseReadPath() throws Exception {
+        WritableByteChannel streamTarget = NioChannels.newChannel(new ByteArrayOutputStream(), 1024);
+        assertEquals("small file to stream", ReadPath.stream, ChannelConcatenator.chooseReadPath(99, streamTarget, 100));
+        assertEquals("large file to stream", ReadPath.mapped, ChannelConcatenator.chooseReadPath(100, streamTarget, 100));
+        assertEquals("mapping disabled", ReadPath.stream, ChannelConcatenator.chooseReadPath(Long.MAX_VALUE, streamTarget, -1));
+        try (FileChannel fileTarget = FileChannel.open(temporaryFolder.newFile().toPath(), StandardOpenOption.WRITE)) {
+            assertEquals("large file to file", ReadPath.transfer, ChannelConcatenator.chooseReadPath(100, fileTarget, 100));
+        }
+    }
+
+    @Test
+    public void concatenate_mapped() throws Exception {
+        testConcatenate(0, false);
+    }
+
+    @Test
+    public void concatenate_stream() throws Exception {
+        testConcatenate(-1, false);
+    }
+
+    @Test
+    public void concatenate_mixed() throws Exception {
+        testConcatenate(5000, false);
+    }
+
+    @Test
+    public void concatenate_transfer() throws Exception {
+        testConcatenate(0, true);
+    }
+
+    private void testConcatenate(long mapThreshold, boolean toFile) throws Exception {
+        Random random = new Random(getClass().getName().hashCode());
+        File dir = temporaryFolder.newFolder();
+        byte[] dividerBytes = "|".getBytes(StandardCharsets.US_ASCII);
+        List<File> sourceFiles = new ArrayList<>();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        int[] sizes = {0, 1, 4999, 5000, 300 * 1024, 10};
+        for (int i = 0; i < sizes.length; i++) {
+            byte[] content = new byte[sizes[i]];
+            random.nextBytes(content);
+            File file = new File(dir, i + ".bin");
+            Files.write(content, file);
+            sourceFiles.add(file);
+            if (i > 0) {
+                expected.write(dividerBytes);
+            }
+            expected.write(content);
+        }
+        ChannelConcatenator concatenator = new ChannelConcatenator(dividerBytes, mapThreshold);
+        byte[] actual;
+        if (toFile) {
+            File outputFile = new File(temporaryFolder.newFolder(), "output.bin");
+            try (OutputStream out = new FileOutputStream(outputFile)) {
+                concatenator.concatenate(sourceFiles, out);
+            }
+            actual = Files.toByteArray(outputFile);
+        } else {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            concatenator.concatenate(sourceFiles, out);
+            actual = out.toByteArray();
+        }
+        assertArrayEquals("output", expected.toByteArray(), actual);
+    }
+}
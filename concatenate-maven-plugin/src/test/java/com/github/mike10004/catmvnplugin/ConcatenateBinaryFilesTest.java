@@ -30,6 +30,15 @@ public class ConcatenateBinaryFilesTest {
 
     @Test
     public void execute_basic() throws Exception {
+        testExecute(ConcatenateMojo.WriteStrategy.channel);
+    }
+
+    @Test
+    public void execute_streamWriteStrategy() throws Exception {
+        testExecute(ConcatenateMojo.WriteStrategy.stream);
+    }
+
+    private void testExecute(ConcatenateMojo.WriteStrategy writeStrategy) throws Exception {
         File dir = temporaryFolder.newFolder();
         File someFile1 = new File(dir, "child/part1.bin"), someFile2 = new File(dir, "child/part2.bin");
         Files.createParentDirs(someFile1);
@@ -50,6 +59,7 @@ public class ConcatenateBinaryFilesTest {
         ConcatenateMojo mojo = new ConcatenateMojo();
         mojo.setOutputFile(outputFile);
         mojo.setSources(new OrderableFileSet[]{fileset});
+        mojo.setWriteStrategy(writeStrategy);
         mojo.execute();
         byte[] actual = Files.toByteArray(outputFile);
         if (!Arrays.equals(expected, actual)) {
@@ -8,32 +8,57 @@ import com.github.mike10004.catmvnplugin.OrderableFileSet.OrderingStrategy;
 import com.github.mike10004.catmvnplugin.OrderableFileSetManagerTest.TestCase;
 import com.github.mike10004.catmvnplugin.OrderableFileSetManagerTest.TestCaseCreator;
 import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharSource;
 import com.google.common.io.Files;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static org.junit.Assert.*;
 
 public class ConcatenateMojoTest {
@@ -99,6 +124,33 @@ public class ConcatenateMojoTest {
         testRepeatedFileStrategy(file, RepeatedFileStrategy.fail, null);
     }
 
+    @Test
+    public void execute_dedupeByContent() throws Exception {
+        File outputFile = testRepeatedContentStrategy(RepeatedFileStrategy.dedupeByContent);
+        assertEquals("output", "abcabdab", Files.toString(outputFile, charset));
+    }
+
+    @Test(expected = RepeatedItemException.class)
+    public void execute_failOnRepeatedContent() throws Exception {
+        testRepeatedContentStrategy(RepeatedFileStrategy.failOnRepeatedContent);
+    }
+
+    private File testRepeatedContentStrategy(RepeatedFileStrategy strategy) throws Exception {
+        File root = temporaryFolder.newFolder();
+        // same size, different content; same content, different path; unique size
+        Files.write("abc", new File(root, "1.txt"), charset);
+        Files.write("abd", new File(root, "2.txt"), charset);
+        Files.write("abc", new File(root, "3.txt"), charset);
+        Files.write("ab", new File(root, "4.txt"), charset);
+        File outputFile = new File(temporaryFolder.newFolder(), "output.txt");
+        OrderableFileSet fileset = newFileSet(root, "1.txt", "2.txt", "3.txt", "4.txt");
+        fileset.setOrderingStrategy(OrderingStrategy.strict);
+        ConcatenateMojo mojo = newMojo(outputFile, fileset);
+        mojo.setRepeatedFileStrategy(strategy);
+        mojo.execute();
+        return outputFile;
+    }
+
     private static OrderableFileSet singletonFileset(File file) {
         OrderableFileSet fileset = new OrderableFileSet();
         fileset.setDirectory(file.getParent());
@@ -229,6 +281,15 @@ public class ConcatenateMojoTest {
 
     @Test
     public void divider() throws Exception {
+        testDivider(ConcatenateMojo.WriteStrategy.channel);
+    }
+
+    @Test
+    public void divider_streamWriteStrategy() throws Exception {
+        testDivider(ConcatenateMojo.WriteStrategy.stream);
+    }
+
+    private void testDivider(ConcatenateMojo.WriteStrategy writeStrategy) throws Exception {
         File outputFile = new File(temporaryFolder.getRoot(), "output.txt");
         File root = temporaryFolder.newFolder();
         List<String> contents = Arrays.asList("a", "b");
@@ -241,8 +302,776 @@ public class ConcatenateMojoTest {
         ConcatenateMojo mojo = newMojo(outputFile, newFileSet(root, contents));
         mojo.setDivider(divider);
         mojo.setDividerCharset(charset.name());
+        mojo.setWriteStrategy(writeStrategy);
         mojo.execute();
         String actual = Files.toString(outputFile, charset);
         assertEquals("divided output", expected, actual);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void lineFilters() throws Exception {
+        File outputFile = new File(temporaryFolder.getRoot(), "output.txt");
+        File root = temporaryFolder.newFolder();
+        Files.write("\uFEFF# comment\r\na\r\nb", new File(root, "1.txt"), charset);
+        Files.write("c\n#d\ne", new File(root, "2.txt"), charset);
+        OrderableFileSet fileset = newFileSet(root, "1.txt", "2.txt");
+        fileset.setOrderingStrategy(OrderableFileSet.OrderingStrategy.strict);
+        fileset.setLineEnding("unix");
+        ConcatenateMojo mojo = newMojo(outputFile, fileset);
+        mojo.setStripBom(true);
+        mojo.setDropLinesMatching("^#");
+        mojo.setEnsureTrailingNewline(true);
+        mojo.setSourceEncoding(charset.name());
+        mojo.execute();
+        assertEquals("filtered output", "a\nb\nc\ne\n", Files.toString(outputFile, charset));
+    }
+
+    @Test
+    public void pipelined_invalidSettings() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("a", new File(root, "a.txt"), charset);
+        File outputFile = new File(temporaryFolder.newFolder(), "output.txt");
+        ConcatenateMojo mojo = newMojo(outputFile, newFileSet(root, "a.txt"));
+        mojo.setWriteStrategy(ConcatenateMojo.WriteStrategy.pipelined);
+        mojo.setReaderThreads(0);
+        try {
+            mojo.execute();
+            fail("expected exception");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("readerThreads"));
+        }
+        mojo.setReaderThreads(2);
+        mojo.setMaxInFlightBytes(-1);
+        try {
+            mojo.execute();
+            fail("expected exception");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("maxInFlightBytes"));
+        }
+        assertFalse("output written", outputFile.exists());
+        mojo.setMaxInFlightBytes(0);
+        mojo.execute();
+        assertEquals("output", "a", Files.toString(outputFile, charset));
+    }
+
+    @Test
+    public void lineFilters_keepsLineEndingsOfUnfilteredFileset() throws Exception {
+        File outputFile = new File(temporaryFolder.getRoot(), "output.txt");
+        File root = temporaryFolder.newFolder();
+        Files.write("a\r\nb", new File(root, "1.txt"), charset);
+        Files.write("c\r\nd", new File(root, "2.txt"), charset);
+        OrderableFileSet normalized = newFileSet(root, "1.txt");
+        normalized.setLineEnding("unix");
+        OrderableFileSet kept = newFileSet(root, "2.txt");
+        kept.setLineEnding("keep");
+        ConcatenateMojo mojo = newMojo(outputFile, normalized, kept);
+        mojo.setDivider("|");
+        mojo.execute();
+        assertEquals("filtered output", "a\nb|c\r\nd", Files.toString(outputFile, charset));
+    }
+
+    @Test
+    public void lineFilters_asciiIncompatibleEncoding() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("a\nb", new File(root, "a.txt"), StandardCharsets.UTF_16);
+        File outputFile = new File(temporaryFolder.getRoot(), "output.txt");
+        ConcatenateMojo mojo = newMojo(outputFile, newFileSet(root, "a.txt"));
+        mojo.setSourceEncoding("UTF-16");
+        mojo.execute();
+        assertEquals("unfiltered", "a\nb", Files.toString(outputFile, StandardCharsets.UTF_16));
+        mojo.setEnsureTrailingNewline(true);
+        try {
+            mojo.execute();
+            fail("expected exception");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("UTF-16"));
+        }
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void lineFilters_invalidPattern() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("a", new File(root, "a.txt"), charset);
+        ConcatenateMojo mojo = newMojo(new File(temporaryFolder.getRoot(), "output.txt"), newFileSet(root, "a.txt"));
+        mojo.setDropLinesMatching("(");
+        mojo.execute();
+    }
+
+    @Test
+    public void writeConcatenated_failureLeavesPreviousOutput() throws Exception {
+        File outputDir = temporaryFolder.newFolder();
+        File outputFile = new File(outputDir, "output.txt");
+        Files.write("previous", outputFile, charset);
+        File root = temporaryFolder.newFolder();
+        File a = new File(root, "a.txt");
+        Files.write("a", a, charset);
+        ConcatenateMojo mojo = newMojo(outputFile, newFileSet(root, "a.txt"));
+        try {
+            mojo.writeConcatenated(Arrays.asList(a, new File(root, "missing.txt")), outputFile);
+            fail("should have thrown");
+        } catch (IOException expected) {
+        }
+        assertEquals("output after failure", "previous", Files.toString(outputFile, charset));
+        assertEquals("files in output directory", Collections.singletonList("output.txt"), Arrays.asList(checkNotNull(outputDir.list())));
+        mojo.setSyncOutput(true);
+        mojo.writeConcatenated(Collections.singletonList(a), outputFile);
+        assertEquals("output after success", "a", Files.toString(outputFile, charset));
+        assertEquals("files in output directory", Collections.singletonList("output.txt"), Arrays.asList(checkNotNull(outputDir.list())));
+    }
+
+    @Test
+    public void outputClaimedByAnotherExecution() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("a", new File(root, "a.txt"), charset);
+        File outputFile = new File(temporaryFolder.newFolder(), "output.txt");
+        try (OutputClaims.Claim ignore = OutputClaims.claim(Collections.singleton(outputFile), "other")) {
+            try {
+                newMojo(outputFile, newFileSet(root, "a.txt")).execute();
+                fail("should have thrown");
+            } catch (MojoExecutionException expected) {
+                assertTrue("message: " + expected.getMessage(), expected.getMessage().contains("other"));
+            }
+            assertFalse("output written", outputFile.exists());
+        }
+        newMojo(outputFile, newFileSet(root, "a.txt")).execute();
+        assertEquals("output after claim released", "a", Files.toString(outputFile, charset));
+    }
+
+    @Test
+    public void concurrentExecutions() throws Exception {
+        File root = temporaryFolder.newFolder();
+        for (String name : new String[]{"a.txt", "b.txt", "c.txt"}) {
+            Files.write(name, new File(root, name), charset);
+        }
+        File outputDir = temporaryFolder.newFolder();
+        int numExecutions = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < numExecutions; i++) {
+                File outputFile = new File(outputDir, i + ".txt");
+                futures.add(executor.submit(() -> {
+                    OrderableFileSet fileset = newFileSet(root, "a.txt", "b.txt", "c.txt");
+                    fileset.setOrderingStrategy(OrderingStrategy.strict);
+                    newMojo(outputFile, fileset).execute();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        for (int i = 0; i < numExecutions; i++) {
+            assertEquals("output " + i, "a.txtb.txtc.txt", Files.toString(new File(outputDir, i + ".txt"), charset));
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Test
+    public void checksums() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("abc", new File(root, "a.txt"), charset);
+        Files.write("def", new File(root, "b.txt"), charset);
+        File outputFile = new File(temporaryFolder.newFolder(), "output.txt");
+        OrderableFileSet fileset = newFileSet(root, "a.txt", "b.txt");
+        fileset.setOrderingStrategy(OrderingStrategy.strict);
+        ConcatenateMojo mojo = newMojo(outputFile, fileset);
+        mojo.setChecksums(ConcatenateMojo.ChecksumAlgorithm.values());
+        mojo.setCompression("gzip");
+        mojo.setKeepUncompressed(true);
+        mojo.setChecksumPropertyPrefix("cat");
+        Properties properties = new Properties();
+        mojo.setProjectProperties(properties);
+        mojo.execute();
+        Map<ConcatenateMojo.ChecksumAlgorithm, HashFunction> hashFunctions = ImmutableMap.of(
+                ConcatenateMojo.ChecksumAlgorithm.sha256, Hashing.sha256(),
+                ConcatenateMojo.ChecksumAlgorithm.md5, Hashing.md5(),
+                ConcatenateMojo.ChecksumAlgorithm.crc32c, Hashing.crc32c());
+        File compressedFile = new File(outputFile.getPath() + ".gz");
+        for (File writtenFile : Arrays.asList(outputFile, compressedFile)) {
+            for (ConcatenateMojo.ChecksumAlgorithm algorithm : hashFunctions.keySet()) {
+                HashCode hash = Files.asByteSource(writtenFile).hash(hashFunctions.get(algorithm));
+                String expected = algorithm == ConcatenateMojo.ChecksumAlgorithm.crc32c
+                        ? String.format("%08x", hash.padToLong()) : hash.toString();
+                File checksumFile = ConcatenateMojo.getChecksumFile(writtenFile, algorithm);
+                assertEquals(checksumFile.getName(), expected + "  " + writtenFile.getName() + "\n", Files.toString(checksumFile, StandardCharsets.US_ASCII));
+                assertEquals("property", expected, properties.getProperty("cat." + writtenFile.getName() + "." + algorithm));
+            }
+        }
+        assertEquals("unqualified property", properties.getProperty("cat.output.txt.sha256"), properties.getProperty("cat.sha256"));
+    }
+
+    @Test
+    public void index() throws Exception {
+        for (ConcatenateMojo.WriteStrategy writeStrategy : ConcatenateMojo.WriteStrategy.values()) {
+            testIndex(writeStrategy, false);
+        }
+        testIndex(ConcatenateMojo.WriteStrategy.channel, true);
+    }
+
+    private void testIndex(ConcatenateMojo.WriteStrategy writeStrategy, boolean filtered) throws Exception {
+        File root = temporaryFolder.newFolder();
+        List<String> names = Arrays.asList("a.txt", "sub/b.txt", "c.txt");
+        List<String> contents = Arrays.asList("abc\r\n", "", "defgh");
+        for (int i = 0; i < names.size(); i++) {
+            File file = new File(root, names.get(i));
+            Files.createParentDirs(file);
+            Files.write(contents.get(i), file, charset);
+        }
+        File outputFile = new File(temporaryFolder.newFolder(), "output.txt");
+        OrderableFileSet fileset = newFileSet(root, names);
+        fileset.setOrderingStrategy(OrderingStrategy.strict);
+        if (filtered) {
+            fileset.setLineEnding("unix");
+        }
+        ConcatenateMojo mojo = newMojo(outputFile, fileset);
+        mojo.setWriteStrategy(writeStrategy);
+        mojo.setDivider("--");
+        mojo.setDividerCharset(charset.name());
+        mojo.setIndexFormats(OutputIndex.Format.values());
+        mojo.setHashIndexEntries(true);
+        mojo.execute();
+        byte[] output = Files.toByteArray(outputFile);
+        File indexFile = ConcatenateMojo.getIndexFile(outputFile, OutputIndex.Format.binary);
+        String description = writeStrategy + (filtered ? " filtered" : "");
+        try (DataInputStream in = new DataInputStream(new FileInputStream(indexFile))) {
+            assertEquals("magic", OutputIndex.MAGIC, in.readInt());
+            assertEquals("version", OutputIndex.VERSION, in.readInt());
+            assertEquals("flags", OutputIndex.FLAG_HASHES, in.readInt());
+            assertEquals("count", names.size(), in.readInt());
+            long[][] records = new long[names.size()][];
+            byte[][] hashes = new byte[names.size()][OutputIndex.HASH_SIZE];
+            for (int i = 0; i < names.size(); i++) {
+                records[i] = new long[]{in.readLong(), in.readLong(), in.readInt(), in.readInt()};
+                in.readFully(hashes[i]);
+            }
+            byte[] paths = ByteStreams.toByteArray(in);
+            for (int i = 0; i < names.size(); i++) {
+                String expectedContent = filtered ? contents.get(i).replace("\r\n", "\n") : contents.get(i);
+                byte[] entry = Arrays.copyOfRange(output, (int) records[i][0], (int) (records[i][0] + records[i][1]));
+                assertEquals(description + " entry " + i, expectedContent, new String(entry, charset));
+                assertEquals(description + " path " + i, names.get(i), new String(paths, (int) records[i][2], (int) records[i][3], StandardCharsets.UTF_8));
+                assertArrayEquals(description + " hash " + i, Hashing.sha256().hashBytes(entry).asBytes(), hashes[i]);
+            }
+        }
+        String json = Files.toString(ConcatenateMojo.getIndexFile(outputFile, OutputIndex.Format.json), StandardCharsets.UTF_8);
+        assertTrue(description + " json: " + json, json.contains("{\"path\":\"sub\\/b.txt\",\"offset\":" + (filtered ? 6 : 7) + ",\"length\":0,\"sha256\":\"" + Hashing.sha256().hashBytes(new byte[0]) + "\"}"));
+    }
+
+    @Test
+    public void headerAndFooter() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("abc\n", new File(root, "a.js"), charset);
+        new File(root, "sub").mkdirs();
+        Files.write("de\n", new File(root, "sub/b.js"), charset);
+        String expected = "/* a.js (4 bytes) */\nabc\n// end 0\n\n/* sub/b.js (3 bytes) */\nde\n// end 1\n";
+        for (ConcatenateMojo.WriteStrategy writeStrategy : ConcatenateMojo.WriteStrategy.values()) {
+            File outputFile = new File(temporaryFolder.newFolder(), "output.js");
+            OrderableFileSet fileset = newFileSet(root, Arrays.asList("a.js", "sub/b.js"));
+            fileset.setOrderingStrategy(OrderingStrategy.strict);
+            ConcatenateMojo mojo = newMojo(outputFile, fileset);
+            mojo.setWriteStrategy(writeStrategy);
+            mojo.setDivider("\n");
+            mojo.setDividerCharset(charset.name());
+            mojo.setHeader("/* ${relativePath} (${size} bytes) */\n");
+            mojo.setFooter("// end ${index}\n");
+            mojo.setIndexFormats(OutputIndex.Format.json);
+            mojo.execute();
+            assertEquals(writeStrategy.toString(), expected, Files.toString(outputFile, charset));
+            String json = Files.toString(ConcatenateMojo.getIndexFile(outputFile, OutputIndex.Format.json), StandardCharsets.UTF_8);
+            assertTrue(writeStrategy + " index: " + json, json.contains("\"offset\":" + expected.indexOf("de\n") + ",\"length\":3"));
+        }
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void headerAndFooter_invalidTemplate() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("abc", new File(root, "a.js"), charset);
+        ConcatenateMojo mojo = newMojo(new File(temporaryFolder.newFolder(), "output.js"), newFileSet(root, "a.js"));
+        mojo.setHeader("/* ${relativePath */");
+        mojo.execute();
+    }
+
+    @Test
+    public void sourceMap() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("var a;\nvar b;\n", new File(root, "a.js"), charset);
+        Files.write("x", new File(root, "b.js"), charset);
+        Files.write("abc\ndef\n", new File(root, "c.js"), charset);
+        Files.write("{\"version\":3,\"sources\":[\"c.ts\"],\"names\":[\"foo\"],\"mappings\":\"AAAA,IAAIA;AACA\"}", new File(root, "c.js.map"), charset);
+        File outputFile = new File(root, "output.js");
+        ConcatenateMojo mojo = newMojo(outputFile, newFileSet(root, Arrays.asList("a.js", "b.js", "c.js")));
+        mojo.setDivider("\n");
+        mojo.setDividerCharset(charset.name());
+        mojo.setSourceMap(true);
+        mojo.execute();
+        assertEquals("output", "var a;\nvar b;\n\nx\nabc\ndef\n//# sourceMappingURL=output.js.map\n", Files.toString(outputFile, charset));
+        Map<?, ?> map = (Map<?, ?>) Json.parse(Files.toString(ConcatenateMojo.getSourceMapFile(outputFile), StandardCharsets.UTF_8));
+        assertEquals("file", "output.js", map.get("file"));
+        assertEquals("sources", Arrays.asList("a.js", "b.js", "c.ts"), map.get("sources"));
+        assertEquals("names", Collections.singletonList("foo"), map.get("names"));
+        assertEquals("mappings", "AAAA;AACA;;ACDA;ACAA,IAAIA;AACA", map.get("mappings"));
+    }
+
+    @Test
+    public void sourceMap_unchained() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("abc\ndef\n", new File(root, "c.js"), charset);
+        Files.write("{}", new File(root, "c.js.map"), charset);
+        File outputFile = new File(temporaryFolder.newFolder(), "output.css");
+        ConcatenateMojo mojo = newMojo(outputFile, newFileSet(root, "c.js"));
+        mojo.setSourceMap(true);
+        mojo.setChainSourceMaps(false);
+        mojo.execute();
+        assertEquals("output", "abc\ndef\n/*# sourceMappingURL=output.css.map */\n", Files.toString(outputFile, charset));
+        Map<?, ?> map = (Map<?, ?>) Json.parse(Files.toString(ConcatenateMojo.getSourceMapFile(outputFile), StandardCharsets.UTF_8));
+        assertEquals("sources", Collections.singletonList("../" + root.getName() + "/c.js"), map.get("sources"));
+        assertEquals("mappings", "AAAA;AACA", map.get("mappings"));
+    }
+
+    @Test
+    public void archive_tar() throws Exception {
+        File root = temporaryFolder.newFolder();
+        String prefixedName = Strings.repeat("long-directory-name/", 10) + "f.txt";
+        String paxName = "sub/" + Strings.repeat("n", 120) + ".txt";
+        List<String> names = Arrays.asList("b.txt", "a.txt", "sub/c.txt", prefixedName, paxName);
+        List<String> contents = Arrays.asList("bee", "", Strings.repeat("c", 1000), "prefixed", "pax");
+        for (int i = 0; i < names.size(); i++) {
+            File file = new File(root, names.get(i));
+            Files.createParentDirs(file);
+            Files.write(contents.get(i), file, charset);
+        }
+        OrderableFileSet fileset = newFileSet(root, names);
+        fileset.setOrderingStrategy(OrderingStrategy.strict);
+        File outputFile = new File(temporaryFolder.newFolder(), "output.tar");
+        ConcatenateMojo mojo = newMojo(outputFile, fileset);
+        mojo.setArchiveFormat(ArchiveConcatenator.Format.tar);
+        mojo.setCompression("gzip");
+        mojo.setKeepUncompressed(true);
+        mojo.setCompressionThreads(2);
+        mojo.setOutputTimestamp("2020-01-02T03:04:05Z");
+        mojo.setIndexFormats(OutputIndex.Format.json);
+        mojo.execute();
+        byte[] tar = Files.toByteArray(outputFile);
+        assertEquals("record size", 0, tar.length % ArchiveConcatenator.TarConcatenator.RECORD_SIZE);
+        byte[] decompressed;
+        try (InputStream in = new GZIPInputStream(new FileInputStream(new File(outputFile.getPath() + ".gz")))) {
+            decompressed = ByteStreams.toByteArray(in);
+        }
+        assertArrayEquals("compressed", tar, decompressed);
+        Map<String, String> entries = readTar(tar, 1577934245L);
+        assertEquals("names", names, new ArrayList<>(entries.keySet()));
+        assertEquals("contents", contents, new ArrayList<>(entries.values()));
+        String json = Files.toString(ConcatenateMojo.getIndexFile(outputFile, OutputIndex.Format.json), StandardCharsets.UTF_8);
+        assertTrue("index: " + json, json.contains("{\"path\":\"b.txt\",\"offset\":512,\"length\":3}"));
+    }
+
+    /*
+     * Reads regular file entries of a tar archive, checking header checksums and modification times.
+     */
+    private static Map<String, String> readTar(byte[] tar, long expectedMtime) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        String paxPath = null;
+        int pos = 0;
+        while (tar[pos] != 0) {
+            String name = new String(tar, pos, 100, StandardCharsets.UTF_8).replaceAll("\u0000.*", "");
+            String prefix = new String(tar, pos + 345, 155, StandardCharsets.UTF_8).replaceAll("\u0000.*", "");
+            long size = Long.parseLong(new String(tar, pos + 124, 11, StandardCharsets.US_ASCII), 8);
+            assertEquals("mtime", expectedMtime, Long.parseLong(new String(tar, pos + 136, 11, StandardCharsets.US_ASCII), 8));
+            long checksum = Long.parseLong(new String(tar, pos + 148, 6, StandardCharsets.US_ASCII), 8);
+            long sum = 0;
+            for (int i = 0; i < 512; i++) {
+                sum += i >= 148 && i < 156 ? ' ' : tar[pos + i] & 0xFF;
+            }
+            assertEquals("checksum of " + name, sum, checksum);
+            byte type = tar[pos + 156];
+            String data = new String(tar, pos + 512, (int) size, StandardCharsets.UTF_8);
+            pos += 512 + (int) ((size + 511) / 512 * 512);
+            if (type == 'x') {
+                for (String record : data.split("\n")) {
+                    String keyValue = record.substring(record.indexOf(' ') + 1);
+                    if (keyValue.startsWith("path=")) {
+                        paxPath = keyValue.substring("path=".length());
+                    }
+                }
+                continue;
+            }
+            assertEquals("type", '0', type);
+            String path = paxPath != null ? paxPath : prefix.isEmpty() ? name : prefix + "/" + name;
+            entries.put(path, data);
+            paxPath = null;
+        }
+        return entries;
+    }
+
+    @Test
+    public void archive_zip() throws Exception {
+        File root = temporaryFolder.newFolder();
+        List<String> names = Arrays.asList("z.txt", "sub/y.txt", "x.txt");
+        List<String> contents = Arrays.asList("zzz", Strings.repeat("y", 5000), "");
+        for (int i = 0; i < names.size(); i++) {
+            File file = new File(root, names.get(i));
+            Files.createParentDirs(file);
+            Files.write(contents.get(i), file, charset);
+        }
+        for (boolean store : new boolean[]{false, true}) {
+            OrderableFileSet fileset = newFileSet(root, names);
+            fileset.setOrderingStrategy(OrderingStrategy.strict);
+            File outputFile = new File(temporaryFolder.newFolder(), "output.zip");
+            ConcatenateMojo mojo = newMojo(outputFile, fileset);
+            mojo.setArchiveFormat(ArchiveConcatenator.Format.zip);
+            mojo.setStoreArchiveEntries(store);
+            mojo.setOutputTimestamp("1577934245");
+            mojo.execute();
+            List<String> actualNames = new ArrayList<>(), actualContents = new ArrayList<>();
+            try (ZipInputStream in = new ZipInputStream(new FileInputStream(outputFile))) {
+                ZipEntry entry;
+                while ((entry = in.getNextEntry()) != null) {
+                    assertEquals("method", store ? ZipEntry.STORED : ZipEntry.DEFLATED, entry.getMethod());
+                    LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(entry.getTime()), ZoneId.systemDefault());
+                    assertEquals("time", LocalDateTime.of(2020, 1, 2, 3, 4, 4), time);
+                    actualNames.add(entry.getName());
+                    actualContents.add(new String(ByteStreams.toByteArray(in), charset));
+                }
+            }
+            assertEquals("names", names, actualNames);
+            assertEquals("contents", contents, actualContents);
+        }
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void archive_unsupportedCombination() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("a", new File(root, "a.txt"), charset);
+        ConcatenateMojo mojo = newMojo(new File(temporaryFolder.newFolder(), "output.zip"), newFileSet(root, "a.txt"));
+        mojo.setArchiveFormat(ArchiveConcatenator.Format.zip);
+        mojo.setDivider("\n");
+        mojo.execute();
+    }
+
+    static void writeJar(File jarFile, Map<String, String> entries) throws IOException {
+        Files.createParentDirs(jarFile);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jarFile))) {
+            out.putNextEntry(new ZipEntry("META-INF/resources/webjars/lib/"));
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                out.putNextEntry(new ZipEntry(entry.getKey()));
+                out.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void archiveSources() throws Exception {
+        File jarFile = new File(temporaryFolder.newFolder(), "lib-1.0.jar");
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("META-INF/resources/webjars/lib/b.js", "bee\n");
+        entries.put("META-INF/resources/webjars/lib/sub/c.js", Strings.repeat("c", 5000) + "\n");
+        entries.put("META-INF/resources/webjars/lib/a.js", "ay\n");
+        entries.put("META-INF/resources/webjars/lib/copy-of-a.js", "ay\n");
+        entries.put("META-INF/resources/webjars/lib/a.css", "css\n");
+        entries.put("other/d.js", "dee\n");
+        writeJar(jarFile, entries);
+        for (ConcatenateMojo.WriteStrategy writeStrategy : ConcatenateMojo.WriteStrategy.values()) {
+            OrderableFileSet fileset = new OrderableFileSet();
+            fileset.setArchive(jarFile.getAbsolutePath());
+            fileset.setDirectory("META-INF/resources/webjars/lib");
+            fileset.setIncludes(Arrays.asList("sub/*.js", "*.js"));
+            fileset.setExcludes(Collections.singletonList("b.js"));
+            File outputFile = new File(temporaryFolder.newFolder(), "output.js");
+            ConcatenateMojo mojo = newMojo(outputFile, fileset);
+            mojo.setWriteStrategy(writeStrategy);
+            mojo.setRepeatedFileStrategy(RepeatedFileStrategy.dedupeByContent);
+            mojo.setHeader("// ${relativePath}\n");
+            mojo.execute();
+            String expected = "// sub/c.js\n" + Strings.repeat("c", 5000) + "\n// a.js\nay\n";
+            assertEquals(writeStrategy.toString(), expected, Files.toString(outputFile, StandardCharsets.UTF_8).replace(File.separatorChar, '/'));
+        }
+    }
+
+    @Test
+    public void archiveSources_dependency() throws Exception {
+        File localRepository = temporaryFolder.newFolder();
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("sql/10-tables.sql", "create table t;\n");
+        entries.put("sql/9-schema.sql", "create schema s;\n");
+        entries.put("sql/README", "not sql\n");
+        writeJar(new File(localRepository, "com/example/shared-sql/1.0/shared-sql-1.0-sources.jar"), entries);
+        OrderableFileSet fileset = new OrderableFileSet();
+        fileset.setDependency("com.example:shared-sql:jar:sources:1.0");
+        fileset.setDirectory("sql");
+        fileset.setIncludes(Collections.singletonList("*.sql"));
+        fileset.setSort(OrderableFileSet.SortingStrategy.natural);
+        File outputFile = new File(temporaryFolder.newFolder(), "output.sql");
+        ConcatenateMojo mojo = newMojo(outputFile, fileset);
+        mojo.setLocalRepository(localRepository.getAbsolutePath());
+        mojo.execute();
+        assertEquals("create schema s;\ncreate table t;\n", Files.toString(outputFile, StandardCharsets.UTF_8));
+        fileset.setDependency("com.example:shared-sql:2.0");
+        try {
+            mojo.execute();
+            fail("expected exception for missing artifact");
+        } catch (MojoExecutionException expected) {
+        }
+    }
+
+    @Test
+    public void incremental() throws Exception {
+        File outputFile = new File(temporaryFolder.getRoot(), "output.txt");
+        File stateDirectory = temporaryFolder.newFolder();
+        File root = temporaryFolder.newFolder();
+        File a = new File(root, "a.txt"), b = new File(root, "b.txt");
+        Files.write("a", a, charset);
+        Files.write("b", b, charset);
+        CapturingLog log = new CapturingLog();
+        Runnable execute = () -> {
+            ConcatenateMojo mojo = newMojo(outputFile, newFileSet(root, "a.txt", "b.txt"));
+            mojo.setIncremental(true);
+            mojo.setStateDirectory(stateDirectory);
+            mojo.setLog(log);
+            try {
+                mojo.execute();
+            } catch (MojoExecutionException | MojoFailureException e) {
+                throw new RuntimeException(e);
+            }
+        };
+        execute.run();
+        assertEquals("first output", "ab", Files.toString(outputFile, charset));
+        assertFalse("first execution skipped", log.containsInfo("up to date"));
+        execute.run();
+        assertTrue("second execution skipped", log.containsInfo("up to date"));
+        log.clear();
+        Files.write("bb", b, charset);
+        checkState(b.setLastModified(b.lastModified() - 10000));
+        execute.run();
+        assertFalse("third execution skipped", log.containsInfo("up to date"));
+        assertEquals("third output", "abb", Files.toString(outputFile, charset));
+    }
+
+    @Test
+    public void incremental_rebuildsWhenRelativePathsChange() throws Exception {
+        File outputFile = new File(temporaryFolder.newFolder(), "output.js");
+        File stateDirectory = temporaryFolder.newFolder();
+        File root = temporaryFolder.newFolder();
+        File sub = new File(root, "sub");
+        Files.createParentDirs(new File(sub, "a.js"));
+        Files.write("a", new File(sub, "a.js"), charset);
+        CapturingLog log = new CapturingLog();
+        ConcatenateMojo mojo = newMojo(outputFile, newFileSet(root, "sub/a.js"));
+        mojo.setIncremental(true);
+        mojo.setStateDirectory(stateDirectory);
+        mojo.setHeader("// ${relativePath}\n");
+        mojo.setLog(log);
+        mojo.execute();
+        assertEquals("first output", "// sub/a.js\na", Files.toString(outputFile, charset).replace(File.separatorChar, '/'));
+        mojo.setSources(new OrderableFileSet[]{newFileSet(sub, "a.js")});
+        log.clear();
+        mojo.execute();
+        assertFalse("skipped after fileset re-rooted", log.containsInfo("up to date"));
+        assertEquals("second output", "// a.js\na", Files.toString(outputFile, charset));
+    }
+
+    @Test
+    public void incremental_rebuildsMissingSidecar() throws Exception {
+        File outputFile = new File(temporaryFolder.newFolder(), "output.js");
+        File stateDirectory = temporaryFolder.newFolder();
+        File root = temporaryFolder.newFolder();
+        Files.write("a", new File(root, "a.js"), charset);
+        CapturingLog log = new CapturingLog();
+        ConcatenateMojo mojo = newMojo(outputFile, newFileSet(root, "a.js"));
+        mojo.setIncremental(true);
+        mojo.setStateDirectory(stateDirectory);
+        mojo.setChecksums(ConcatenateMojo.ChecksumAlgorithm.sha256);
+        mojo.setIndexFormats(OutputIndex.Format.json);
+        mojo.setSourceMap(true);
+        mojo.setLog(log);
+        mojo.execute();
+        List<File> sidecars = Arrays.asList(
+                ConcatenateMojo.getChecksumFile(outputFile, ConcatenateMojo.ChecksumAlgorithm.sha256),
+                ConcatenateMojo.getIndexFile(outputFile, OutputIndex.Format.json),
+                ConcatenateMojo.getSourceMapFile(outputFile));
+        for (File sidecar : sidecars) {
+            assertTrue("exists: " + sidecar, sidecar.isFile());
+            checkState(sidecar.delete());
+            log.clear();
+            mojo.execute();
+            assertFalse("skipped with " + sidecar.getName() + " missing", log.containsInfo("up to date"));
+            assertTrue("rebuilt: " + sidecar, sidecar.isFile());
+        }
+        log.clear();
+        mojo.execute();
+        assertTrue("skipped with all files present", log.containsInfo("up to date"));
+    }
+
+    @Test
+    public void bundles() throws Exception {
+        File root = temporaryFolder.newFolder();
+        for (String name : new String[]{"a.txt", "b.txt", "c.css"}) {
+            Files.write(name, new File(root, name), charset);
+        }
+        File outputDir = temporaryFolder.newFolder();
+        File output1 = new File(outputDir, "output1.txt"), output2 = new File(outputDir, "output2.txt"), output3 = new File(outputDir, "output3.txt");
+        ConcatenateMojo mojo = newMojo(output1, newFileSet(root, "b.txt", "a.txt"));
+        mojo.setBundles(new Bundle[]{
+                new Bundle(new OrderableFileSet[]{newFileSet(root, "c.css"), newFileSet(root, "a.txt")}, output2),
+                new Bundle(new OrderableFileSet[]{newFileSet(root, "b.txt", "a.txt")}, output3),
+        });
+        mojo.execute();
+        assertEquals("output1", "b.txta.txt", Files.toString(output1, charset));
+        assertEquals("output2", "c.cssa.txt", Files.toString(output2, charset));
+        assertEquals("output3", "b.txta.txt", Files.toString(output3, charset));
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void bundles_sameOutputFile() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("a", new File(root, "a.txt"), charset);
+        File outputFile = new File(temporaryFolder.getRoot(), "output.txt");
+        ConcatenateMojo mojo = newMojo(outputFile, newFileSet(root, "a.txt"));
+        mojo.setBundles(new Bundle[]{new Bundle(new OrderableFileSet[]{newFileSet(root, "a.txt")}, outputFile)});
+        mojo.execute();
+    }
+
+    @Test
+    public void compression() throws Exception {
+        testCompression(false, 1);
+    }
+
+    @Test
+    public void compression_keepUncompressed() throws Exception {
+        testCompression(true, 1);
+    }
+
+    @Test
+    public void compression_parallel() throws Exception {
+        testCompression(true, 4);
+    }
+
+    private void testCompression(boolean keepUncompressed, int compressionThreads) throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("a", new File(root, "a.txt"), charset);
+        Files.write("b", new File(root, "b.txt"), charset);
+        File outputFile = new File(temporaryFolder.newFolder(), "output.txt");
+        ConcatenateMojo mojo = newMojo(outputFile, newFileSet(root, "a.txt", "b.txt"));
+        mojo.setDivider("X");
+        mojo.setDividerCharset(charset.name());
+        mojo.setCompression("gzip");
+        mojo.setKeepUncompressed(keepUncompressed);
+        mojo.setCompressionThreads(compressionThreads);
+        mojo.execute();
+        File compressedFile = new File(outputFile.getPath() + ".gz");
+        String decompressed;
+        try (InputStream in = new GZIPInputStream(new FileInputStream(compressedFile))) {
+            decompressed = new String(ByteStreams.toByteArray(in), charset);
+        }
+        assertEquals("decompressed", "aXb", decompressed);
+        assertEquals("uncompressed output exists", keepUncompressed, outputFile.exists());
+        if (keepUncompressed) {
+            assertEquals("uncompressed", "aXb", Files.toString(outputFile, charset));
+        }
+    }
+
+    @Test(expected = MojoExecutionException.class)
+    public void compression_unknownCodec() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("a", new File(root, "a.txt"), charset);
+        ConcatenateMojo mojo = newMojo(new File(temporaryFolder.getRoot(), "output.txt"), newFileSet(root, "a.txt"));
+        mojo.setCompression("nonexistent");
+        mojo.execute();
+    }
+
+    @Test
+    public void metrics() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("abc", new File(root, "a.txt"), charset);
+        Files.write("de", new File(root, "b.txt"), charset);
+        File outputFile = new File(temporaryFolder.newFolder(), "output.txt");
+        File stateDirectory = temporaryFolder.newFolder();
+        ConcatenateMojo mojo = newMojo(outputFile, newFileSet(root, "a.txt"), newFileSet(root, "b.txt"));
+        mojo.setStateDirectory(stateDirectory);
+        mojo.setWriteMetrics(true);
+        mojo.setLogMetrics(true);
+        CapturingLog log = new CapturingLog();
+        mojo.setLog(log);
+        mojo.execute();
+        assertTrue("summary logged", log.containsInfo("5 byte(s) read"));
+        File reportFile = mojo.getMetricsReportFile();
+        String report = Files.toString(reportFile, StandardCharsets.UTF_8);
+        assertTrue("filesets in " + report, report.contains("\"includedFiles\": 1, \"scanMillis\""));
+        assertTrue("sort time in " + report, report.contains("\"sortMillis\""));
+        assertTrue("files read in " + report, report.contains("\"filesRead\": 2,"));
+        assertTrue("bytes written in " + report, report.contains("\"bytesWritten\": 5,"));
+    }
+
+    @Test
+    public void metrics_countsBytesAsCopied() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("abc\nxx\n", new File(root, "a.txt"), charset);
+        File outputFile = new File(temporaryFolder.newFolder(), "output.txt");
+        ConcatenateMojo mojo = newMojo(outputFile, newFileSet(root, "a.txt"));
+        mojo.setStateDirectory(temporaryFolder.newFolder());
+        mojo.setDropLinesMatching("xx");
+        mojo.setCompression("gzip");
+        mojo.setWriteMetrics(true);
+        mojo.setLog(new CapturingLog());
+        mojo.execute();
+        File compressedFile = new File(outputFile.getPath() + ".gz");
+        String report = Files.toString(mojo.getMetricsReportFile(), StandardCharsets.UTF_8);
+        assertTrue("bytes read in " + report, report.contains("\"bytesRead\": 7,"));
+        assertTrue("bytes written in " + report, report.contains("\"bytesWritten\": " + compressedFile.length() + ","));
+    }
+
+    @Test
+    public void nioScanner() throws Exception {
+        File root = temporaryFolder.newFolder();
+        for (String path : new String[]{"a.js", "lib/b.js", "lib/c.css", "node_modules/d.js", "z/y/e.js"}) {
+            File file = new File(root, path);
+            Files.createParentDirs(file);
+            Files.write(path, file, charset);
+        }
+        Map<String, String> outputs = new HashMap<>();
+        for (OrderableFileSet.Scanner scanner : OrderableFileSet.Scanner.values()) {
+            OrderableFileSet fileset = newFileSet(root, "**/*.js");
+            fileset.setExcludes(Lists.newArrayList("node_modules/**"));
+            fileset.setScanner(scanner);
+            fileset.setScanThreads(3);
+            File outputFile = new File(temporaryFolder.newFolder(), "output.js");
+            ConcatenateMojo mojo = newMojo(outputFile, fileset);
+            mojo.setDivider("|");
+            mojo.execute();
+            outputs.put(scanner.name(), Files.asCharSource(outputFile, charset).read());
+        }
+        assertEquals("nio", outputs.get("standard"), outputs.get("nio"));
+        assertEquals("files", 3, outputs.get("nio").split("\\|").length);
+
+        OrderableFileSet fileset = newFileSet(root, "**/*.js");
+        fileset.setScanner(OrderableFileSet.Scanner.nio);
+        fileset.setScanThreads(0);
+        try {
+            newMojo(new File(temporaryFolder.newFolder(), "output.js"), fileset).execute();
+            fail("expected exception");
+        } catch (MojoExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("scan threads"));
+        }
+    }
+
+    static class CapturingLog extends SystemStreamLog {
+
+        private final List<String> infoMessages = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void info(CharSequence content) {
+            infoMessages.add(content.toString());
+            super.info(content);
+        }
+
+        public boolean containsInfo(String substring) {
+            return infoMessages.stream().anyMatch(message -> message.contains(substring));
+        }
+
+        public void clear() {
+            infoMessages.clear();
+        }
+    }
+}
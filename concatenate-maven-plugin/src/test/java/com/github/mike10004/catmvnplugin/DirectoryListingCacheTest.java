@@ -0,0 +1,96 @@
+package com.github.mike10004.catmvnplugin;
+
+import com.google.common.io.Files;
+import org.apache.maven.shared.model.fileset.FileSet;
+import org.apache.maven.shared.model.fileset.util.FileSetManager;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class DirectoryListingCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File root;
+
+    @Before
+    public void setUp() throws Exception {
+        root = temporaryFolder.newFolder();
+        String[] paths = {
+                "a.txt", "b.js", ".gitignore", "x/a.txt", "x/b.js", "x/y/c.txt", "x/y/z/d.js",
+                "w/CVS/e.txt", "w/f.txt~", "w/g.txt", "v/h.css",
+        };
+        for (String path : paths) {
+            File file = new File(root, path);
+            Files.createParentDirs(file);
+            Files.asCharSink(file, StandardCharsets.UTF_8).write(path);
+        }
+    }
+
+    private static FileSet fileSet(File dir, List<String> includes, List<String> excludes) {
+        FileSet fileSet = new FileSet();
+        fileSet.setDirectory(dir.getAbsolutePath());
+        fileSet.setIncludes(includes);
+        fileSet.setExcludes(excludes);
+        return fileSet;
+    }
+
+    @Test
+    public void getIncludedFiles_sameAsScanner() {
+        List<FileSet> fileSets = Arrays.asList(
+                fileSet(root, Collections.emptyList(), Collections.emptyList()),
+                fileSet(root, Collections.singletonList("**/*.txt"), Collections.emptyList()),
+                fileSet(root, Collections.singletonList("x/**"), Collections.singletonList("**/*.js")),
+                fileSet(root, Arrays.asList("*.js", "x/y/"), Collections.emptyList()),
+                fileSet(root, Collections.singletonList("w/**"), Collections.emptyList()),
+                fileSet(new File(root, "x"), Collections.singletonList("**/*.js"), Collections.emptyList()),
+                fileSet(new File(root, "nonexistent"), Collections.emptyList(), Collections.emptyList())
+        );
+        FileSet noDefaultExcludes = fileSet(root, Collections.singletonList("w/**"), Collections.emptyList());
+        noDefaultExcludes.setUseDefaultExcludes(false);
+        fileSets = new ArrayList<>(fileSets);
+        fileSets.add(noDefaultExcludes);
+        DirectoryListingCache cache = new DirectoryListingCache(fileSets);
+        FileSetManager scanner = new FileSetManager();
+        for (FileSet fileSet : fileSets) {
+            String[] expected = scanner.getIncludedFiles(fileSet);
+            String[] actual = cache.getIncludedFiles(fileSet);
+            assertNotNull("cache result for " + fileSet.getIncludes(), actual);
+            assertArrayEquals("included files for " + fileSet.getIncludes() + " - " + fileSet.getExcludes(), expected, actual);
+        }
+    }
+
+    @Test
+    public void getIncludedFiles_unregisteredFileSet() {
+        FileSet registered = fileSet(root, Collections.singletonList("x/**"), Collections.emptyList());
+        DirectoryListingCache cache = new DirectoryListingCache(Collections.singletonList(registered));
+        FileSet subset = fileSet(root, Collections.singletonList("x/y/**"), Collections.emptyList());
+        assertArrayEquals("subset", new FileSetManager().getIncludedFiles(subset), cache.getIncludedFiles(subset));
+        FileSet otherDirectory = fileSet(new File(root, "v"), Collections.emptyList(), Collections.emptyList());
+        assertNull("directory not registered", cache.getIncludedFiles(otherDirectory));
+    }
+
+    @Test
+    public void getIncludedFiles_skipsExcludedSubtrees() throws Exception {
+        FileSet fileSet = fileSet(root, Collections.singletonList("**/*.txt"), Collections.singletonList("x/**"));
+        ScanCache scanCache = new ScanCache(temporaryFolder.newFolder());
+        DirectoryListingCache cache = new DirectoryListingCache(Collections.singletonList(fileSet), scanCache);
+        assertArrayEquals("included files", new FileSetManager().getIncludedFiles(fileSet), cache.getIncludedFiles(fileSet));
+        // x and w/CVS, which is excluded by default, are not listed, nor are the directories below x
+        assertEquals("directories listed", 3, scanCache.getMisses());
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.mike10004.catmvnplugin;
+
+import com.google.common.base.Strings;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class EntryTemplateTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static String render(EntryTemplate template, File file, String relativePath, int index, Charset charset) {
+        ByteBuffer rendered = template.render(file, relativePath, index);
+        byte[] bytes = new byte[rendered.remaining()];
+        rendered.get(bytes);
+        return new String(bytes, charset);
+    }
+
+    @Test
+    public void render() throws Exception {
+        File file = new File(temporaryFolder.getRoot(), "b.js");
+        Files.write(new byte[1234], file);
+        EntryTemplate template = EntryTemplate.compile("/* ${relativePath} (${size} bytes) #${index} ${fileName} */\n", StandardCharsets.UTF_8);
+        assertEquals("/* sub/b.js (1234 bytes) #0 b.js */\n", render(template, file, "sub/b.js", 0, StandardCharsets.UTF_8));
+        assertEquals("reused", "/* sub/b.js (1234 bytes) #57 b.js */\n", render(template, file, "sub/b.js", 57, StandardCharsets.UTF_8));
+        assertEquals("path", file.getAbsolutePath(), render(EntryTemplate.compile("${path}", StandardCharsets.UTF_8), file, "b.js", 0, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void literalOnly() throws Exception {
+        EntryTemplate template = EntryTemplate.compile("-- $${relativePath} --", StandardCharsets.UTF_8);
+        assertEquals("-- ${relativePath} --", render(template, new File("a"), "a", 0, StandardCharsets.UTF_8));
+        assertEquals("empty", "", render(EntryTemplate.compile("", StandardCharsets.UTF_8), new File("a"), "a", 0, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void render_growsBuffers() throws Exception {
+        Charset charset = StandardCharsets.UTF_16BE;
+        String longPath = Strings.repeat("d\u00e9j\u00e0/", 200) + "x.js";
+        EntryTemplate template = EntryTemplate.compile(Strings.repeat("=", 300) + " ${relativePath} " + Strings.repeat("=", 300), charset);
+        String expected = Strings.repeat("=", 300) + " " + longPath + " " + Strings.repeat("=", 300);
+        assertEquals(expected, render(template, new File("x.js"), longPath, 0, charset));
+        assertEquals("short after long", Strings.repeat("=", 300) + " a " + Strings.repeat("=", 300), render(template, new File("a"), "a", 1, charset));
+    }
+
+    @Test
+    public void compile_invalid() throws Exception {
+        for (String invalid : new String[]{"${relativePath", "${bogus}", "a ${} b"}) {
+            try {
+                EntryTemplate.compile(invalid, StandardCharsets.UTF_8);
+                fail("expected exception for " + invalid);
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.mike10004.catmvnplugin;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ExternalSorterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void sort_spills() throws Exception {
+        Random random = new Random(getClass().getName().hashCode());
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            items.add(Integer.toString(random.nextInt(1000), 36) + "/é\n" + i % 3);
+        }
+        // compare only the first character, so that stability is observable
+        Comparator<String> comparator = Comparator.comparing(s -> s.charAt(0));
+        List<String> expected = new ArrayList<>(items);
+        expected.sort(comparator);
+        File tempDirectory = temporaryFolder.newFolder();
+        ExternalSorter sorter = new ExternalSorter(comparator, 100 * ExternalSorter.estimateSize(items.get(0)), tempDirectory);
+        List<String> actual;
+        try (Stream<String> sorted = sorter.sort(items.iterator())) {
+            assertTrue("runs written", tempDirectory.list().length > 1);
+            actual = sorted.collect(Collectors.toList());
+        }
+        assertEquals("sorted", expected, actual);
+        assertEquals("runs remaining", 0, tempDirectory.list().length);
+    }
+
+    @Test
+    public void sort_spillsWhileProducing() throws Exception {
+        File tempDirectory = temporaryFolder.newFolder();
+        ExternalSorter sorter = new ExternalSorter(Comparator.naturalOrder(), 10 * ExternalSorter.estimateSize("000"), tempDirectory);
+        List<String> actual;
+        try (Stream<String> sorted = sorter.sort(consumer -> {
+            for (int i = 0; i < 100; i++) {
+                if (i == 50) {
+                    assertTrue("runs written before all items produced", tempDirectory.list().length >= 4);
+                }
+                consumer.accept(String.format("%03d", 99 - i));
+            }
+        })) {
+            actual = sorted.collect(Collectors.toList());
+        }
+        assertEquals("count", 100, actual.size());
+        assertEquals("first", "000", actual.get(0));
+        assertEquals("last", "099", actual.get(99));
+    }
+
+    @Test
+    public void sort_closedEarly() throws Exception {
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(String.format("%03d", 99 - i));
+        }
+        File tempDirectory = temporaryFolder.newFolder();
+        ExternalSorter sorter = new ExternalSorter(Comparator.naturalOrder(), 1, tempDirectory);
+        try (Stream<String> sorted = sorter.sort(items.iterator())) {
+            Iterator<String> it = sorted.iterator();
+            assertEquals("first", "000", it.next());
+        }
+        assertEquals("runs remaining", 0, tempDirectory.list().length);
+    }
+
+    @Test
+    public void sort_inMemory() throws Exception {
+        File tempDirectory = temporaryFolder.newFolder();
+        ExternalSorter sorter = new ExternalSorter(Comparator.naturalOrder(), 0, tempDirectory);
+        List<String> actual;
+        try (Stream<String> sorted = sorter.sort(Arrays.asList("c", "a", "b").iterator())) {
+            actual = sorted.collect(Collectors.toList());
+        }
+        assertEquals(Arrays.asList("a", "b", "c"), actual);
+        assertEquals("runs written", 0, tempDirectory.list().length);
+        try (Stream<String> sorted = sorter.sort(Collections.emptyIterator())) {
+            assertEquals("empty", 0, sorted.count());
+        }
+    }
+}
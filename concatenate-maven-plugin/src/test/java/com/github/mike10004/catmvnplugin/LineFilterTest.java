@@ -0,0 +1,114 @@
+package com.github.mike10004.catmvnplugin;
+
+import org.junit.Test;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LineFilterTest {
+
+    private static String filter(LineFilter filter, String input) throws IOException {
+        return filter(filter, input.getBytes(StandardCharsets.UTF_8), Integer.MAX_VALUE);
+    }
+
+    /*
+     * Reads at most maxRead bytes at a time, to exercise terminators split across reads.
+     */
+    private static String filter(LineFilter filter, byte[] input, int maxRead) throws IOException {
+        InputStream in = new ByteArrayInputStream(input) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, maxRead));
+            }
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filter.copy(in, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static LineFilter filter(boolean stripBom, @Nullable String lineEnding, @Nullable String dropPattern, boolean ensureTrailingNewline) {
+        return new LineFilter(stripBom, LineFilter.parseLineEnding(lineEnding),
+                dropPattern == null ? null : Pattern.compile(dropPattern), StandardCharsets.UTF_8, ensureTrailingNewline);
+    }
+
+    @Test
+    public void identity() throws Exception {
+        LineFilter filter = filter(false, "keep", null, false);
+        assertTrue(filter.isIdentity());
+        String input = "\uFEFFa\r\nb\rc\n\nd";
+        assertEquals(input, filter(filter, input));
+    }
+
+    @Test
+    public void stripBom() throws Exception {
+        LineFilter filter = filter(true, null, null, false);
+        assertFalse(filter.isIdentity());
+        assertEquals("a\nb", filter(filter, "\uFEFFa\nb"));
+        assertEquals("not at start", "a\uFEFF", filter(filter, "a\uFEFF"));
+        assertEquals("short", "a", filter(filter, "a"));
+        assertEquals("empty", "", filter(filter, ""));
+    }
+
+    @Test
+    public void lineEnding() throws Exception {
+        String input = "a\r\nb\rc\n\nd";
+        assertEquals("a\nb\nc\n\nd", filter(filter(false, "unix", null, false), input));
+        assertEquals("a\r\nb\r\nc\r\n\r\nd", filter(filter(false, "crlf", null, false), input));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void lineEnding_unrecognized() {
+        LineFilter.parseLineEnding("mac");
+    }
+
+    @Test
+    public void dropLines() throws Exception {
+        LineFilter filter = filter(false, null, "^\\s*#", false);
+        assertEquals("a\r\nc\n", filter(filter, "# one\na\r\n  #two\r\nc\n#three"));
+        assertEquals("\u00e9\n", filter(filter, "\u00e9\n#\u00e9\n"));
+    }
+
+    @Test
+    public void ensureTrailingNewline() throws Exception {
+        assertEquals("a\r\nb\r\n", filter(filter(false, null, null, true), "a\r\nb"));
+        assertEquals("no terminator seen", "a\n", filter(filter(false, null, null, true), "a"));
+        assertEquals("already terminated", "a\n", filter(filter(false, null, null, true), "a\n"));
+        assertEquals("empty", "", filter(filter(false, null, null, true), ""));
+        assertEquals("converted", "a\r\nb\r\n", filter(filter(false, "dos", null, true), "a\nb"));
+        assertEquals("last line dropped", "a\n", filter(filter(false, null, "x", true), "a\nx"));
+    }
+
+    @Test
+    public void splitReads() throws Exception {
+        Random random = new Random(getClass().getName().hashCode());
+        String alphabet = "ab#\r\n";
+        StringBuilder sb = new StringBuilder("\uFEFF");
+        for (int i = 0; i < 2000; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        byte[] input = sb.toString().getBytes(StandardCharsets.UTF_8);
+        LineFilter filter = filter(true, "lf", "#", true);
+        String expected = filter(filter, input, Integer.MAX_VALUE);
+        for (int maxRead : new int[]{1, 2, 3, 7}) {
+            assertEquals("max read " + maxRead, expected, filter(filter, input, maxRead));
+        }
+    }
+
+    @Test
+    public void isAsciiCompatible() {
+        assertTrue(LineFilter.isAsciiCompatible(StandardCharsets.UTF_8));
+        assertTrue(LineFilter.isAsciiCompatible(StandardCharsets.ISO_8859_1));
+        assertFalse(LineFilter.isAsciiCompatible(StandardCharsets.UTF_16));
+        assertFalse(LineFilter.isAsciiCompatible(StandardCharsets.UTF_16LE));
+    }
+}
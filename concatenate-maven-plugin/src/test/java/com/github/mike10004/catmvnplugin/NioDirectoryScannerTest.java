@@ -0,0 +1,146 @@
+package com.github.mike10004.catmvnplugin;
+
+import com.google.common.io.Files;
+import org.apache.maven.shared.model.fileset.FileSet;
+import org.apache.maven.shared.model.fileset.util.FileSetManager;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class NioDirectoryScannerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File root;
+
+    @Before
+    public void setUp() throws Exception {
+        root = temporaryFolder.newFolder();
+        String[] paths = {
+                "a.txt", "b.js", ".gitignore", "x/a.txt", "x/b.js", "x/y/c.txt", "x/y/z/d.js",
+                "w/CVS/e.txt", "w/f.txt~", "w/g.txt", "v/h.css",
+        };
+        for (String path : paths) {
+            write(new File(root, path));
+        }
+    }
+
+    private static void write(File file) throws IOException {
+        Files.createParentDirs(file);
+        Files.asCharSink(file, StandardCharsets.UTF_8).write(file.getName());
+    }
+
+    private static FileSet fileSet(File dir, List<String> includes, List<String> excludes) {
+        FileSet fileSet = new FileSet();
+        fileSet.setDirectory(dir.getAbsolutePath());
+        fileSet.setIncludes(includes);
+        fileSet.setExcludes(excludes);
+        return fileSet;
+    }
+
+    @Test
+    public void getIncludedFiles_sameAsScanner() {
+        testSameAsScanner(1);
+    }
+
+    @Test
+    public void getIncludedFiles_sameAsScanner_parallel() {
+        testSameAsScanner(4);
+    }
+
+    private void testSameAsScanner(int threads) {
+        List<FileSet> fileSets = new ArrayList<>(Arrays.asList(
+                fileSet(root, Collections.emptyList(), Collections.emptyList()),
+                fileSet(root, Collections.singletonList("**/*.txt"), Collections.emptyList()),
+                fileSet(root, Collections.singletonList("x/**"), Collections.singletonList("**/*.js")),
+                fileSet(root, Arrays.asList("*.js", "x/y/"), Collections.emptyList()),
+                fileSet(root, Collections.singletonList("w/**"), Collections.emptyList()),
+                fileSet(root, Collections.emptyList(), Arrays.asList("x/y/**", "w/")),
+                fileSet(root, Collections.singletonList("x/**"), Collections.singletonList("**/z/**")),
+                fileSet(new File(root, "x"), Collections.singletonList("**/*.js"), Collections.emptyList()),
+                fileSet(new File(root, "nonexistent"), Collections.emptyList(), Collections.emptyList())
+        ));
+        FileSet noDefaultExcludes = fileSet(root, Collections.singletonList("w/**"), Collections.emptyList());
+        noDefaultExcludes.setUseDefaultExcludes(false);
+        fileSets.add(noDefaultExcludes);
+        assertSameAsScanner(fileSets, new NioDirectoryScanner(threads));
+    }
+
+    private static void assertSameAsScanner(List<FileSet> fileSets, NioDirectoryScanner nioScanner) {
+        FileSetManager scanner = new FileSetManager();
+        for (FileSet fileSet : fileSets) {
+            String[] expected = scanner.getIncludedFiles(fileSet);
+            String[] actual = nioScanner.getIncludedFiles(fileSet);
+            assertArrayEquals("included files for " + fileSet.getDirectory() + " " + fileSet.getIncludes() + " - " + fileSet.getExcludes(), expected, actual);
+        }
+    }
+
+    @Test
+    public void getIncludedFiles_manyDirectories_parallel() throws Exception {
+        Random random = new Random(getClass().getName().hashCode());
+        File tree = temporaryFolder.newFolder();
+        for (int i = 0; i < 500; i++) {
+            StringBuilder path = new StringBuilder();
+            int depth = random.nextInt(5);
+            for (int j = 0; j < depth; j++) {
+                path.append("d").append(random.nextInt(4)).append('/');
+            }
+            path.append(String.format("f%03d.%s", i, random.nextBoolean() ? "js" : "css"));
+            write(new File(tree, path.toString()));
+        }
+        List<FileSet> fileSets = Arrays.asList(
+                fileSet(tree, Collections.emptyList(), Collections.emptyList()),
+                fileSet(tree, Collections.singletonList("**/*.js"), Collections.singletonList("d1/**")),
+                fileSet(tree, Collections.emptyList(), Arrays.asList("**/d0/**", "d3/*/**")),
+                fileSet(tree, Collections.singletonList("d2/d3/**"), Collections.emptyList()));
+        assertSameAsScanner(fileSets, new NioDirectoryScanner(8));
+    }
+
+    @Test
+    public void getIncludedFiles_symlinks() throws Exception {
+        File target = temporaryFolder.newFolder();
+        write(new File(target, "t.txt"));
+        write(new File(target, "sub/u.txt"));
+        try {
+            java.nio.file.Files.createSymbolicLink(new File(root, "linked").toPath(), target.toPath());
+            java.nio.file.Files.createSymbolicLink(new File(root, "x/link.txt").toPath(), new File(target, "t.txt").toPath());
+        } catch (IOException | UnsupportedOperationException e) {
+            Assume.assumeNoException("symbolic links not supported", e);
+        }
+        FileSet notFollowing = fileSet(root, Collections.singletonList("**/*.txt"), Collections.emptyList());
+        notFollowing.setFollowSymlinks(false);
+        FileSet following = fileSet(root, Collections.singletonList("**/*.txt"), Collections.emptyList());
+        following.setFollowSymlinks(true);
+        assertSameAsScanner(Arrays.asList(notFollowing, following), new NioDirectoryScanner(1));
+        assertSameAsScanner(Arrays.asList(notFollowing, following), new NioDirectoryScanner(3));
+    }
+
+    @Test
+    public void orderableFileSetManager_nioScanner() throws Exception {
+        OrderableFileSet fileSet = new OrderableFileSet();
+        fileSet.setDirectory(root.getAbsolutePath());
+        fileSet.setIncludes(Arrays.asList("x/**/*.js", "*.txt", "**/*.txt"));
+        OrderableFileSetManager manager = new OrderableFileSetManager();
+        String[] expected = manager.getIncludedFiles(fileSet);
+        fileSet.setScanner(OrderableFileSet.Scanner.nio);
+        fileSet.setScanThreads(2);
+        String[] actual = manager.getIncludedFiles(fileSet);
+        assertArrayEquals("strict order", expected, actual);
+        assertEquals("first", "x" + File.separator + "b.js", actual[0]);
+    }
+}
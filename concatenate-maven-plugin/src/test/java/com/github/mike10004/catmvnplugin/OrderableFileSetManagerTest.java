@@ -1,6 +1,7 @@
 package com.github.mike10004.catmvnplugin;
 
 import com.github.mike10004.catmvnplugin.OrderableFileSet.OrderingStrategy;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Ordering;
 import com.google.common.io.Files;
@@ -13,18 +14,23 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Random;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class OrderableFileSetManagerTest {
 
@@ -131,4 +137,131 @@ public class OrderableFileSetManagerTest {
         result = mgr.getIncludedFilesOrDirectories(fileSet, fileLister);
         assertArrayEquals(new String[]{"a", "b", "c"}, result);
     }
+
+    @Test
+    public void naturalSortingStrategy() {
+        OrderableFileSetManager mgr = new OrderableFileSetManager();
+        OrderableFileSet fileSet = new OrderableFileSet();
+        fileSet.setSort(OrderableFileSet.SortingStrategy.natural);
+        String[] items = {"part10.js", "part9.js", "part1.js", "v1.10/a", "v1.9/a", "part01.js", "b"};
+        String[] result = mgr.getIncludedFilesOrDirectories(fileSet, x -> items.clone());
+        assertArrayEquals(new String[]{"b", "part01.js", "part1.js", "part9.js", "part10.js", "v1.9/a", "v1.10/a"}, result);
+    }
+
+    @Test
+    public void attributeSortingStrategies() throws Exception {
+        File root = temporaryFolder.newFolder();
+        String[][] files = {
+                // name, content, last modified seconds
+                {"a.txt", "xxx", "300"},
+                {"b.txt", "x", "100"},
+                {"c.txt", "xx", "200"},
+                {"d.txt", "x", "200"},
+        };
+        for (String[] spec : files) {
+            File file = new File(root, spec[0]);
+            Files.write(spec[1], file, StandardCharsets.UTF_8);
+            assertTrue(file.setLastModified(Long.parseLong(spec[2]) * 1000));
+        }
+        OrderableFileSet fs = new OrderableFileSet();
+        fs.setDirectory(root.getAbsolutePath());
+        OrderableFileSetManager mgr = new OrderableFileSetManager();
+        mgr.setSortTempDirectory(temporaryFolder.newFolder());
+        fs.setSort(OrderableFileSet.SortingStrategy.size);
+        assertEquals("by size", Arrays.asList("b.txt", "d.txt", "c.txt", "a.txt"), Arrays.asList(mgr.getIncludedFiles(fs)));
+        fs.setSort(OrderableFileSet.SortingStrategy.lastModified);
+        assertEquals("by last modified", Arrays.asList("b.txt", "c.txt", "d.txt", "a.txt"), Arrays.asList(mgr.getIncludedFiles(fs)));
+        mgr.setSortMemoryBudget(100);
+        try (Stream<String> stream = mgr.streamIncludedFiles(fs)) {
+            assertEquals("streamed by last modified", Arrays.asList("b.txt", "c.txt", "d.txt", "a.txt"), stream.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void getIncludedFiles_orderingStrategyStrict_overlappingIncludes() throws Exception {
+        File root = temporaryFolder.newFolder();
+        for (String path : new String[]{"a.txt", "b/a.txt", "b/b.txt", "b/c.js", "c/d/e.txt", "c/f.js", "g.js"}) {
+            File file = new File(root, path);
+            Files.createParentDirs(file);
+            Files.touch(file);
+        }
+        List<String> includes = Arrays.asList("b/*.txt", "**/*.js", "c/", "**/*.txt", "a.txt");
+        OrderableFileSet fs = new OrderableFileSet();
+        fs.setOrderingStrategy(OrderingStrategy.strict);
+        fs.setDirectory(root.getAbsolutePath());
+        fs.setIncludes(includes);
+        fs.setExcludes(Collections.singletonList("c/f.js"));
+        FileSetManager scanner = new FileSetManager();
+        Set<String> expected = new LinkedHashSet<>();
+        for (String include : includes) {
+            FileSet singleIncludeFileset = new FileSet();
+            singleIncludeFileset.setDirectory(fs.getDirectory());
+            singleIncludeFileset.setExcludes(fs.getExcludes());
+            singleIncludeFileset.setIncludes(Collections.singletonList(include));
+            expected.addAll(Arrays.asList(scanner.getIncludedFiles(singleIncludeFileset)));
+        }
+        String[] actual = new OrderableFileSetManager().getIncludedFiles(fs);
+        assertEquals("files in order of first matching include", new ArrayList<>(expected), Arrays.asList(actual));
+    }
+
+    @Test
+    public void streamIncludedFiles_sortedWithinMemoryBudget() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Random random = new Random(getClass().getName().hashCode());
+        for (int i = 0; i < 200; i++) {
+            File file = new File(root, String.format("d%d/%08x.txt", i % 7, random.nextInt(Integer.MAX_VALUE)));
+            Files.createParentDirs(file);
+            Files.touch(file);
+        }
+        OrderableFileSet fs = new OrderableFileSet();
+        fs.setDirectory(root.getAbsolutePath());
+        fs.setSort(OrderableFileSet.SortingStrategy.alphabetical);
+        OrderableFileSetManager mgr = new OrderableFileSetManager();
+        File sortTempDirectory = temporaryFolder.newFolder();
+        mgr.setSortTempDirectory(sortTempDirectory);
+        mgr.setSortMemoryBudget(1000);
+        List<String> actual;
+        try (Stream<String> stream = mgr.streamIncludedFiles(fs)) {
+            actual = stream.collect(Collectors.toList());
+        }
+        assertEquals("streamed files", Arrays.asList(mgr.getIncludedFiles(fs)), actual);
+        assertEquals("sort runs remaining", 0, checkNotNull(sortTempDirectory.list()).length);
+    }
+
+    @Test
+    public void streamIncludedFiles_sortedSameAsIncludedFiles() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Random random = new Random(getClass().getName().hashCode());
+        for (int i = 0; i < 120; i++) {
+            File file = new File(root, String.format("d%d/f%d.%s", i % 5, random.nextInt(1000), i % 2 == 0 ? "txt" : "js"));
+            Files.createParentDirs(file);
+            Files.write(Strings.repeat("x", random.nextInt(50)), file, StandardCharsets.UTF_8);
+        }
+        OrderableFileSet fs = new OrderableFileSet();
+        fs.setDirectory(root.getAbsolutePath());
+        fs.setOrderingStrategy(OrderingStrategy.strict);
+        fs.setIncludes(Arrays.asList("d3/**", "**/*.txt", "**/*.js"));
+        for (OrderableFileSet.SortingStrategy sort : new OrderableFileSet.SortingStrategy[]{OrderableFileSet.SortingStrategy.natural, OrderableFileSet.SortingStrategy.size}) {
+            fs.setSort(sort);
+            for (int scanThreads : new int[]{1, 2}) {
+                fs.setScanThreads(scanThreads);
+                for (boolean cached : new boolean[]{false, true}) {
+                    OrderableFileSetManager mgr = new OrderableFileSetManager();
+                    File sortTempDirectory = temporaryFolder.newFolder();
+                    mgr.setSortTempDirectory(sortTempDirectory);
+                    mgr.setSortMemoryBudget(500);
+                    if (cached) {
+                        mgr.setDirectoryListingCache(new DirectoryListingCache(Collections.singletonList(fs)));
+                    }
+                    List<String> actual;
+                    try (Stream<String> stream = mgr.streamIncludedFiles(fs)) {
+                        actual = stream.collect(Collectors.toList());
+                    }
+                    String description = sort + " with " + scanThreads + " thread(s)" + (cached ? " from cache" : "");
+                    assertEquals(description, Arrays.asList(new OrderableFileSetManager().getIncludedFiles(fs)), actual);
+                    assertEquals("sort runs remaining", 0, checkNotNull(sortTempDirectory.list()).length);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,61 @@
+package com.github.mike10004.catmvnplugin;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class ParallelGzipOutputStreamTest {
+
+    private static final int BLOCK_SIZE = 1000;
+
+    @Test
+    public void roundTrip() throws Exception {
+        Random random = new Random(ParallelGzipOutputStreamTest.class.getName().hashCode());
+        int[] lengths = {0, 1, BLOCK_SIZE - 1, BLOCK_SIZE, BLOCK_SIZE + 1, BLOCK_SIZE * 37 + 123};
+        for (int length : lengths) {
+            byte[] data = new byte[length];
+            for (int i = 0; i < length; i++) {
+                // compressible but not trivially so
+                data[i] = (byte) ('a' + random.nextInt(8));
+            }
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try (OutputStream out = new ParallelGzipOutputStream(compressed, 4, BLOCK_SIZE)) {
+                int off = 0;
+                while (off < length) {
+                    int n = Math.min(length - off, 1 + random.nextInt(BLOCK_SIZE * 3));
+                    out.write(data, off, n);
+                    off += n;
+                }
+            }
+            assertArrayEquals("length " + length, data, decompress(compressed.toByteArray()));
+        }
+    }
+
+    @Test
+    public void singleByteWrites() throws Exception {
+        byte[] data = new byte[BLOCK_SIZE * 3 + 7];
+        new Random(0).nextBytes(data);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelGzipOutputStream(compressed, 2, BLOCK_SIZE)) {
+            for (byte b : data) {
+                out.write(b);
+            }
+        }
+        assertArrayEquals(data, decompress(compressed.toByteArray()));
+    }
+
+    private static byte[] decompress(byte[] compressed) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return ByteStreams.toByteArray(in);
+        }
+    }
+}
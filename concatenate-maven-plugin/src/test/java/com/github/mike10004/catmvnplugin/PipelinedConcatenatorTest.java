@@ -0,0 +1,107 @@
+package com.github.mike10004.catmvnplugin;
+
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PipelinedConcatenatorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void concatenate_manyFiles() throws Exception {
+        testConcatenate(3, 4096, 200);
+    }
+
+    @Test
+    public void concatenate_budgetSmallerThanSomeFiles() throws Exception {
+        testConcatenate(2, 100, 50);
+    }
+
+    @Test
+    public void concatenate_zeroBudget() throws Exception {
+        testConcatenate(1, 0, 10);
+    }
+
+    private void testConcatenate(int readerThreads, long maxInFlightBytes, int numFiles) throws IOException {
+        Random random = new Random(getClass().getName().hashCode() + numFiles);
+        File dir = temporaryFolder.newFolder();
+        byte[] dividerBytes = "|".getBytes(StandardCharsets.US_ASCII);
+        List<File> sourceFiles = new ArrayList<>(numFiles);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < numFiles; i++) {
+            byte[] content = new byte[random.nextInt(300)];
+            random.nextBytes(content);
+            File file = new File(dir, String.format("%04d.bin", i));
+            Files.write(content, file);
+            sourceFiles.add(file);
+            if (i > 0) {
+                expected.write(dividerBytes);
+            }
+            expected.write(content);
+        }
+        File outputFile = new File(temporaryFolder.newFolder(), "output.bin");
+        PipelinedConcatenator concatenator = new PipelinedConcatenator(dividerBytes, readerThreads, maxInFlightBytes, Concatenator.ChannelConcatenator.DEFAULT_MAP_THRESHOLD);
+        int numWritten;
+        try (OutputStream output = new FileOutputStream(outputFile)) {
+            numWritten = concatenator.concatenate(sourceFiles, output);
+        }
+        assertEquals("num files", numFiles, numWritten);
+        assertArrayEquals("output", expected.toByteArray(), Files.toByteArray(outputFile));
+    }
+
+    @Test
+    public void concatenate_fileGrowsAfterSizeCheck() throws Exception {
+        File dir = temporaryFolder.newFolder();
+        byte[] content = new byte[3 * 1024 * 1024 + 17];
+        new Random(content.length).nextBytes(content);
+        // reports the size the file had when the concatenator checked it, before it grew
+        File grown = new File(dir, "grown.bin") {
+            @Override
+            public long length() {
+                return 10;
+            }
+        };
+        Files.write(content, grown);
+        File small = new File(dir, "small.txt");
+        Files.write("hello", small, StandardCharsets.US_ASCII);
+        List<File> sourceFiles = new ArrayList<>();
+        sourceFiles.add(grown);
+        sourceFiles.add(small);
+        PipelinedConcatenator concatenator = new PipelinedConcatenator(new byte[0], 2, 64 * 1024 * 1024, Concatenator.ChannelConcatenator.DEFAULT_MAP_THRESHOLD);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        concatenator.concatenate(sourceFiles, output);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(content);
+        expected.write("hello".getBytes(StandardCharsets.US_ASCII));
+        assertArrayEquals("output", expected.toByteArray(), output.toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void concatenate_missingFile() throws Exception {
+        File dir = temporaryFolder.newFolder();
+        File present = new File(dir, "present.txt");
+        Files.write("hello", present, StandardCharsets.US_ASCII);
+        File missing = new File(dir, "missing.txt");
+        List<File> sourceFiles = new ArrayList<>();
+        sourceFiles.add(present);
+        sourceFiles.add(missing);
+        PipelinedConcatenator concatenator = new PipelinedConcatenator(new byte[0], 2, 1024, Concatenator.ChannelConcatenator.DEFAULT_MAP_THRESHOLD);
+        concatenator.concatenate(sourceFiles, new ByteArrayOutputStream());
+    }
+}
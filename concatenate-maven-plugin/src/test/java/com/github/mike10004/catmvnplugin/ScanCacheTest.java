@@ -0,0 +1,125 @@
+package com.github.mike10004.catmvnplugin;
+
+import com.google.common.io.Files;
+import org.apache.maven.shared.model.fileset.FileSet;
+import org.apache.maven.shared.model.fileset.util.FileSetManager;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ScanCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File root;
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        root = temporaryFolder.newFolder();
+        cacheDir = temporaryFolder.newFolder();
+        for (String path : new String[]{"a.txt", "x/b.txt", "x/y/c.txt"}) {
+            write(path);
+        }
+    }
+
+    private void write(String path) throws Exception {
+        File file = new File(root, path);
+        Files.createParentDirs(file);
+        Files.asCharSink(file, StandardCharsets.UTF_8).write(path);
+    }
+
+    private static FileSet fileSet(File dir, String... includes) {
+        FileSet fileSet = new FileSet();
+        fileSet.setDirectory(dir.getAbsolutePath());
+        fileSet.setIncludes(Arrays.asList(includes));
+        return fileSet;
+    }
+
+    private static void setLastModified(File dir, long millis) throws Exception {
+        java.nio.file.Files.setLastModifiedTime(dir.toPath(), FileTime.fromMillis(millis));
+    }
+
+    private void backdateDirectories() throws Exception {
+        long millis = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        for (String path : new String[]{"", "x", "x/y"}) {
+            setLastModified(new File(root, path), millis);
+        }
+    }
+
+    private static void assertSameAsScanner(List<FileSet> fileSets, ScanCache scanCache) {
+        DirectoryListingCache listingCache = new DirectoryListingCache(fileSets, scanCache);
+        for (FileSet fileSet : fileSets) {
+            assertArrayEquals(new FileSetManager().getIncludedFiles(fileSet), listingCache.getIncludedFiles(fileSet));
+        }
+    }
+
+    @Test
+    public void relistsOnlyModifiedDirectories() throws Exception {
+        backdateDirectories();
+        List<FileSet> fileSets = Arrays.asList(fileSet(root, "**/*.txt"), fileSet(root, "a.txt"));
+        ScanCache first = new ScanCache(cacheDir);
+        assertSameAsScanner(fileSets, first);
+        assertEquals("hits on first build", 0, first.getHits());
+        assertEquals("misses on first build", 3, first.getMisses());
+
+        ScanCache second = new ScanCache(cacheDir);
+        assertSameAsScanner(fileSets, second);
+        assertEquals("hits on second build", 3, second.getHits());
+        assertEquals("misses on second build", 0, second.getMisses());
+
+        write("x/y/d.txt");
+        ScanCache third = new ScanCache(cacheDir);
+        assertSameAsScanner(fileSets, third);
+        assertEquals("hits after directory modified", 2, third.getHits());
+        assertEquals("misses after directory modified", 1, third.getMisses());
+    }
+
+    @Test
+    public void recentlyModifiedDirectoryNotTrusted() throws Exception {
+        File dir = new File(root, "x/y");
+        long lastModified = java.nio.file.Files.getLastModifiedTime(dir.toPath()).toMillis();
+        List<FileSet> fileSets = Collections.singletonList(fileSet(root, "**/*.txt"));
+        assertSameAsScanner(fileSets, new ScanCache(cacheDir));
+        // simulate a file system whose timestamps are too coarse to record the change
+        write("x/y/d.txt");
+        setLastModified(dir, lastModified);
+        ScanCache second = new ScanCache(cacheDir);
+        DirectoryListingCache listingCache = new DirectoryListingCache(fileSets, second);
+        String[] includedFiles = listingCache.getIncludedFiles(fileSets.get(0));
+        assertNotNull(includedFiles);
+        assertTrue("new file found", Arrays.asList(includedFiles).contains("x" + File.separator + "y" + File.separator + "d.txt"));
+        assertEquals("listings reused", 0, second.getHits());
+    }
+
+    @Test
+    public void differentKey() throws Exception {
+        backdateDirectories();
+        ScanCache cache = new ScanCache(cacheDir);
+        ScanCache.DirectoryListing listing = ScanCache.DirectoryListing.list(root);
+        assertTrue("confirmed", listing.confirmed);
+        cache.put("foo", Collections.singletonList(listing));
+        cache.open("foo").list(root);
+        assertEquals("hit", 1, cache.getHits());
+        cache.open("bar").list(root);
+        assertEquals("miss", 1, cache.getMisses());
+        write("b.txt");
+        cache.open("foo").list(root);
+        assertEquals("stale", 2, cache.getMisses());
+    }
+}
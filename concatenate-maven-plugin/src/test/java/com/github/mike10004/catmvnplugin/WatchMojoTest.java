@@ -0,0 +1,255 @@
+package com.github.mike10004.catmvnplugin;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WatchMojoTest {
+
+    private static final Charset charset = StandardCharsets.UTF_8;
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private WatchMojo newMojo(File root, File outputFile, ConcatenateMojoTest.CapturingLog log) {
+        OrderableFileSet fileset = new OrderableFileSet();
+        fileset.setDirectory(root.getAbsolutePath());
+        fileset.setIncludes(Lists.newArrayList("**/*.js"));
+        fileset.setSort(OrderableFileSet.SortingStrategy.natural);
+        WatchMojo mojo = new WatchMojo();
+        mojo.setOutputFile(outputFile);
+        mojo.setSources(new OrderableFileSet[]{fileset});
+        mojo.setDivider("\n");
+        mojo.setDividerCharset("UTF-8");
+        mojo.setHeader("// ${index} ${relativePath}\n");
+        mojo.setDebounceMillis(20);
+        mojo.setLog(log);
+        return mojo;
+    }
+
+    @Test
+    public void watch_splices() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("a1", new File(root, "a.js"), charset);
+        Files.write("b1", new File(root, "b.js"), charset);
+        Files.write("c1", new File(root, "c.js"), charset);
+        File outputFile = new File(temporaryFolder.newFolder(), "output.js");
+        ConcatenateMojoTest.CapturingLog log = new ConcatenateMojoTest.CapturingLog();
+        WatchMojo mojo = newMojo(root, outputFile, log);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> execution = executor.submit(() -> {
+                mojo.execute();
+                return null;
+            });
+            await("watching", () -> log.containsInfo("watching"));
+            assertEquals("initial", "// 0 a.js\na1\n// 1 b.js\nb1\n// 2 c.js\nc1", read(outputFile));
+
+            Files.write("b22", new File(root, "b.js"), charset);
+            awaitContent(outputFile, "// 0 a.js\na1\n// 1 b.js\nb22\n// 2 c.js\nc1");
+            await("spliced", () -> log.containsInfo("rewrote 2 of 3 file(s) from byte 12"));
+
+            File subdirectory = new File(root, "sub");
+            assertTrue(subdirectory.mkdir());
+            await("created directory", () -> log.containsInfo("rewrote 3 of 3 file(s)"));
+            log.clear();
+            Files.write("d1", new File(subdirectory, "d.js"), charset);
+            awaitContent(outputFile, "// 0 a.js\na1\n// 1 b.js\nb22\n// 2 c.js\nc1\n// 3 sub" + File.separator + "d.js\nd1");
+            await("appended", () -> log.containsInfo("rewrote 1 of 4 file(s) from byte 39"));
+
+            assertTrue(new File(root, "a.js").delete());
+            awaitContent(outputFile, "// 0 b.js\nb22\n// 1 c.js\nc1\n// 2 sub" + File.separator + "d.js\nd1");
+            await("rewritten from start", () -> log.containsInfo("rewrote 3 of 3 file(s) from byte 0"));
+
+            mojo.stop();
+            execution.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } finally {
+            mojo.stop();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void watch_rewritesOutputWithChecksums() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("a1", new File(root, "a.js"), charset);
+        Files.write("b1", new File(root, "b.js"), charset);
+        File outputFile = new File(temporaryFolder.newFolder(), "output.js");
+        ConcatenateMojoTest.CapturingLog log = new ConcatenateMojoTest.CapturingLog();
+        WatchMojo mojo = newMojo(root, outputFile, log);
+        mojo.setChecksums(ConcatenateMojo.ChecksumAlgorithm.md5);
+        File checksumFile = ConcatenateMojo.getChecksumFile(outputFile, ConcatenateMojo.ChecksumAlgorithm.md5);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> execution = executor.submit(() -> {
+                mojo.execute();
+                return null;
+            });
+            await("watching", () -> log.containsInfo("watching"));
+            String initialChecksum = read(checksumFile);
+            log.clear();
+
+            Files.write("b22", new File(root, "b.js"), charset);
+            awaitContent(outputFile, "// 0 a.js\na1\n// 1 b.js\nb22");
+            await("checksum updated", () -> !initialChecksum.equals(readQuietly(checksumFile)));
+            assertFalse("spliced", log.containsInfo("updated"));
+
+            mojo.stop();
+            execution.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } finally {
+            mojo.stop();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void watch_archiveFileset() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("a1", new File(root, "a.js"), charset);
+        File jarFile = new File(temporaryFolder.newFolder(), "lib-1.0.jar");
+        ConcatenateMojoTest.writeJar(jarFile, ImmutableMap.of("META-INF/resources/webjars/lib/b.js", "b1", "META-INF/resources/webjars/lib/c.js", "c1"));
+        File outputFile = new File(temporaryFolder.newFolder(), "output.js");
+        ConcatenateMojoTest.CapturingLog log = new ConcatenateMojoTest.CapturingLog();
+        WatchMojo mojo = newMojo(root, outputFile, log);
+        OrderableFileSet directoryFileset = new OrderableFileSet();
+        directoryFileset.setDirectory(root.getAbsolutePath());
+        directoryFileset.setIncludes(Lists.newArrayList("*.js"));
+        OrderableFileSet archiveFileset = new OrderableFileSet();
+        archiveFileset.setArchive(jarFile.getAbsolutePath());
+        archiveFileset.setDirectory("META-INF/resources/webjars/lib");
+        archiveFileset.setIncludes(Lists.newArrayList("*.js"));
+        archiveFileset.setSort(OrderableFileSet.SortingStrategy.natural);
+        mojo.setSources(new OrderableFileSet[]{directoryFileset, archiveFileset});
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> execution = executor.submit(() -> {
+                mojo.execute();
+                return null;
+            });
+            await("watching", () -> log.containsInfo("watching") || execution.isDone());
+            assertFalse("execution ended", execution.isDone());
+            assertEquals("initial", "// 0 a.js\na1\n// 1 b.js\nb1\n// 2 c.js\nc1", read(outputFile));
+
+            ConcatenateMojoTest.writeJar(jarFile, ImmutableMap.of("META-INF/resources/webjars/lib/b.js", "b1", "META-INF/resources/webjars/lib/c.js", "c22"));
+            awaitContent(outputFile, "// 0 a.js\na1\n// 1 b.js\nb1\n// 2 c.js\nc22");
+
+            mojo.stop();
+            execution.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } finally {
+            mojo.stop();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void watch_spliceFailureKeepsPreviousOutput() throws Exception {
+        File root = temporaryFolder.newFolder();
+        Files.write("a1", new File(root, "a.js"), charset);
+        Files.write("b1", new File(root, "b.js"), charset);
+        File outputDirectory = temporaryFolder.newFolder();
+        File outputFile = new File(outputDirectory, "output.js");
+        ConcatenateMojoTest.CapturingLog log = new ConcatenateMojoTest.CapturingLog();
+        AtomicBoolean failWrites = new AtomicBoolean();
+        AtomicInteger failures = new AtomicInteger();
+        WatchMojo mojo = new WatchMojo() {
+            @Override
+            Concatenator createConcatenator(byte[] dividerBytes, Map<File, SourceInfo> sourceInfos) {
+                if (!failWrites.get()) {
+                    return super.createConcatenator(dividerBytes, sourceInfos);
+                }
+                return new Concatenator.StreamConcatenator(dividerBytes) {
+                    @Override
+                    public int concatenate(Iterable<File> sourceFiles, OutputStream output) throws IOException {
+                        output.write("partial".getBytes(charset));
+                        failures.incrementAndGet();
+                        throw new IOException("injected write failure");
+                    }
+                };
+            }
+        };
+        OrderableFileSet fileset = new OrderableFileSet();
+        fileset.setDirectory(root.getAbsolutePath());
+        fileset.setIncludes(Lists.newArrayList("**/*.js"));
+        fileset.setSort(OrderableFileSet.SortingStrategy.natural);
+        mojo.setOutputFile(outputFile);
+        mojo.setSources(new OrderableFileSet[]{fileset});
+        mojo.setDivider("\n");
+        mojo.setDividerCharset("UTF-8");
+        mojo.setDebounceMillis(20);
+        mojo.setLog(log);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> execution = executor.submit(() -> {
+                mojo.execute();
+                return null;
+            });
+            await("watching", () -> log.containsInfo("watching"));
+            String initial = read(outputFile);
+            assertEquals("initial", "a1\nb1", initial);
+
+            failWrites.set(true);
+            Files.write("b22", new File(root, "b.js"), charset);
+            await("write failure", () -> failures.get() > 0);
+            await("temporary file deleted", () -> Objects.requireNonNull(outputDirectory.list()).length == 1);
+            assertEquals("previous output", initial, read(outputFile));
+            assertFalse("spliced", log.containsInfo("updated"));
+
+            failWrites.set(false);
+            Files.write("b333", new File(root, "b.js"), charset);
+            awaitContent(outputFile, "a1\nb333");
+
+            mojo.stop();
+            execution.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } finally {
+            mojo.stop();
+            executor.shutdownNow();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return Files.asCharSource(file, charset).read();
+    }
+
+    private static void awaitContent(File file, String expected) throws InterruptedException {
+        await("content " + expected, () -> expected.equals(readQuietly(file)));
+    }
+
+    private static String readQuietly(File file) {
+        try {
+            return read(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void await(String description, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.getAsBoolean()) {
+            assertTrue("timed out waiting for condition: " + description, System.currentTimeMillis() < deadline);
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.mike10004.catmvnplugin.tests;
+
+import com.google.common.io.Files;
+import org.junit.Test;
+
+import java.io.File;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+public class BundlesTest extends CatTestBase {
+
+    @Test
+    public void confirmCorrectOutput() throws Exception {
+        String actual = Files.toString(getOutputFile(), UTF_8);
+        assertEquals("output", "ba", actual);
+        File secondOutputFile = new File(System.getProperty(getClass().getSimpleName() + ".secondOutputFile"));
+        String secondActual = Files.toString(secondOutputFile, UTF_8);
+        assertEquals("second output", "cba", secondActual);
+    }
+}